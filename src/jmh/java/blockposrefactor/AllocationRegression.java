@@ -0,0 +1,402 @@
+package blockposrefactor;
+
+import com.sun.management.HotSpotDiagnosticMXBean;
+import net.minecraft.util.BlockRotation;
+import net.minecraft.util.math.AxisCycleDirection;
+import net.minecraft.util.math.BlockBox;
+import net.minecraft.util.math.Direction;
+import net.minecraft.util.math.Vec3d;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.function.Function;
+
+/**
+ * Measures the bytes allocated per call of the position API and compares
+ * them against a checked-in baseline, failing when a call allocates more
+ * than the baseline allows.
+ *
+ * <p>Each case is warmed up until compiled, then run for a fixed number of
+ * calls between two reads of the thread's allocated bytes. Results are
+ * stored into a static field, and the JVM must run with {@code
+ * -XX:-DoEscapeAnalysis}: whether the JIT removes an allocation depends on
+ * its inlining decisions, which vary from run to run, so what is measured is
+ * every allocation the code performs. Cases cover the {@link NewBlockPos}
+ * methods, {@code equals} and {@code hashCode} on both {@link
+ * ImmutableNewBlockPos} and {@link MutableNewBlockPos} receivers, the
+ * {@link NewVec3i} comparisons and distances, which only {@link
+ * ImmutableNewBlockPos} has, the mutators of {@link MutableNewBlockPos},
+ * the static packed long helpers, and the static iterators and streams for
+ * a whole traversal. {@code serialize}, {@code deserialize} and the string
+ * forms are left out: what they allocate is decided by the {@code
+ * DynamicOps} and string building, not by the position classes.
+ *
+ * <p>Arguments: the baseline directory, then optionally {@code --update} to
+ * rewrite the baseline from the measured values instead of checking. The
+ * byte counts depend on the object layout, and those of streams and
+ * spliterators on the JDK's own classes, so the directory holds one
+ * baseline per {@code java.specification.version}, for a 64-bit JVM with
+ * compressed oops; {@code ./gradlew checkAllocations} runs it that way. On
+ * a JDK without a baseline, the check is skipped with a note on how to
+ * create one.
+ */
+public final class AllocationRegression {
+
+    private static final int WARMUP_ROUNDS = 20;
+    private static final int CALLS = 100_000;
+    private static final int MEASUREMENT_ROUNDS = 3;
+
+    static Object sink;
+    static long sinkLong;
+
+    private static final com.sun.management.ThreadMXBean THREADS = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    private static final IntTriConsumer COUNT = (x, y, z) -> sinkLong += x;
+    private static final IntTriPredicate NEVER = (x, y, z) -> {
+        sinkLong += x;
+        return false;
+    };
+
+    private final Map<String, Workload> cases = new LinkedHashMap<>();
+    /**
+     * The bytes per call by which a case may differ from its baseline, for
+     * cases whose allocations depend on thread scheduling.
+     */
+    private final Map<String, Long> tolerances = new HashMap<>();
+
+    private AllocationRegression() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1 || args.length > 2 || args.length == 2 && !"--update".equals(args[1])) {
+            System.err.println("Usage: AllocationRegression <baseline directory> [--update]");
+            System.exit(2);
+        }
+        if (!THREADS.isThreadAllocatedMemorySupported()) {
+            System.err.println("This JVM cannot count allocated bytes per thread");
+            System.exit(2);
+        }
+        if (Boolean.parseBoolean(ManagementFactory.getPlatformMXBean(HotSpotDiagnosticMXBean.class).getVMOption("DoEscapeAnalysis").getValue())) {
+            System.err.println("Run with -XX:-DoEscapeAnalysis so that the counts do not depend on the JIT");
+            System.exit(2);
+        }
+        THREADS.setThreadAllocatedMemoryEnabled(true);
+
+        String javaVersion = System.getProperty("java.specification.version");
+        Path baselineFile = Paths.get(args[0], "java-" + javaVersion + ".properties");
+        boolean update = args.length == 2;
+        if (!update && !Files.exists(baselineFile)) {
+            System.err.println("No allocation baseline for Java " + javaVersion + " at " + baselineFile + ", skipping the check");
+            System.err.println("Create one with ./gradlew checkAllocations -PupdateAllocationBaseline");
+            return;
+        }
+
+        AllocationRegression regression = new AllocationRegression();
+        regression.addPositionCases("ImmutableNewBlockPos", new ImmutableNewBlockPos(100, 64, -100));
+        regression.addPositionCases("MutableNewBlockPos", new MutableNewBlockPos(100, 64, -100));
+        regression.addImmutableCases();
+        regression.addMutableCases();
+        regression.addPackedCases();
+        regression.addIteratorCases();
+        Map<String, Long> measured = regression.measure();
+
+        if (update) {
+            writeBaseline(baselineFile, javaVersion, measured);
+            System.out.println("Wrote " + measured.size() + " entries to " + baselineFile);
+            return;
+        }
+        if (!regression.check(readBaseline(baselineFile), measured)) {
+            System.exit(1);
+        }
+    }
+
+    private void add(String name, Workload workload) {
+        if (this.cases.put(name, workload) != null) {
+            throw new IllegalStateException("Duplicate case " + name);
+        }
+    }
+
+    private void addObject(String name, ObjectWorkload workload) {
+        this.add(name, () -> {
+            sink = workload.run();
+            return 0L;
+        });
+    }
+
+    private void addPositionCases(String type, NewBlockPos pos) {
+        ImmutableNewBlockPos other = new ImmutableNewBlockPos(3, -2, 7);
+        Function<String, String> name = method -> type + "." + method;
+        this.add(name.apply("getX()"), pos::getX);
+        this.add(name.apply("getY()"), pos::getY);
+        this.add(name.apply("getZ()"), pos::getZ);
+        // MutableNewBlockPos keeps the identity equals and hashCode of Object
+        this.add(name.apply("hashCode()"), pos::hashCode);
+        this.add(name.apply("equals(Object)"), () -> pos.equals(other) ? 1L : 0L);
+        this.addObject(name.apply("toImmutable()"), pos::toImmutable);
+        this.addObject(name.apply("mutableCopy()"), pos::mutableCopy);
+        this.add(name.apply("asLong()"), pos::asLong);
+        this.addObject(name.apply("add(int,int,int)"), () -> pos.add(1, 2, 3));
+        this.addObject(name.apply("add(0,0,0)"), () -> pos.add(0, 0, 0));
+        this.addObject(name.apply("add(double,double,double)"), () -> pos.add(1.5D, 2.5D, 3.5D));
+        this.addObject(name.apply("add(NewVec3i)"), () -> pos.add(other));
+        this.addObject(name.apply("subtract(NewVec3i)"), () -> pos.subtract(other));
+        this.addObject(name.apply("up()"), pos::up);
+        this.addObject(name.apply("up(int)"), () -> pos.up(2));
+        this.addObject(name.apply("down()"), pos::down);
+        this.addObject(name.apply("down(int)"), () -> pos.down(2));
+        this.addObject(name.apply("down(0)"), () -> pos.down(0));
+        this.addObject(name.apply("north()"), pos::north);
+        this.addObject(name.apply("north(int)"), () -> pos.north(2));
+        this.addObject(name.apply("south()"), pos::south);
+        this.addObject(name.apply("south(int)"), () -> pos.south(2));
+        this.addObject(name.apply("west()"), pos::west);
+        this.addObject(name.apply("west(int)"), () -> pos.west(2));
+        this.addObject(name.apply("east()"), pos::east);
+        this.addObject(name.apply("east(int)"), () -> pos.east(2));
+        this.addObject(name.apply("offset(Direction)"), () -> pos.offset(Direction.NORTH));
+        this.addObject(name.apply("offset(Direction,int)"), () -> pos.offset(Direction.NORTH, 2));
+        this.addObject(name.apply("offset(Direction,0)"), () -> pos.offset(Direction.NORTH, 0));
+        this.addObject(name.apply("rotate(NONE)"), () -> pos.rotate(BlockRotation.NONE));
+        this.addObject(name.apply("rotate(CLOCKWISE_90)"), () -> pos.rotate(BlockRotation.CLOCKWISE_90));
+        this.addObject(name.apply("crossProduct(NewVec3i)"), () -> pos.crossProduct(other));
+    }
+
+    private void addImmutableCases() {
+        ImmutableNewBlockPos pos = new ImmutableNewBlockPos(100, 64, -100);
+        ImmutableNewBlockPos other = new ImmutableNewBlockPos(3, -2, 7);
+        Vec3d point = new Vec3d(3.5D, -2.5D, 7.5D);
+        long packed = pos.asLong();
+        this.addObject("ImmutableNewBlockPos.fromLong(long)", () -> ImmutableNewBlockPos.fromLong(packed));
+        this.add("ImmutableNewBlockPos.compareTo(NewVec3i)", () -> pos.compareTo(other));
+        this.add("ImmutableNewBlockPos.getManhattanDistance(NewVec3i)", () -> pos.getManhattanDistance(other));
+        this.add("ImmutableNewBlockPos.getSquaredDistance(NewVec3i)", () -> (long) pos.getSquaredDistance(other));
+        this.add("ImmutableNewBlockPos.isWithinDistance(NewVec3i,double)", () -> pos.isWithinDistance(other, 100.0D) ? 1L : 0L);
+        this.add("ImmutableNewBlockPos.getSquaredDistance(double,double,double,boolean)", () -> (long) pos.getSquaredDistance(3.5D, -2.5D, 7.5D, true));
+        this.add("ImmutableNewBlockPos.getSquaredDistance(Position,boolean)", () -> (long) pos.getSquaredDistance(point, true));
+        this.add("ImmutableNewBlockPos.isWithinDistance(Position,double)", () -> pos.isWithinDistance(point, 100.0D) ? 1L : 0L);
+    }
+
+    private void addMutableCases() {
+        MutableNewBlockPos pos = new MutableNewBlockPos();
+        ImmutableNewBlockPos other = new ImmutableNewBlockPos(3, -2, 7);
+        long packed = other.asLong();
+        this.addObject("MutableNewBlockPos.set(int,int,int)", () -> pos.set(1, 2, 3));
+        this.addObject("MutableNewBlockPos.set(double,double,double)", () -> pos.set(1.5D, 2.5D, 3.5D));
+        this.addObject("MutableNewBlockPos.set(long)", () -> pos.set(packed));
+        this.addObject("MutableNewBlockPos.set(NewVec3i)", () -> pos.set(other));
+        this.addObject("MutableNewBlockPos.set(NewVec3i,Direction)", () -> pos.set(other, Direction.UP));
+        this.addObject("MutableNewBlockPos.set(NewVec3i,int,int,int)", () -> pos.set(other, 1, 2, 3));
+        this.addObject("MutableNewBlockPos.move(Direction)", () -> pos.set(other).move(Direction.UP));
+        this.addObject("MutableNewBlockPos.move(Direction,int)", () -> pos.set(other).move(Direction.UP, 2));
+        this.addObject("MutableNewBlockPos.move(int,int,int)", () -> pos.set(other).move(1, 2, 3));
+        this.addObject("MutableNewBlockPos.set(AxisCycleDirection,int,int,int)", () -> pos.set(AxisCycleDirection.NONE, 1, 2, 3));
+        this.add("MutableNewBlockPos.setX(int)", () -> {
+            pos.setX(1);
+            return 0L;
+        });
+        this.add("MutableNewBlockPos.setY(int)", () -> {
+            pos.setY(2);
+            return 0L;
+        });
+        this.add("MutableNewBlockPos.setZ(int)", () -> {
+            pos.setZ(3);
+            return 0L;
+        });
+    }
+
+    private void addPackedCases() {
+        long packed = NewBlockPos.asLong(100, 64, -100);
+        this.add("NewBlockPos.asLong(int,int,int)", () -> NewBlockPos.asLong(100, 64, -100));
+        this.add("NewBlockPos.unpackLongX(long)", () -> NewBlockPos.unpackLongX(packed));
+        this.add("NewBlockPos.unpackLongY(long)", () -> NewBlockPos.unpackLongY(packed));
+        this.add("NewBlockPos.unpackLongZ(long)", () -> NewBlockPos.unpackLongZ(packed));
+        this.add("NewBlockPos.offset(long,Direction)", () -> NewBlockPos.offset(packed, Direction.NORTH));
+        this.add("NewBlockPos.add(long,int,int,int)", () -> NewBlockPos.add(packed, 1, 2, 3));
+        this.add("NewBlockPos.removeChunkSectionLocalY(long)", () -> NewBlockPos.removeChunkSectionLocalY(packed));
+    }
+
+    private void addIteratorCases() {
+        ImmutableNewBlockPos start = new ImmutableNewBlockPos(0, 64, 0);
+        ImmutableNewBlockPos end = new ImmutableNewBlockPos(3, 67, 3);
+        BlockBox box = new BlockBox(0, 64, 0, 3, 67, 3);
+        Vec3d from = new Vec3d(0.5D, 64.5D, 0.5D);
+        Vec3d to = new Vec3d(12.25D, 70.75D, -5.5D);
+        this.add("NewBlockPos.iterate(NewBlockPos,NewBlockPos)", () -> traverse(NewBlockPos.iterate(start, end)));
+        this.add("NewBlockPos.iterate(int,int,int,int,int,int)", () -> traverse(NewBlockPos.iterate(0, 64, 0, 3, 67, 3)));
+        this.add("NewBlockPos.iterate().forEach(Consumer)", () -> {
+            NewBlockPos.iterate(0, 64, 0, 3, 67, 3).forEach(pos -> sinkLong += pos.getX());
+            return 0L;
+        });
+        this.add("NewBlockPos.iterate().spliterator()", () -> {
+            NewBlockPos.iterate(0, 64, 0, 3, 67, 3).spliterator().forEachRemaining(pos -> sinkLong += pos.getX());
+            return 0L;
+        });
+        this.add("NewBlockPos.stream(BlockBox)", () -> NewBlockPos.stream(box).count());
+        this.add("NewBlockPos.stream(NewBlockPos,NewBlockPos)", () -> NewBlockPos.stream(start, end).count());
+        this.add("NewBlockPos.stream(int,int,int,int,int,int)", () -> NewBlockPos.stream(0, 64, 0, 3, 67, 3).count());
+        this.add("NewBlockPos.forEachInBox", () -> {
+            NewBlockPos.forEachInBox(0, 64, 0, 3, 67, 3, COUNT);
+            return 0L;
+        });
+        this.add("NewBlockPos.forEachInBoxUntil", () -> NewBlockPos.forEachInBoxUntil(0, 64, 0, 3, 67, 3, NEVER) ? 1L : 0L);
+        this.add("NewBlockPos.forEachPacked(BlockBox)", () -> {
+            NewBlockPos.forEachPacked(box, value -> sinkLong += value);
+            return 0L;
+        });
+        this.add("NewBlockPos.iterateOutwards", () -> traverse(NewBlockPos.iterateOutwards(start, 2, 2, 2)));
+        this.add("NewBlockPos.iterateOutwards().forEach(Consumer)", () -> {
+            NewBlockPos.iterateOutwards(start, 2, 2, 2).forEach(pos -> sinkLong += pos.getX());
+            return 0L;
+        });
+        this.add("NewBlockPos.streamOutwards", () -> NewBlockPos.streamOutwards(start, 2, 2, 2).count());
+        this.add("NewBlockPos.forEachOutwards", () -> {
+            NewBlockPos.forEachOutwards(start, 2, 2, 2, COUNT);
+            return 0L;
+        });
+        this.add("NewBlockPos.forEachOutwardsUntil", () -> NewBlockPos.forEachOutwardsUntil(start, 2, 2, 2, NEVER) ? 1L : 0L);
+        this.add("NewBlockPos.findClosest", () -> NewBlockPos.findClosest(start, 2, 2, pos -> false).isPresent() ? 1L : 0L);
+        // only the calling thread is measured, and how much it allocates while waiting for the workers varies
+        this.add("NewBlockPos.findClosestParallel", () -> NewBlockPos.findClosestParallel(start, 2, 2, pos -> false).isPresent() ? 1L : 0L);
+        this.tolerances.put("NewBlockPos.findClosestParallel", 64L);
+        this.add("NewBlockPos.iterateSphere", () -> traverse(NewBlockPos.iterateSphere(start, 3.0D, true)));
+        this.add("NewBlockPos.forEachInSphere", () -> {
+            NewBlockPos.forEachInSphere(start, 3.0D, true, COUNT);
+            return 0L;
+        });
+        this.add("NewBlockPos.iterateShell", () -> traverse(NewBlockPos.iterateShell(start, 2.0D, 3.0D, true)));
+        this.add("NewBlockPos.forEachInShell", () -> {
+            NewBlockPos.forEachInShell(start, 2.0D, 3.0D, true, COUNT);
+            return 0L;
+        });
+        this.add("NewBlockPos.iterateCylinder", () -> traverse(NewBlockPos.iterateCylinder(start, 3.0D, 4, true)));
+        this.add("NewBlockPos.forEachInCylinder", () -> {
+            NewBlockPos.forEachInCylinder(start, 3.0D, 4, true, COUNT);
+            return 0L;
+        });
+        this.add("NewBlockPos.iterateLine", () -> traverse(NewBlockPos.iterateLine(from, to)));
+        this.add("NewBlockPos.forEachOnLineUntil", () -> NewBlockPos.forEachOnLineUntil(from, to, (pos, face) -> {
+            sinkLong += pos.getX();
+            return false;
+        }) ? 1L : 0L);
+    }
+
+    private static long traverse(Iterable<MutableNewBlockPos> positions) {
+        long sum = 0L;
+        for (MutableNewBlockPos pos : positions) {
+            sum += pos.getX();
+        }
+        return sum;
+    }
+
+    /**
+     * Returns the bytes allocated per call of each case, rounded to the
+     * nearest byte.
+     */
+    private Map<String, Long> measure() {
+        Map<String, Long> results = new LinkedHashMap<>();
+        long threadId = Thread.currentThread().getId();
+        for (Map.Entry<String, Workload> entry : this.cases.entrySet()) {
+            Workload workload = entry.getValue();
+            for (int round = 0; round < WARMUP_ROUNDS; round++) {
+                run(workload, CALLS / 10);
+            }
+            // the lowest round is the one least disturbed by the JIT and by the counter itself
+            long lowest = Long.MAX_VALUE;
+            for (int round = 0; round < MEASUREMENT_ROUNDS; round++) {
+                long before = THREADS.getThreadAllocatedBytes(threadId);
+                run(workload, CALLS);
+                long after = THREADS.getThreadAllocatedBytes(threadId);
+                lowest = Math.min(lowest, after - before);
+            }
+            results.put(entry.getKey(), Math.round((double) lowest / CALLS));
+        }
+        return results;
+    }
+
+    private static void run(Workload workload, int calls) {
+        long sum = 0L;
+        for (int i = 0; i < calls; i++) {
+            sum += workload.run();
+        }
+        sinkLong += sum;
+    }
+
+    private boolean check(Map<String, Long> baseline, Map<String, Long> measured) {
+        List<String> failures = new ArrayList<>();
+        for (Map.Entry<String, Long> entry : measured.entrySet()) {
+            String name = entry.getKey();
+            long bytes = entry.getValue();
+            Long allowed = baseline.get(name);
+            long tolerance = this.tolerances.getOrDefault(name, 0L);
+            if (allowed == null) {
+                failures.add(name + ": " + bytes + " bytes per call, not in the baseline");
+            } else if (bytes > allowed + tolerance) {
+                failures.add(name + ": " + bytes + " bytes per call, baseline " + allowed + (tolerance != 0L ? " + " + tolerance : ""));
+            } else if (bytes < allowed - tolerance) {
+                System.out.println(name + ": " + bytes + " bytes per call, below the baseline of " + allowed + "; consider lowering it");
+            }
+        }
+        for (String name : baseline.keySet()) {
+            if (!measured.containsKey(name)) {
+                System.out.println(name + ": in the baseline but no longer measured");
+            }
+        }
+        if (failures.isEmpty()) {
+            System.out.println("No allocation regressions in " + measured.size() + " cases");
+            return true;
+        }
+        System.err.println("Allocation regressions:");
+        for (String failure : failures) {
+            System.err.println("  " + failure);
+        }
+        System.err.println("Rerun with --update (-PupdateAllocationBaseline) if the new allocations are intended");
+        return false;
+    }
+
+    private static Map<String, Long> readBaseline(Path file) throws IOException {
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        }
+        Map<String, Long> baseline = new TreeMap<>();
+        for (String name : properties.stringPropertyNames()) {
+            baseline.put(name, Long.parseLong(properties.getProperty(name).trim()));
+        }
+        return baseline;
+    }
+
+    private static void writeBaseline(Path file, String javaVersion, Map<String, Long> measured) throws IOException {
+        Files.createDirectories(file.getParent());
+        try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write("# Bytes allocated per call on Java " + javaVersion + ", checked by ./gradlew checkAllocations\n");
+            writer.write("# Regenerate with ./gradlew checkAllocations -PupdateAllocationBaseline\n");
+            for (Map.Entry<String, Long> entry : new TreeMap<>(measured).entrySet()) {
+                writer.write(entry.getKey() + "=" + entry.getValue() + "\n");
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface Workload {
+
+        long run();
+    }
+
+    @FunctionalInterface
+    private interface ObjectWorkload {
+
+        Object run();
+    }
+}
@@ -0,0 +1,79 @@
+package blockposrefactor;
+
+import net.minecraft.util.BlockRotation;
+import net.minecraft.util.math.Direction;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Shows that {@link AllocationStats} costs nothing while disabled.
+ *
+ * <p>The {@code direct} benchmarks construct positions without going
+ * through instrumented methods. The {@code disabled} benchmarks call the
+ * instrumented methods in a JVM where counting is off, and should score the
+ * same as {@code direct}. The {@code enabled} benchmarks run the same code
+ * with counting on, to show what counting costs.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AllocationStatsBenchmark {
+
+    private static final String ENABLE = "-Dblockposrefactor.allocationStats=true";
+
+    private final ImmutableNewBlockPos pos = new ImmutableNewBlockPos(100, 64, -100);
+    private final MutableNewBlockPos mutable = new MutableNewBlockPos(100, 64, -100);
+
+    @Benchmark
+    public ImmutableNewBlockPos offsetChainDirect() {
+        ImmutableNewBlockPos pos = this.pos;
+        pos = new ImmutableNewBlockPos(pos.getX(), pos.getY() + 1, pos.getZ());
+        pos = new ImmutableNewBlockPos(pos.getX(), pos.getY(), pos.getZ() - 1);
+        pos = new ImmutableNewBlockPos(pos.getX() + 1, pos.getY(), pos.getZ());
+        return new ImmutableNewBlockPos(-pos.getZ(), pos.getY(), pos.getX());
+    }
+
+    @Benchmark
+    public ImmutableNewBlockPos offsetChainDisabled() {
+        return this.offsetChain();
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = ENABLE)
+    public ImmutableNewBlockPos offsetChainEnabled() {
+        return this.offsetChain();
+    }
+
+    private ImmutableNewBlockPos offsetChain() {
+        return this.pos.up().offset(Direction.NORTH).east().rotate(BlockRotation.CLOCKWISE_90);
+    }
+
+    @Benchmark
+    public ImmutableNewBlockPos toImmutableDirect() {
+        MutableNewBlockPos mutable = this.mutable;
+        return new ImmutableNewBlockPos(mutable.getX(), mutable.getY(), mutable.getZ());
+    }
+
+    @Benchmark
+    public ImmutableNewBlockPos toImmutableDisabled() {
+        return this.mutable.toImmutable();
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = ENABLE)
+    public ImmutableNewBlockPos toImmutableEnabled() {
+        return this.mutable.toImmutable();
+    }
+}
@@ -0,0 +1,44 @@
+package blockposrefactor;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares sequential and parallel streams over a box, which only scale
+ * with a splittable spliterator.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BlockBoxStreamBenchmark {
+
+    @Param({"64", "256"})
+    public int size;
+
+    private static boolean matches(NewBlockPos pos) {
+        return (pos.asLong() * 0x9e3779b97f4a7c15L >>> 60) == 0L;
+    }
+
+    @Benchmark
+    public long sequential() {
+        return NewBlockPos.stream(0, 0, 0, this.size - 1, this.size - 1, this.size - 1).filter(BlockBoxStreamBenchmark::matches).count();
+    }
+
+    @Benchmark
+    public long parallel() {
+        return NewBlockPos.stream(0, 0, 0, this.size - 1, this.size - 1, this.size - 1).parallel().filter(BlockBoxStreamBenchmark::matches).count();
+    }
+}
@@ -0,0 +1,74 @@
+package blockposrefactor;
+
+import net.minecraft.util.BlockRotation;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares transforming template positions one block position at a time
+ * with the bulk transforms of {@link BlockPosBuffer}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BlockPosBufferBenchmark {
+
+    @Param({"4096", "262144"})
+    public int size;
+
+    private ImmutableNewBlockPos[] positions;
+    private long[] packed;
+    private BlockPosBuffer buffer;
+    private final NewVec3i offset = new NewVec3i(120, 64, -340);
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42L);
+        this.positions = new ImmutableNewBlockPos[this.size];
+        this.packed = new long[this.size];
+        for (int i = 0; i < this.size; i++) {
+            this.positions[i] = new ImmutableNewBlockPos(random.nextInt(64), random.nextInt(64), random.nextInt(64));
+            this.packed[i] = this.positions[i].asLong();
+        }
+        this.buffer = new BlockPosBuffer(this.size);
+    }
+
+    @Benchmark
+    public void perPosition(Blackhole blackhole) {
+        for (ImmutableNewBlockPos pos : this.positions) {
+            ImmutableNewBlockPos placed = pos.rotate(BlockRotation.CLOCKWISE_90).add(this.offset);
+            if (placed.isWithinDistance(this.offset, 48.0D)) {
+                blackhole.consume(placed);
+            }
+        }
+    }
+
+    @Benchmark
+    public void buffer(Blackhole blackhole) {
+        BlockPosBuffer buffer = this.buffer;
+        buffer.clear();
+        for (long pos : this.packed) {
+            buffer.addPacked(pos);
+        }
+        buffer.rotate(BlockRotation.CLOCKWISE_90).translate(this.offset).retainWithinDistance(this.offset, 48.0D);
+        for (int i = 0; i < buffer.size(); i++) {
+            blackhole.consume(buffer.getX(i));
+        }
+    }
+}
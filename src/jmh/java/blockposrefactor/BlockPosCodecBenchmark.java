@@ -0,0 +1,98 @@
+package blockposrefactor;
+
+import com.google.gson.JsonElement;
+import com.mojang.datafixers.Dynamic;
+import com.mojang.datafixers.types.JsonOps;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the {@code Dynamic} serialization of block positions with {@link
+ * BlockPosCodec}.
+ *
+ * <p>For the sorted chunk-sized list used here, the list encoding takes
+ * about 1.1 bytes per position, against 8 for a plain packed long.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BlockPosCodecBenchmark {
+
+    @Param({"4096"})
+    public int size;
+
+    private ImmutableNewBlockPos[] positions;
+    private JsonElement[] serialized;
+    private long[] sorted;
+    private ByteBuffer buffer;
+    private ByteBuffer encoded;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42L);
+        this.positions = new ImmutableNewBlockPos[this.size];
+        this.serialized = new JsonElement[this.size];
+        this.sorted = new long[this.size];
+        for (int i = 0; i < this.size; i++) {
+            this.positions[i] = new ImmutableNewBlockPos(random.nextInt(16), random.nextInt(256), random.nextInt(16));
+            this.serialized[i] = this.positions[i].serialize(JsonOps.INSTANCE);
+            this.sorted[i] = this.positions[i].asLong();
+        }
+        Arrays.sort(this.sorted);
+        this.buffer = ByteBuffer.allocate(BlockPosCodec.maxEncodedSize(this.size));
+        this.encoded = ByteBuffer.allocate(BlockPosCodec.maxEncodedSize(this.size));
+        BlockPosCodec.encodeList(this.sorted, this.encoded);
+        this.encoded.flip();
+    }
+
+    @Benchmark
+    public void dynamicSerialize(Blackhole blackhole) {
+        for (ImmutableNewBlockPos pos : this.positions) {
+            blackhole.consume(pos.serialize(JsonOps.INSTANCE));
+        }
+    }
+
+    @Benchmark
+    public void dynamicDeserialize(Blackhole blackhole) {
+        for (JsonElement element : this.serialized) {
+            blackhole.consume(ImmutableNewBlockPos.deserialize(new Dynamic<>(JsonOps.INSTANCE, element)));
+        }
+    }
+
+    @Benchmark
+    public int encodeList() {
+        this.buffer.clear();
+        BlockPosCodec.encodeList(this.sorted, this.buffer);
+        return this.buffer.position();
+    }
+
+    @Benchmark
+    public void decodeList(Blackhole blackhole) {
+        this.encoded.rewind();
+        BlockPosCodec.decodeList(this.encoded, blackhole::consume);
+    }
+
+    @Benchmark
+    public void decodeListToCursor(Blackhole blackhole) {
+        this.encoded.rewind();
+        BlockPosCodec.decodeList(this.encoded, new MutableNewBlockPos(), pos -> blackhole.consume(pos.getX()));
+    }
+}
@@ -0,0 +1,261 @@
+package blockposrefactor;
+
+import com.mojang.datafixers.Dynamic;
+import com.mojang.datafixers.types.JsonOps;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Checks that {@link BlockPosCodec} round-trips positions and position lists
+ * to the same positions as {@link NewBlockPos#serialize} followed by {@link
+ * ImmutableNewBlockPos#deserialize}.
+ *
+ * <p>Single positions are checked for the coordinates at the ends of each
+ * lane of the packed long and for random coordinates, from both position
+ * implementations. Lists are checked empty, with one element, unsorted,
+ * sorted, in reverse and with duplicates, through every encode and decode
+ * overload. Lists whose count is negative or larger than the bytes that
+ * follow must be rejected before anything is allocated for them. Run by
+ * {@code ./gradlew checkBlockPosCodec}.
+ */
+public final class BlockPosCodecCheck {
+
+    private static final int RANDOM_POSITIONS = 10_000;
+    private static final int MAX_REPORTED = 20;
+
+    private int checked;
+    private int failures;
+
+    private BlockPosCodecCheck() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        BlockPosCodecCheck check = new BlockPosCodecCheck();
+        Random random = new Random(42L);
+        List<ImmutableNewBlockPos> extremes = extremes();
+        for (ImmutableNewBlockPos pos : extremes) {
+            check.checkSingle(pos);
+            check.checkSingle(pos.mutableCopy());
+        }
+        long[] randomPositions = new long[RANDOM_POSITIONS];
+        for (int i = 0; i < RANDOM_POSITIONS; i++) {
+            // the lanes fill all 64 bits, so every long is a position
+            randomPositions[i] = random.nextLong();
+            ImmutableNewBlockPos pos = ImmutableNewBlockPos.fromLong(randomPositions[i]);
+            check.checkSingle(pos);
+            check.checkSingle(pos.mutableCopy());
+        }
+
+        long[] extremeList = new long[extremes.size()];
+        for (int i = 0; i < extremeList.length; i++) {
+            extremeList[i] = extremes.get(i).asLong();
+        }
+        long[] nearby = new long[1000];
+        for (int i = 0; i < nearby.length; i++) {
+            nearby[i] = NewBlockPos.asLong(random.nextInt(64) - 32, random.nextInt(256), random.nextInt(64) - 32);
+        }
+        check.checkList("empty", new long[0]);
+        check.checkList("one origin", new long[]{0L});
+        check.checkList("one extreme", new long[]{NewBlockPos.asLong(Integer.MIN_VALUE, Integer.MIN_VALUE, Integer.MIN_VALUE)});
+        check.checkList("one random", new long[]{randomPositions[0]});
+        check.checkList("extremes", extremeList);
+        check.checkList("random", randomPositions);
+        check.checkList("nearby", nearby);
+        check.checkList("duplicates", new long[]{extremeList[0], extremeList[0], 0L, 0L, extremeList[extremeList.length - 1], extremeList[0]});
+        for (long[] list : new long[][]{extremeList, randomPositions, nearby}) {
+            long[] sorted = list.clone();
+            Arrays.sort(sorted);
+            check.checkList("sorted", sorted);
+            long[] reversed = new long[sorted.length];
+            for (int i = 0; i < sorted.length; i++) {
+                reversed[i] = sorted[sorted.length - 1 - i];
+            }
+            check.checkList("reversed", reversed);
+        }
+        check.checkBadCount("negative count", -1, 0);
+        check.checkBadCount("count past the end", 3, 2);
+        check.checkBadCount("huge count", Integer.MAX_VALUE, 8);
+
+        if (check.failures > 0) {
+            System.err.println(check.failures + " of " + check.checked + " codec round trips differ from serialize and deserialize");
+            System.exit(1);
+        }
+        System.out.println("All " + check.checked + " codec round trips match serialize and deserialize");
+    }
+
+    /**
+     * Returns the positions combining the ends and the middle of each lane of
+     * the packed long.
+     */
+    private static List<ImmutableNewBlockPos> extremes() {
+        int[] xs = lane(ImmutableNewBlockPos.SIZE_BITS_X);
+        int[] ys = lane(ImmutableNewBlockPos.SIZE_BITS_Y);
+        int[] zs = lane(ImmutableNewBlockPos.SIZE_BITS_Z);
+        List<ImmutableNewBlockPos> positions = new ArrayList<>();
+        for (int x : xs) {
+            for (int y : ys) {
+                for (int z : zs) {
+                    positions.add(new ImmutableNewBlockPos(x, y, z));
+                }
+            }
+        }
+        return positions;
+    }
+
+    private static int[] lane(int bits) {
+        int min = -(1 << bits - 1);
+        int max = (1 << bits - 1) - 1;
+        return new int[]{min, min + 1, -1, 0, 1, max - 1, max};
+    }
+
+    private static ImmutableNewBlockPos viaDynamic(NewBlockPos pos) {
+        return ImmutableNewBlockPos.deserialize(new Dynamic<>(JsonOps.INSTANCE, pos.serialize(JsonOps.INSTANCE)));
+    }
+
+    private void checkSingle(NewBlockPos pos) throws IOException {
+        ImmutableNewBlockPos expected = viaDynamic(pos);
+        this.expect("Dynamic round trip", pos, expected, new ImmutableNewBlockPos(pos.getX(), pos.getY(), pos.getZ()));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        BlockPosCodec.write(new DataOutputStream(bytes), pos);
+        byte[] encoded = bytes.toByteArray();
+        this.expect("read", pos, expected, BlockPosCodec.read(new DataInputStream(new ByteArrayInputStream(encoded))));
+        MutableNewBlockPos cursor = new MutableNewBlockPos();
+        this.expect("read into cursor", pos, expected, BlockPosCodec.read(new DataInputStream(new ByteArrayInputStream(encoded)), cursor).toImmutable());
+    }
+
+    private void checkList(String name, long[] packed) throws IOException {
+        ImmutableNewBlockPos[] expected = new ImmutableNewBlockPos[packed.length];
+        for (int i = 0; i < packed.length; i++) {
+            expected[i] = viaDynamic(ImmutableNewBlockPos.fromLong(packed[i]));
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(BlockPosCodec.maxEncodedSize(packed.length));
+        BlockPosCodec.encodeList(packed, buffer);
+        buffer.flip();
+        int encodedSize = buffer.remaining();
+        this.expectList(name + ", decodeList(ByteBuffer)", expected, BlockPosCodec.decodeList(buffer));
+        this.expectConsumed(name + ", decodeList(ByteBuffer)", buffer);
+
+        buffer.rewind();
+        long[] consumed = new long[packed.length];
+        int[] index = new int[1];
+        int count = BlockPosCodec.decodeList(buffer, pos -> consumed[index[0]++] = pos);
+        this.expectCount(name + ", decodeList(ByteBuffer, LongConsumer)", packed.length, count);
+        this.expectList(name + ", decodeList(ByteBuffer, LongConsumer)", expected, consumed);
+        this.expectConsumed(name + ", decodeList(ByteBuffer, LongConsumer)", buffer);
+
+        buffer.rewind();
+        ImmutableNewBlockPos[] cursors = new ImmutableNewBlockPos[packed.length];
+        index[0] = 0;
+        count = BlockPosCodec.decodeList(buffer, new MutableNewBlockPos(), pos -> cursors[index[0]++] = pos.toImmutable());
+        this.expectCount(name + ", decodeList(ByteBuffer, cursor, Consumer)", packed.length, count);
+        for (int i = 0; i < packed.length; i++) {
+            this.expect(name + ", decodeList(ByteBuffer, cursor, Consumer) at " + i, expected[i], expected[i], cursors[i]);
+        }
+        this.expectConsumed(name + ", decodeList(ByteBuffer, cursor, Consumer)", buffer);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        BlockPosCodec.encodeList(packed, packed.length, new DataOutputStream(bytes));
+        byte[] streamed = bytes.toByteArray();
+        this.checked++;
+        if (streamed.length != encodedSize || !Arrays.equals(streamed, Arrays.copyOf(buffer.array(), encodedSize))) {
+            this.fail(name + ": encodeList(DataOutput) wrote different bytes than encodeList(ByteBuffer)");
+        }
+        DataInputStream input = new DataInputStream(new ByteArrayInputStream(streamed));
+        Arrays.fill(consumed, 0L);
+        index[0] = 0;
+        count = BlockPosCodec.decodeList(input, pos -> consumed[index[0]++] = pos);
+        this.expectCount(name + ", decodeList(DataInput, LongConsumer)", packed.length, count);
+        this.expectList(name + ", decodeList(DataInput, LongConsumer)", expected, consumed);
+        this.checked++;
+        if (input.available() != 0) {
+            this.fail(name + ", decodeList(DataInput, LongConsumer): " + input.available() + " bytes left over");
+        }
+    }
+
+    /**
+     * Checks that a list whose count does not fit the bytes after it is
+     * rejected by the decoders.
+     */
+    private void checkBadCount(String name, int count, int payloadBytes) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream output = new DataOutputStream(bytes);
+        // the count is a varint, as written by encodeList
+        for (int value = count; ; value >>>= 7) {
+            if ((value & -128) == 0) {
+                output.writeByte(value);
+                break;
+            }
+            output.writeByte(value & 127 | 128);
+        }
+        output.write(new byte[payloadBytes]);
+        byte[] encoded = bytes.toByteArray();
+
+        this.checked++;
+        try {
+            BlockPosCodec.decodeList(ByteBuffer.wrap(encoded));
+            this.fail(name + ": decodeList(ByteBuffer) accepted a count of " + count + " with " + payloadBytes + " bytes after it");
+        } catch (IllegalArgumentException expected) {
+            // rejected before allocating
+        } catch (RuntimeException e) {
+            this.fail(name + ": decodeList(ByteBuffer) threw " + e + " instead of IllegalArgumentException");
+        }
+        this.checked++;
+        try {
+            BlockPosCodec.decodeList(ByteBuffer.wrap(encoded), pos -> { });
+            this.fail(name + ": decodeList(ByteBuffer, LongConsumer) accepted a count of " + count + " with " + payloadBytes + " bytes after it");
+        } catch (IllegalArgumentException expected) {
+            // rejected before decoding
+        } catch (RuntimeException e) {
+            this.fail(name + ": decodeList(ByteBuffer, LongConsumer) threw " + e + " instead of IllegalArgumentException");
+        }
+    }
+
+    private void expect(String operation, NewBlockPos input, ImmutableNewBlockPos expected, ImmutableNewBlockPos actual) {
+        this.checked++;
+        if (!expected.equals(actual)) {
+            this.fail(operation + " of " + input.toImmutable() + ": got " + actual + ", expected " + expected);
+        }
+    }
+
+    private void expectList(String operation, ImmutableNewBlockPos[] expected, long[] actual) {
+        this.checked++;
+        if (actual.length != expected.length) {
+            this.fail(operation + ": got " + actual.length + " positions, expected " + expected.length);
+            return;
+        }
+        for (int i = 0; i < expected.length; i++) {
+            this.expect(operation + " at " + i, expected[i], expected[i], ImmutableNewBlockPos.fromLong(actual[i]));
+        }
+    }
+
+    private void expectCount(String operation, int expected, int actual) {
+        this.checked++;
+        if (actual != expected) {
+            this.fail(operation + ": returned a count of " + actual + ", expected " + expected);
+        }
+    }
+
+    private void expectConsumed(String operation, ByteBuffer buffer) {
+        this.checked++;
+        if (buffer.hasRemaining()) {
+            this.fail(operation + ": " + buffer.remaining() + " bytes left over");
+        }
+    }
+
+    private void fail(String message) {
+        if (++this.failures <= MAX_REPORTED) {
+            System.err.println(message);
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package blockposrefactor;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link BlockPosMap}/{@link BlockPosSet} against hash collections
+ * keyed by {@link ImmutableNewBlockPos} or {@link PackedBlockPos}.
+ *
+ * <p>The {@code fill} benchmarks build a whole collection per invocation;
+ * run them with {@code -prof gc} to compare the bytes allocated per
+ * collection, which is an upper bound of its retained size.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BlockPosCollectionBenchmark {
+
+    @Param({"10000", "100000"})
+    public int size;
+
+    private ImmutableNewBlockPos[] positions;
+    private int[][] lookups;
+    private Map<ImmutableNewBlockPos, Integer> hashMap;
+    private Map<PackedBlockPos, Integer> packedHashMap;
+    private BlockPosMap<Integer> blockPosMap;
+    private Set<ImmutableNewBlockPos> hashSet;
+    private BlockPosSet blockPosSet;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42L);
+        this.positions = new ImmutableNewBlockPos[this.size];
+        this.lookups = new int[this.size][];
+        for (int i = 0; i < this.size; i++) {
+            this.positions[i] = new ImmutableNewBlockPos(random.nextInt(512) - 256, random.nextInt(256), random.nextInt(512) - 256);
+            this.lookups[i] = new int[]{random.nextInt(512) - 256, random.nextInt(256), random.nextInt(512) - 256};
+        }
+        this.hashMap = this.fillHashMap();
+        this.packedHashMap = this.fillPackedHashMap();
+        this.blockPosMap = this.fillBlockPosMap();
+        this.hashSet = this.fillHashSet();
+        this.blockPosSet = this.fillBlockPosSet();
+    }
+
+    @Benchmark
+    public Map<ImmutableNewBlockPos, Integer> fillHashMap() {
+        Map<ImmutableNewBlockPos, Integer> map = new HashMap<>();
+        for (int i = 0; i < this.positions.length; i++) {
+            map.put(this.positions[i], i);
+        }
+        return map;
+    }
+
+    @Benchmark
+    public Map<PackedBlockPos, Integer> fillPackedHashMap() {
+        Map<PackedBlockPos, Integer> map = new HashMap<>();
+        for (int i = 0; i < this.positions.length; i++) {
+            map.put(PackedBlockPos.of(this.positions[i]), i);
+        }
+        return map;
+    }
+
+    @Benchmark
+    public BlockPosMap<Integer> fillBlockPosMap() {
+        BlockPosMap<Integer> map = new BlockPosMap<>();
+        for (int i = 0; i < this.positions.length; i++) {
+            map.put(this.positions[i], i);
+        }
+        return map;
+    }
+
+    @Benchmark
+    public Set<ImmutableNewBlockPos> fillHashSet() {
+        Set<ImmutableNewBlockPos> set = new HashSet<>();
+        for (ImmutableNewBlockPos pos : this.positions) {
+            set.add(pos);
+        }
+        return set;
+    }
+
+    @Benchmark
+    public BlockPosSet fillBlockPosSet() {
+        BlockPosSet set = new BlockPosSet();
+        for (ImmutableNewBlockPos pos : this.positions) {
+            set.add(pos);
+        }
+        return set;
+    }
+
+    @Benchmark
+    public void hashMapGet(Blackhole blackhole) {
+        MutableNewBlockPos cursor = new MutableNewBlockPos();
+        for (int[] lookup : this.lookups) {
+            blackhole.consume(this.hashMap.get(cursor.set(lookup[0], lookup[1], lookup[2]).toImmutable()));
+        }
+    }
+
+    @Benchmark
+    public void packedHashMapGet(Blackhole blackhole) {
+        for (int[] lookup : this.lookups) {
+            blackhole.consume(this.packedHashMap.get(PackedBlockPos.of(lookup[0], lookup[1], lookup[2])));
+        }
+    }
+
+    @Benchmark
+    public void blockPosMapGet(Blackhole blackhole) {
+        MutableNewBlockPos cursor = new MutableNewBlockPos();
+        for (int[] lookup : this.lookups) {
+            blackhole.consume(this.blockPosMap.get(cursor.set(lookup[0], lookup[1], lookup[2])));
+        }
+    }
+
+    @Benchmark
+    public void hashSetContains(Blackhole blackhole) {
+        MutableNewBlockPos cursor = new MutableNewBlockPos();
+        for (int[] lookup : this.lookups) {
+            blackhole.consume(this.hashSet.contains(cursor.set(lookup[0], lookup[1], lookup[2]).toImmutable()));
+        }
+    }
+
+    @Benchmark
+    public void blockPosSetContains(Blackhole blackhole) {
+        MutableNewBlockPos cursor = new MutableNewBlockPos();
+        for (int[] lookup : this.lookups) {
+            blackhole.consume(this.blockPosSet.contains(cursor.set(lookup[0], lookup[1], lookup[2])));
+        }
+    }
+
+    @Benchmark
+    public void hashSetIterate(Blackhole blackhole) {
+        for (ImmutableNewBlockPos pos : this.hashSet) {
+            blackhole.consume(pos.getX());
+        }
+    }
+
+    @Benchmark
+    public void blockPosSetIterate(Blackhole blackhole) {
+        for (MutableNewBlockPos pos : this.blockPosSet) {
+            blackhole.consume(pos.getX());
+        }
+    }
+}
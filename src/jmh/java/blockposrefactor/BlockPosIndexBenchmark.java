@@ -0,0 +1,132 @@
+package blockposrefactor;
+
+import net.minecraft.util.math.BlockBox;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares box and nearest-neighbour queries on a {@link BlockPosIndex}
+ * against linear scans over an array of {@link ImmutableNewBlockPos} with
+ * {@link NewVec3i#isWithinDistance(NewVec3i, double)} and {@link
+ * NewVec3i#getSquaredDistance(double, double, double, boolean)}.
+ *
+ * <p>The points are spread over a 4096 x 256 x 4096 area; each invocation
+ * runs one query around a rotating center.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BlockPosIndexBenchmark {
+
+    private static final int QUERIES = 256;
+    private static final int QUERY_MASK = QUERIES - 1;
+    private static final double RADIUS = 32.0D;
+
+    @Param({"10000", "100000", "1000000"})
+    public int size;
+
+    private ImmutableNewBlockPos[] positions;
+    private BlockPosIndex index;
+    private ImmutableNewBlockPos[] centers;
+    private final long[] nearest = new long[8];
+    private final MutableNewBlockPos result = new MutableNewBlockPos();
+    private int query;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42L);
+        this.positions = new ImmutableNewBlockPos[this.size];
+        this.index = new BlockPosIndex(this.size);
+        for (int i = 0; i < this.size; i++) {
+            ImmutableNewBlockPos pos = new ImmutableNewBlockPos(random.nextInt(4096) - 2048, random.nextInt(256), random.nextInt(4096) - 2048);
+            this.positions[i] = pos;
+            this.index.add(pos);
+        }
+        this.centers = new ImmutableNewBlockPos[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            this.centers[i] = new ImmutableNewBlockPos(random.nextInt(4096) - 2048, random.nextInt(256), random.nextInt(4096) - 2048);
+        }
+    }
+
+    private ImmutableNewBlockPos nextCenter() {
+        return this.centers[this.query++ & QUERY_MASK];
+    }
+
+    @Benchmark
+    public void indexBox(Blackhole blackhole) {
+        ImmutableNewBlockPos center = this.nextCenter();
+        this.index.forEachPackedInBox(new BlockBox(center.getX() - 32, center.getY() - 32, center.getZ() - 32,
+                center.getX() + 32, center.getY() + 32, center.getZ() + 32), blackhole::consume);
+    }
+
+    @Benchmark
+    public void linearBox(Blackhole blackhole) {
+        ImmutableNewBlockPos center = this.nextCenter();
+        BlockBox box = new BlockBox(center.getX() - 32, center.getY() - 32, center.getZ() - 32,
+                center.getX() + 32, center.getY() + 32, center.getZ() + 32);
+        for (ImmutableNewBlockPos pos : this.positions) {
+            if (pos.getX() >= box.minX && pos.getX() <= box.maxX && pos.getY() >= box.minY && pos.getY() <= box.maxY
+                    && pos.getZ() >= box.minZ && pos.getZ() <= box.maxZ) {
+                blackhole.consume(pos);
+            }
+        }
+    }
+
+    @Benchmark
+    public boolean indexNearest() {
+        return this.index.findNearest(this.nextCenter(), RADIUS, this.result);
+    }
+
+    @Benchmark
+    public ImmutableNewBlockPos linearNearest() {
+        ImmutableNewBlockPos center = this.nextCenter();
+        ImmutableNewBlockPos best = null;
+        double bestDistance = RADIUS * RADIUS;
+        for (ImmutableNewBlockPos pos : this.positions) {
+            double distance = pos.getSquaredDistance(center.getX(), center.getY(), center.getZ(), false);
+            if (distance < bestDistance) {
+                best = pos;
+                bestDistance = distance;
+            }
+        }
+        return best;
+    }
+
+    @Benchmark
+    public int indexNearest8() {
+        ImmutableNewBlockPos center = this.nextCenter();
+        return this.index.findNearest(center.getX(), center.getY(), center.getZ(), true, Double.POSITIVE_INFINITY, this.nearest);
+    }
+
+    @Benchmark
+    public void indexWithinRadius(Blackhole blackhole) {
+        ImmutableNewBlockPos center = this.nextCenter();
+        this.index.forEachPackedWithinDistance(center.getX(), center.getY(), center.getZ(), false, RADIUS, blackhole::consume);
+    }
+
+    @Benchmark
+    public void linearWithinRadius(Blackhole blackhole) {
+        ImmutableNewBlockPos center = this.nextCenter();
+        for (ImmutableNewBlockPos pos : this.positions) {
+            if (pos.isWithinDistance(center, RADIUS)) {
+                blackhole.consume(pos);
+            }
+        }
+    }
+}
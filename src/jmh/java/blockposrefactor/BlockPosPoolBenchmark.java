@@ -0,0 +1,122 @@
+package blockposrefactor;
+
+import net.minecraft.util.math.Direction;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.CompilerControl;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * Compares scratch cursors from {@link BlockPosPool} against allocating a
+ * {@link MutableNewBlockPos} per call, in a helper that is not inlined so
+ * that escape analysis cannot remove the allocation. Run with {@code -prof
+ * gc} to compare the allocation rates.
+ *
+ * <p>The {@code findClosest} benchmarks compare {@link
+ * NewBlockPos#findClosest(NewBlockPos, int, int, Predicate)}, which walks
+ * its offset table with a pooled cursor, against the same walk with an
+ * allocated cursor, for a search that finds nothing.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BlockPosPoolBenchmark {
+
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    private final ImmutableNewBlockPos center = new ImmutableNewBlockPos(8, 8, 8);
+    private BoxBitSet solid;
+
+    @Setup
+    public void setup() {
+        this.solid = new BoxBitSet(0, 0, 0, 15, 15, 15);
+        NewBlockPos.forEachInBox(0, 0, 0, 15, 15, 15, (x, y, z) -> {
+            if ((x ^ y ^ z) % 3 == 0) {
+                this.solid.add(x, y, z);
+            }
+        });
+    }
+
+    @Benchmark
+    public int neighboursAllocated() {
+        return this.countSolidNeighboursAllocated(this.center);
+    }
+
+    @Benchmark
+    public int neighboursPooled() {
+        return this.countSolidNeighboursPooled(this.center);
+    }
+
+    @CompilerControl(CompilerControl.Mode.DONT_INLINE)
+    private int countSolidNeighboursAllocated(NewBlockPos pos) {
+        MutableNewBlockPos cursor = new MutableNewBlockPos();
+        return this.countSolidNeighbours(pos, cursor);
+    }
+
+    @CompilerControl(CompilerControl.Mode.DONT_INLINE)
+    private int countSolidNeighboursPooled(NewBlockPos pos) {
+        MutableNewBlockPos cursor = BlockPosPool.borrow();
+        try {
+            return this.countSolidNeighbours(pos, cursor);
+        } finally {
+            BlockPosPool.release(cursor);
+        }
+    }
+
+    @CompilerControl(CompilerControl.Mode.DONT_INLINE)
+    private int countSolidNeighbours(NewBlockPos pos, MutableNewBlockPos cursor) {
+        int count = 0;
+        for (Direction direction : DIRECTIONS) {
+            cursor.set(pos.getX() + direction.getOffsetX(), pos.getY() + direction.getOffsetY(), pos.getZ() + direction.getOffsetZ());
+            if (this.solid.contains(cursor)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Benchmark
+    public Optional<MutableNewBlockPos> findClosestAllocated() {
+        return this.findClosestAllocated(this.center, 4, 2, this::isSolidAbove);
+    }
+
+    @Benchmark
+    public Optional<MutableNewBlockPos> findClosestPooled() {
+        return NewBlockPos.findClosest(this.center, 4, 2, this::isSolidAbove);
+    }
+
+    private boolean isSolidAbove(NewBlockPos pos) {
+        return pos.getY() > 15 && this.solid.contains(pos);
+    }
+
+    /**
+     * The walk of {@link NewBlockPos#findClosest(NewBlockPos, int, int,
+     * Predicate)} as it was before it borrowed its cursor.
+     */
+    @CompilerControl(CompilerControl.Mode.DONT_INLINE)
+    private Optional<MutableNewBlockPos> findClosestAllocated(NewBlockPos pos, int horizontalRange, int verticalRange, Predicate<NewBlockPos> condition) {
+        long[] offsets = OutwardOffsets.get(horizontalRange, verticalRange, horizontalRange);
+        MutableNewBlockPos mutable = new MutableNewBlockPos();
+        for (long offset : offsets) {
+            if (condition.test(mutable.set(pos.getX() + NewBlockPos.unpackLongX(offset), pos.getY() + NewBlockPos.unpackLongY(offset),
+                    pos.getZ() + NewBlockPos.unpackLongZ(offset)))) {
+                return Optional.of(mutable);
+            }
+        }
+        return Optional.empty();
+    }
+}
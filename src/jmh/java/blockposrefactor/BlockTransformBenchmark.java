@@ -0,0 +1,76 @@
+package blockposrefactor;
+
+import net.minecraft.util.BlockRotation;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares placing a structure block by block through a chain of {@link
+ * NewBlockPos#rotate} and {@link NewBlockPos#add} calls against one
+ * precomposed {@link BlockTransform}, applied to a cursor or to packed
+ * positions in place.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BlockTransformBenchmark {
+
+    private static final int SIZE = 10000;
+
+    private final ImmutableNewBlockPos pivot = new ImmutableNewBlockPos(-4, 0, -4);
+    private final ImmutableNewBlockPos origin = new ImmutableNewBlockPos(1024, 64, -2048);
+    private ImmutableNewBlockPos[] positions;
+    private long[] packed;
+    private long[] scratch;
+    private BlockTransform transform;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42L);
+        this.positions = new ImmutableNewBlockPos[SIZE];
+        this.packed = new long[SIZE];
+        this.scratch = new long[SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            this.positions[i] = new ImmutableNewBlockPos(random.nextInt(32), random.nextInt(32), random.nextInt(32));
+            this.packed[i] = this.positions[i].asLong();
+        }
+        this.transform = BlockTransform.IDENTITY.add(this.pivot).rotate(BlockRotation.CLOCKWISE_90).subtract(this.pivot).add(this.origin);
+    }
+
+    @Benchmark
+    public void chain(Blackhole blackhole) {
+        for (ImmutableNewBlockPos pos : this.positions) {
+            blackhole.consume(pos.add(this.pivot).rotate(BlockRotation.CLOCKWISE_90).subtract(this.pivot).add(this.origin));
+        }
+    }
+
+    @Benchmark
+    public void transform(Blackhole blackhole) {
+        MutableNewBlockPos cursor = new MutableNewBlockPos();
+        for (ImmutableNewBlockPos pos : this.positions) {
+            blackhole.consume(this.transform.apply(pos, cursor).getX());
+        }
+    }
+
+    @Benchmark
+    public long[] transformPacked() {
+        System.arraycopy(this.packed, 0, this.scratch, 0, SIZE);
+        this.transform.applyPacked(this.scratch, 0, SIZE);
+        return this.scratch;
+    }
+}
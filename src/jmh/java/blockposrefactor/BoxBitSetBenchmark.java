@@ -0,0 +1,115 @@
+package blockposrefactor;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link BoxBitSet} with a {@code HashSet<ImmutableNewBlockPos>} for
+ * a region of known size. The {@code fill} benchmarks build a whole set per
+ * invocation; run them with {@code -prof gc} to compare their footprint.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BoxBitSetBenchmark {
+
+    @Param({"16", "48"})
+    public int radius;
+
+    private int[][] members;
+    private int[][] queries;
+    private Set<ImmutableNewBlockPos> hashSet;
+    private BoxBitSet bitSet;
+    private BoxBitSet otherBitSet;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42L);
+        int count = this.radius * this.radius * this.radius;
+        this.members = new int[count][];
+        this.queries = new int[count][];
+        for (int i = 0; i < count; i++) {
+            this.members[i] = new int[]{random.nextInt(2 * this.radius + 1) - this.radius, random.nextInt(2 * this.radius + 1) - this.radius,
+                    random.nextInt(2 * this.radius + 1) - this.radius};
+            this.queries[i] = new int[]{random.nextInt(2 * this.radius + 1) - this.radius, random.nextInt(2 * this.radius + 1) - this.radius,
+                    random.nextInt(2 * this.radius + 1) - this.radius};
+        }
+        this.hashSet = this.fillHashSet();
+        this.bitSet = this.fillBitSet();
+        this.otherBitSet = new BoxBitSet(-this.radius / 2, -this.radius / 2, -this.radius / 2, this.radius * 3 / 2, this.radius * 3 / 2, this.radius * 3 / 2);
+        for (int[] query : this.queries) {
+            if (this.otherBitSet.isInBox(query[0], query[1], query[2])) {
+                this.otherBitSet.add(query[0], query[1], query[2]);
+            }
+        }
+    }
+
+    @Benchmark
+    public Set<ImmutableNewBlockPos> fillHashSet() {
+        Set<ImmutableNewBlockPos> set = new HashSet<>();
+        for (int[] member : this.members) {
+            set.add(new ImmutableNewBlockPos(member[0], member[1], member[2]));
+        }
+        return set;
+    }
+
+    @Benchmark
+    public BoxBitSet fillBitSet() {
+        BoxBitSet set = new BoxBitSet(-this.radius, -this.radius, -this.radius, this.radius, this.radius, this.radius);
+        for (int[] member : this.members) {
+            set.add(member[0], member[1], member[2]);
+        }
+        return set;
+    }
+
+    @Benchmark
+    public void hashSetContains(Blackhole blackhole) {
+        MutableNewBlockPos cursor = new MutableNewBlockPos();
+        for (int[] query : this.queries) {
+            blackhole.consume(this.hashSet.contains(cursor.set(query[0], query[1], query[2]).toImmutable()));
+        }
+    }
+
+    @Benchmark
+    public void bitSetContains(Blackhole blackhole) {
+        MutableNewBlockPos cursor = new MutableNewBlockPos();
+        for (int[] query : this.queries) {
+            blackhole.consume(this.bitSet.contains(cursor.set(query[0], query[1], query[2])));
+        }
+    }
+
+    @Benchmark
+    public Set<ImmutableNewBlockPos> hashSetUnion() {
+        Set<ImmutableNewBlockPos> set = new HashSet<>(this.hashSet);
+        this.otherBitSet.forEach((x, y, z) -> {
+            if (this.bitSet.isInBox(x, y, z)) {
+                set.add(new ImmutableNewBlockPos(x, y, z));
+            }
+        });
+        return set;
+    }
+
+    @Benchmark
+    public BoxBitSet bitSetUnion() {
+        BoxBitSet set = new BoxBitSet(-this.radius, -this.radius, -this.radius, this.radius, this.radius, this.radius);
+        return set.addAll(this.bitSet).addAll(this.otherBitSet);
+    }
+}
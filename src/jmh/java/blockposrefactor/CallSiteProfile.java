@@ -0,0 +1,87 @@
+package blockposrefactor;
+
+import net.minecraft.util.math.BlockPos;
+
+import java.util.Random;
+
+/**
+ * The receiver type profile seen by the call sites in a benchmark.
+ *
+ * <p>Each benchmark walks a fixed array of positions; the profile decides
+ * which implementation classes appear in that array, and hence whether
+ * hotspot sees the position method calls as monomorphic, bimorphic or
+ * megamorphic.
+ */
+public enum CallSiteProfile {
+    MONOMORPHIC(1, ImmutableNewBlockPos::new),
+    BIMORPHIC(2, ImmutableNewBlockPos::new, MutableNewBlockPos::new),
+    /**
+     * Immutable and mutable positions mixed with {@link PackedBlockPos}, as if
+     * packed positions were adopted next to the other two.
+     */
+    TRIMORPHIC_PACKED(3, ImmutableNewBlockPos::new, MutableNewBlockPos::new, PackedBlockPos::of),
+    /**
+     * Only {@link PackedBlockPos}.
+     */
+    MONOMORPHIC_PACKED(1, PackedBlockPos::of),
+    MEGAMORPHIC(4, ImmutableNewBlockPos::new, MutableNewBlockPos::new, (x, y, z) -> new ImmutableNewBlockPos(x, y, z) {},
+            (x, y, z) -> new MutableNewBlockPos(x, y, z) {});
+
+    public static final int SIZE = 1024;
+    public static final int MASK = SIZE - 1;
+
+    private final int oldTypes;
+    private final Factory[] factories;
+
+    CallSiteProfile(int oldTypes, Factory... factories) {
+        this.oldTypes = oldTypes;
+        this.factories = factories;
+    }
+
+    public NewBlockPos[] createNew(long seed) {
+        Random random = new Random(seed);
+        NewBlockPos[] positions = new NewBlockPos[SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            int x = random.nextInt(2000) - 1000;
+            int y = random.nextInt(256);
+            int z = random.nextInt(2000) - 1000;
+            positions[i] = this.factories[i % this.factories.length].create(x, y, z);
+        }
+        return positions;
+    }
+
+    /**
+     * Creates old block positions with as many receiver classes as the new
+     * ones of this profile.
+     */
+    public BlockPos[] createOld(long seed) {
+        Random random = new Random(seed);
+        BlockPos[] positions = new BlockPos[SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            int x = random.nextInt(2000) - 1000;
+            int y = random.nextInt(256);
+            int z = random.nextInt(2000) - 1000;
+            switch (i % this.oldTypes) {
+                case 0:
+                default:
+                    positions[i] = new BlockPos(x, y, z);
+                    break;
+                case 1:
+                    positions[i] = new BlockPos.Mutable(x, y, z);
+                    break;
+                case 2:
+                    positions[i] = new BlockPos(x, y, z) {};
+                    break;
+                case 3:
+                    positions[i] = new BlockPos.Mutable(x, y, z) {};
+                    break;
+            }
+        }
+        return positions;
+    }
+
+    @FunctionalInterface
+    private interface Factory {
+        NewBlockPos create(int x, int y, int z);
+    }
+}
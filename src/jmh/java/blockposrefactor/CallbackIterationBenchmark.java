@@ -0,0 +1,63 @@
+package blockposrefactor;
+
+import net.minecraft.util.math.BlockBox;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the iterator based box and outward traversals with the visitor
+ * based ones.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CallbackIterationBenchmark {
+
+    @Param({"8", "32"})
+    public int range;
+
+    private final ImmutableNewBlockPos center = new ImmutableNewBlockPos(100, 64, -100);
+
+    @Benchmark
+    public void iterateBox(Blackhole blackhole) {
+        for (MutableNewBlockPos pos : NewBlockPos.iterate(0, 0, 0, this.range, this.range, this.range)) {
+            blackhole.consume(pos.getX() ^ pos.getY() ^ pos.getZ());
+        }
+    }
+
+    @Benchmark
+    public void forEachInBox(Blackhole blackhole) {
+        NewBlockPos.forEachInBox(0, 0, 0, this.range, this.range, this.range, (x, y, z) -> blackhole.consume(x ^ y ^ z));
+    }
+
+    @Benchmark
+    public void forEachPacked(Blackhole blackhole) {
+        NewBlockPos.forEachPacked(new BlockBox(0, 0, 0, this.range, this.range, this.range), blackhole::consume);
+    }
+
+    @Benchmark
+    public void iterateOutwards(Blackhole blackhole) {
+        for (MutableNewBlockPos pos : NewBlockPos.iterateOutwards(this.center, this.range, this.range, this.range)) {
+            blackhole.consume(pos.getX() ^ pos.getY() ^ pos.getZ());
+        }
+    }
+
+    @Benchmark
+    public void forEachOutwards(Blackhole blackhole) {
+        NewBlockPos.forEachOutwards(this.center, this.range, this.range, this.range, (x, y, z) -> blackhole.consume(x ^ y ^ z));
+    }
+}
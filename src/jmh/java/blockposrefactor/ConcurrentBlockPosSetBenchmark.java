@@ -0,0 +1,125 @@
+package blockposrefactor;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntConsumer;
+
+/**
+ * Compares {@link ConcurrentBlockPosSet} against {@link
+ * ConcurrentHashMap#newKeySet()} and a {@link Collections#synchronizedSet
+ * synchronized} {@link HashSet} of {@link ImmutableNewBlockPos} when several
+ * workers add to and query one shared set, like a "visited" set during
+ * parallel world generation.
+ *
+ * <p>Each invocation splits the positions across {@code threads} workers,
+ * which overlap so that some adds hit positions another worker already
+ * added. Compare scores across the {@code threads} values to see how each
+ * set scales.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConcurrentBlockPosSetBenchmark {
+
+    @Param({"1", "2", "4", "8"})
+    public int threads;
+
+    @Param({"100000"})
+    public int size;
+
+    private ImmutableNewBlockPos[] positions;
+    private ExecutorService executor;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42L);
+        this.positions = new ImmutableNewBlockPos[this.size];
+        for (int i = 0; i < this.size; i++) {
+            this.positions[i] = new ImmutableNewBlockPos(random.nextInt(128) - 64, random.nextInt(64), random.nextInt(128) - 64);
+        }
+        this.executor = Executors.newFixedThreadPool(this.threads);
+    }
+
+    @TearDown
+    public void tearDown() {
+        this.executor.shutdown();
+    }
+
+    @Benchmark
+    public ConcurrentBlockPosSet concurrentBlockPosSet() throws Exception {
+        ConcurrentBlockPosSet set = new ConcurrentBlockPosSet(BlockPosHashing.DEFAULT_CAPACITY, this.threads);
+        this.runWorkers(i -> {
+            ImmutableNewBlockPos pos = this.positions[i];
+            if (!set.contains(pos.getX(), pos.getY() + 1, pos.getZ())) {
+                set.add(pos);
+            }
+        });
+        return set;
+    }
+
+    @Benchmark
+    public Set<ImmutableNewBlockPos> concurrentHashSet() throws Exception {
+        Set<ImmutableNewBlockPos> set = ConcurrentHashMap.newKeySet();
+        this.runWorkers(i -> {
+            ImmutableNewBlockPos pos = this.positions[i];
+            if (!set.contains(pos.up())) {
+                set.add(pos);
+            }
+        });
+        return set;
+    }
+
+    @Benchmark
+    public Set<ImmutableNewBlockPos> synchronizedHashSet() throws Exception {
+        Set<ImmutableNewBlockPos> set = Collections.synchronizedSet(new HashSet<>());
+        this.runWorkers(i -> {
+            ImmutableNewBlockPos pos = this.positions[i];
+            if (!set.contains(pos.up())) {
+                set.add(pos);
+            }
+        });
+        return set;
+    }
+
+    private void runWorkers(IntConsumer action) throws Exception {
+        Future<?>[] futures = new Future<?>[this.threads];
+        int length = this.positions.length;
+        int chunk = length / this.threads;
+        for (int t = 0; t < this.threads; t++) {
+            int start = t * chunk;
+            // every worker also covers half of the next worker's range
+            int end = Math.min(length, start + chunk + chunk / 2);
+            futures[t] = this.executor.submit(() -> {
+                for (int i = start; i < end; i++) {
+                    action.accept(i);
+                }
+            });
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+    }
+}
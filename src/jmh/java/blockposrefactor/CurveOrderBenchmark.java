@@ -0,0 +1,209 @@
+package blockposrefactor;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares working through positions sorted by {@link NewBlockPos#asLong()},
+ * {@link MortonEncoding} and {@link HilbertEncoding} keys.
+ *
+ * <p>{@code neighborhoodScan} reads a position and its six neighbors from a
+ * dense grid larger than the caches, in sorted order; run it with {@code
+ * -prof perfnorm} to see the cache misses per operation.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CurveOrderBenchmark {
+
+    private static final int SIZE_XZ = 512;
+    private static final int SIZE_Y = 64;
+    private static final int COUNT = 200000;
+
+    public enum Encoding {
+        PACKED {
+            @Override long encode(int x, int y, int z) {
+                return NewBlockPos.asLong(x, y, z);
+            }
+
+            @Override long toPacked(long key) {
+                return key;
+            }
+        },
+        MORTON {
+            @Override long encode(int x, int y, int z) {
+                return MortonEncoding.encode(x, y, z);
+            }
+
+            @Override long toPacked(long key) {
+                return MortonEncoding.toPacked(key);
+            }
+        },
+        HILBERT {
+            @Override long encode(int x, int y, int z) {
+                return HilbertEncoding.encode(x, y, z);
+            }
+
+            @Override long toPacked(long key) {
+                return HilbertEncoding.toPacked(key);
+            }
+        };
+
+        abstract long encode(int x, int y, int z);
+
+        abstract long toPacked(long key);
+    }
+
+    private static int[][] randomPositions() {
+        Random random = new Random(42L);
+        int[][] positions = new int[COUNT][];
+        for (int i = 0; i < COUNT; i++) {
+            positions[i] = new int[]{random.nextInt(SIZE_XZ) - SIZE_XZ / 2, random.nextInt(SIZE_Y), random.nextInt(SIZE_XZ) - SIZE_XZ / 2};
+        }
+        return positions;
+    }
+
+    @State(Scope.Thread)
+    public static class Sorted {
+
+        @Param
+        public Encoding encoding;
+
+        long[] unsorted;
+        long[] keys;
+        int[] grid;
+
+        @Setup
+        public void setup() {
+            int[][] positions = randomPositions();
+            this.unsorted = new long[COUNT];
+            for (int i = 0; i < COUNT; i++) {
+                this.unsorted[i] = this.encoding.encode(positions[i][0], positions[i][1], positions[i][2]);
+            }
+            this.keys = this.unsorted.clone();
+            Arrays.sort(this.keys);
+            this.grid = new int[(SIZE_XZ + 2) * (SIZE_Y + 2) * (SIZE_XZ + 2)];
+            Arrays.fill(this.grid, 1);
+        }
+
+        int index(int x, int y, int z) {
+            return ((x + SIZE_XZ / 2 + 1) * (SIZE_XZ + 2) + z + SIZE_XZ / 2 + 1) * (SIZE_Y + 2) + y + 1;
+        }
+    }
+
+    @Benchmark
+    public long[] sort(Sorted state) {
+        long[] keys = state.unsorted.clone();
+        Arrays.sort(keys);
+        return keys;
+    }
+
+    @Benchmark
+    public long neighborhoodScan(Sorted state) {
+        int[] grid = state.grid;
+        long sum = 0L;
+        for (long key : state.keys) {
+            long packed = state.encoding.toPacked(key);
+            int x = NewBlockPos.unpackLongX(packed);
+            int y = NewBlockPos.unpackLongY(packed);
+            int z = NewBlockPos.unpackLongZ(packed);
+            sum += grid[state.index(x, y, z)] + grid[state.index(x - 1, y, z)] + grid[state.index(x + 1, y, z)] + grid[state.index(x, y - 1, z)]
+                    + grid[state.index(x, y + 1, z)] + grid[state.index(x, y, z - 1)] + grid[state.index(x, y, z + 1)];
+        }
+        return sum;
+    }
+
+    /**
+     * Positions sorted by packed and Morton keys, for box range scans. Hilbert
+     * keys are left out as the corners of a box do not bound its key range.
+     */
+    @State(Scope.Thread)
+    public static class Ranges {
+
+        long[] packed;
+        long[] morton;
+        int[][] boxes;
+
+        @Setup
+        public void setup() {
+            int[][] positions = randomPositions();
+            this.packed = new long[COUNT];
+            this.morton = new long[COUNT];
+            for (int i = 0; i < COUNT; i++) {
+                this.packed[i] = NewBlockPos.asLong(positions[i][0], positions[i][1], positions[i][2]);
+                this.morton[i] = MortonEncoding.encode(positions[i][0], positions[i][1], positions[i][2]);
+            }
+            Arrays.sort(this.packed);
+            Arrays.sort(this.morton);
+            Random random = new Random(7L);
+            this.boxes = new int[256][];
+            for (int i = 0; i < this.boxes.length; i++) {
+                int x = random.nextInt(SIZE_XZ - 16) - SIZE_XZ / 2;
+                int y = random.nextInt(SIZE_Y - 16);
+                int z = random.nextInt(SIZE_XZ - 16) - SIZE_XZ / 2;
+                this.boxes[i] = new int[]{x, y, z, x + 15, y + 15, z + 15};
+            }
+        }
+    }
+
+    private static int lowerBound(long[] keys, long key) {
+        int i = Arrays.binarySearch(keys, key);
+        return i < 0 ? -i - 1 : i;
+    }
+
+    private static boolean inBox(int[] box, int x, int y, int z) {
+        return x >= box[0] && y >= box[1] && z >= box[2] && x <= box[3] && y <= box[4] && z <= box[5];
+    }
+
+    /**
+     * Packed keys sort by x first, so a box scans the whole x slab.
+     */
+    @Benchmark
+    public int packedRangeScan(Ranges state) {
+        int found = 0;
+        for (int[] box : state.boxes) {
+            int end = lowerBound(state.packed, NewBlockPos.asLong(box[3] + 1, 0, 0));
+            for (int i = lowerBound(state.packed, NewBlockPos.asLong(box[0], 0, 0)); i < end; i++) {
+                long key = state.packed[i];
+                if (inBox(box, NewBlockPos.unpackLongX(key), NewBlockPos.unpackLongY(key), NewBlockPos.unpackLongZ(key))) {
+                    found++;
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Morton keys are monotonic in each axis, so a box lies between the keys
+     * of its corners.
+     */
+    @Benchmark
+    public int mortonRangeScan(Ranges state) {
+        int found = 0;
+        for (int[] box : state.boxes) {
+            int end = lowerBound(state.morton, MortonEncoding.encode(box[3], box[4], box[5]) + 1);
+            for (int i = lowerBound(state.morton, MortonEncoding.encode(box[0], box[1], box[2])); i < end; i++) {
+                long key = state.morton[i];
+                if (inBox(box, MortonEncoding.decodeX(key), MortonEncoding.decodeY(key), MortonEncoding.decodeZ(key))) {
+                    found++;
+                }
+            }
+        }
+        return found;
+    }
+}
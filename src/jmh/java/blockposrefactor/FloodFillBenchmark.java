@@ -0,0 +1,94 @@
+package blockposrefactor;
+
+import net.minecraft.util.math.Direction;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayDeque;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link FloodFill} against the usual flood fill over an {@link
+ * ArrayDeque} of {@link ImmutableNewBlockPos} and a visited {@link HashSet}.
+ *
+ * <p>Both fill the open cells of a random cube of {@code size} blocks per
+ * side, about three quarters of which are open. Run with {@code -prof gc}
+ * to compare the allocation per fill.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FloodFillBenchmark {
+
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    @Param({"16", "48"})
+    public int size;
+
+    private BoxBitSet open;
+    private final FloodFill floodFill = new FloodFill();
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42L);
+        this.open = new BoxBitSet(0, 0, 0, this.size - 1, this.size - 1, this.size - 1);
+        for (int x = 0; x < this.size; x++) {
+            for (int y = 0; y < this.size; y++) {
+                for (int z = 0; z < this.size; z++) {
+                    if (random.nextInt(4) != 0) {
+                        this.open.add(x, y, z);
+                    }
+                }
+            }
+        }
+        this.open.add(0, 0, 0);
+    }
+
+    @Benchmark
+    public int floodFillPredicate() {
+        BoxBitSet open = this.open;
+        return this.floodFill.fill(NewBlockPos.ORIGIN, open::contains);
+    }
+
+    @Benchmark
+    public int floodFillInts() {
+        BoxBitSet open = this.open;
+        return this.floodFill.fill(0, 0, 0, open::contains);
+    }
+
+    @Benchmark
+    public int dequeAndHashSet() {
+        ArrayDeque<ImmutableNewBlockPos> queue = new ArrayDeque<>();
+        Set<ImmutableNewBlockPos> visited = new HashSet<>();
+        ImmutableNewBlockPos start = NewBlockPos.ORIGIN;
+        visited.add(start);
+        queue.add(start);
+        int filled = 1;
+        while (!queue.isEmpty()) {
+            ImmutableNewBlockPos pos = queue.poll();
+            for (Direction direction : DIRECTIONS) {
+                ImmutableNewBlockPos next = pos.offset(direction);
+                if (visited.add(next) && this.open.contains(next)) {
+                    filled++;
+                    queue.add(next);
+                }
+            }
+        }
+        return filled;
+    }
+}
@@ -1,13 +1,123 @@
 package blockposrefactor;
 
+import net.minecraft.util.BlockRotation;
 import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.Vec3i;
 import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
 
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
 public class OldBlockPosBenchmark {
 
+    private static final BlockRotation[] ROTATIONS = BlockRotation.values();
+
+    @Param({"MONOMORPHIC", "BIMORPHIC", "TRIMORPHIC_PACKED", "MEGAMORPHIC"})
+    public CallSiteProfile profile;
+
+    private BlockPos[] positions;
+    private long[] packed;
+    private final Vec3i vec = new Vec3i(3, -5, 7);
+    private final Map<BlockPos, Integer> map = new HashMap<>();
+    private int index;
+
+    @Setup
+    public void setup() {
+        this.positions = this.profile.createOld(42L);
+        this.packed = new long[CallSiteProfile.SIZE];
+        for (int i = 0; i < CallSiteProfile.SIZE; i++) {
+            this.packed[i] = this.positions[i].asLong();
+            this.map.put(this.positions[i].toImmutable(), i);
+        }
+    }
+
+    private BlockPos next() {
+        return this.positions[this.index++ & CallSiteProfile.MASK];
+    }
+
+    @Benchmark
+    public void mutableCopy(Blackhole blackhole) {
+        blackhole.consume(this.next().mutableCopy());
+    }
+
+    @Benchmark
+    public void offsetChain(Blackhole blackhole) {
+        blackhole.consume(this.next().up().north().east());
+    }
+
+    @Benchmark
+    public void add(Blackhole blackhole) {
+        blackhole.consume(this.next().add(1, 2, 3));
+    }
+
+    @Benchmark
+    public void rotate(Blackhole blackhole) {
+        int i = this.index;
+        blackhole.consume(this.next().rotate(ROTATIONS[i & 3]));
+    }
+
     @Benchmark
-    public void work() {
-        new BlockPos(1, 1, 1).mutableCopy();
+    public void crossProduct(Blackhole blackhole) {
+        blackhole.consume(this.next().crossProduct(this.vec));
     }
 
+    @Benchmark
+    public void asLong(Blackhole blackhole) {
+        blackhole.consume(this.next().asLong());
+    }
+
+    @Benchmark
+    public void fromLong(Blackhole blackhole) {
+        blackhole.consume(BlockPos.fromLong(this.packed[this.index++ & CallSiteProfile.MASK]));
+    }
+
+    @Benchmark
+    public void iterate(Blackhole blackhole) {
+        BlockPos pos = this.next();
+        for (BlockPos cursor : BlockPos.iterate(pos.getX(), pos.getY(), pos.getZ(), pos.getX() + 7, pos.getY() + 7, pos.getZ() + 7)) {
+            blackhole.consume(cursor.getX());
+        }
+    }
+
+    @Benchmark
+    public void iterateOutwards(Blackhole blackhole) {
+        for (BlockPos.Mutable cursor : BlockPos.iterateOutwards(this.next(), 4, 4, 4)) {
+            blackhole.consume(cursor.getY());
+        }
+    }
+
+    @Benchmark
+    public void findClosest(Blackhole blackhole) {
+        BlockPos pos = this.next();
+        int targetY = pos.getY() + 3;
+        blackhole.consume(BlockPos.findClosest(pos, 4, 4, candidate -> candidate.getY() == targetY && candidate.getX() > pos.getX()));
+    }
+
+    @Benchmark
+    public void hashMapPut(Blackhole blackhole) {
+        blackhole.consume(this.map.put(this.next().toImmutable(), this.index));
+    }
+
+    @Benchmark
+    public void hashMapGet(Blackhole blackhole) {
+        blackhole.consume(this.map.get(this.next().toImmutable()));
+    }
 }
@@ -0,0 +1,69 @@
+package blockposrefactor;
+
+import net.minecraft.util.math.Direction;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares offsetting packed positions by unpacking and repacking them with
+ * the lane-wise arithmetic of {@link PackedPositions}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PackedArithmeticBenchmark {
+
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    private long[] positions;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42L);
+        this.positions = new long[4096];
+        for (int i = 0; i < this.positions.length; i++) {
+            this.positions[i] = NewBlockPos.asLong(random.nextInt(60000000) - 30000000, random.nextInt(256), random.nextInt(60000000) - 30000000);
+        }
+    }
+
+    private static long unpackOffset(long value, Direction direction) {
+        return NewBlockPos.asLong(NewBlockPos.unpackLongX(value) + direction.getOffsetX(), NewBlockPos.unpackLongY(value) + direction.getOffsetY(),
+                NewBlockPos.unpackLongZ(value) + direction.getOffsetZ());
+    }
+
+    @Benchmark
+    public long unpackRepack() {
+        long sum = 0L;
+        for (long position : this.positions) {
+            for (Direction direction : DIRECTIONS) {
+                sum += unpackOffset(position, direction);
+            }
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long laneArithmetic() {
+        long sum = 0L;
+        for (long position : this.positions) {
+            for (Direction direction : DIRECTIONS) {
+                sum += PackedPositions.offset(position, direction);
+            }
+        }
+        return sum;
+    }
+}
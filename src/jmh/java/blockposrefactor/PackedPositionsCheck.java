@@ -0,0 +1,167 @@
+package blockposrefactor;
+
+import net.minecraft.util.math.Direction;
+
+import java.util.Random;
+
+/**
+ * Checks the lane-wise arithmetic of {@link PackedPositions}, and the
+ * {@link NewBlockPos#offset(long, Direction)} and {@link
+ * NewBlockPos#add(long, int, int, int)} that delegate to it, against
+ * unpacking, adding and repacking each coordinate.
+ *
+ * <p>Every operation is checked for all combinations of boundary
+ * coordinates, where the lanes wrap, and boundary deltas of both signs,
+ * then for random positions and deltas. Run by {@code ./gradlew
+ * checkPackedPositions}, which fails on the first mismatching operations.
+ */
+public final class PackedPositionsCheck {
+
+    private static final int RANDOM_CASES = 1_000_000;
+    private static final int MAX_REPORTED = 20;
+
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    private int checked;
+    private int failures;
+
+    private PackedPositionsCheck() {
+    }
+
+    public static void main(String[] args) {
+        PackedPositionsCheck check = new PackedPositionsCheck();
+        int[] xs = boundaries(ImmutableNewBlockPos.SIZE_BITS_X);
+        int[] ys = boundaries(ImmutableNewBlockPos.SIZE_BITS_Y);
+        int[] zs = boundaries(ImmutableNewBlockPos.SIZE_BITS_Z);
+        int[] deltas = deltas();
+        for (int x : xs) {
+            for (int y : ys) {
+                for (int z : zs) {
+                    long value = NewBlockPos.asLong(x, y, z);
+                    check.checkPosition(value);
+                    for (int dx : deltas) {
+                        for (int dy : deltas) {
+                            for (int dz : deltas) {
+                                check.checkDelta(value, dx, dy, dz);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        Random random = new Random(42L);
+        for (int i = 0; i < RANDOM_CASES; i++) {
+            // the lanes fill all 64 bits, so every long is a position
+            long value = random.nextLong();
+            check.checkPosition(value);
+            switch (i & 3) {
+                case 0:
+                    check.checkDelta(value, random.nextInt(), random.nextInt(), random.nextInt());
+                    break;
+                case 1:
+                    check.checkDelta(value, random.nextInt(64) - 32, random.nextInt(64) - 32, random.nextInt(64) - 32);
+                    break;
+                default:
+                    check.checkDelta(value, -random.nextInt(Integer.MAX_VALUE), -random.nextInt(4096), -random.nextInt(Integer.MAX_VALUE));
+                    break;
+            }
+        }
+
+        if (check.failures > 0) {
+            System.err.println(check.failures + " of " + check.checked + " packed position operations differ from unpack, add and repack");
+            System.exit(1);
+        }
+        System.out.println("All " + check.checked + " packed position operations match unpack, add and repack");
+    }
+
+    /**
+     * Returns the coordinates around the ends and the middle of a lane of
+     * the given width.
+     */
+    private static int[] boundaries(int bits) {
+        int min = -(1 << bits - 1);
+        int max = (1 << bits - 1) - 1;
+        return new int[]{min, min + 1, min + 2, -2, -1, 0, 1, 2, max - 2, max - 1, max};
+    }
+
+    private static int[] deltas() {
+        int x = 1 << ImmutableNewBlockPos.SIZE_BITS_X - 1;
+        int y = 1 << ImmutableNewBlockPos.SIZE_BITS_Y - 1;
+        return new int[]{0, 1, 2, -1, -2, y - 1, y, -y, -y - 1, x - 1, x, -x, -x - 1, 2 * x, -2 * x, Integer.MAX_VALUE, Integer.MIN_VALUE,
+                Integer.MIN_VALUE + 1};
+    }
+
+    /**
+     * Returns the position moved by the deltas, computed by unpacking, adding
+     * and repacking.
+     */
+    private static long reference(long value, int dx, int dy, int dz) {
+        return NewBlockPos.asLong(NewBlockPos.unpackLongX(value) + dx, NewBlockPos.unpackLongY(value) + dy, NewBlockPos.unpackLongZ(value) + dz);
+    }
+
+    private void checkPosition(long value) {
+        long[] neighbors = new long[DIRECTIONS.length];
+        PackedPositions.neighbors(value, neighbors);
+        for (Direction direction : DIRECTIONS) {
+            long expected = reference(value, direction.getOffsetX(), direction.getOffsetY(), direction.getOffsetZ());
+            this.expect("PackedPositions.offset", value, direction, PackedPositions.offset(value, direction), expected);
+            this.expect("NewBlockPos.offset", value, direction, NewBlockPos.offset(value, direction), expected);
+            this.expect("PackedPositions.addDelta(delta)", value, direction, PackedPositions.addDelta(value, PackedPositions.delta(direction)), expected);
+            this.expect("PackedPositions.neighbors", value, direction, neighbors[direction.ordinal()], expected);
+            this.expect("PackedPositions.subtractDelta(delta)", value, direction, PackedPositions.subtractDelta(value, PackedPositions.delta(direction)),
+                    reference(value, -direction.getOffsetX(), -direction.getOffsetY(), -direction.getOffsetZ()));
+        }
+        this.expect("PackedPositions.up", value, Direction.UP, PackedPositions.up(value), reference(value, 0, 1, 0));
+        this.expect("PackedPositions.down", value, Direction.DOWN, PackedPositions.down(value), reference(value, 0, -1, 0));
+        this.expect("PackedPositions.north", value, Direction.NORTH, PackedPositions.north(value), reference(value, 0, 0, -1));
+        this.expect("PackedPositions.south", value, Direction.SOUTH, PackedPositions.south(value), reference(value, 0, 0, 1));
+        this.expect("PackedPositions.west", value, Direction.WEST, PackedPositions.west(value), reference(value, -1, 0, 0));
+        this.expect("PackedPositions.east", value, Direction.EAST, PackedPositions.east(value), reference(value, 1, 0, 0));
+    }
+
+    private void checkDelta(long value, int dx, int dy, int dz) {
+        long expected = reference(value, dx, dy, dz);
+        long delta = NewBlockPos.asLong(dx, dy, dz);
+        this.expect("PackedPositions.add", value, dx, dy, dz, PackedPositions.add(value, dx, dy, dz), expected);
+        this.expect("NewBlockPos.add", value, dx, dy, dz, NewBlockPos.add(value, dx, dy, dz), expected);
+        this.expect("PackedPositions.addDelta", value, dx, dy, dz, PackedPositions.addDelta(value, delta), expected);
+        this.expect("PackedPositions.subtractDelta", value, dx, dy, dz, PackedPositions.subtractDelta(value, delta), reference(value, -dx, -dy, -dz));
+        this.expect("PackedPositions.addX", value, dx, 0, 0, PackedPositions.addX(value, dx), reference(value, dx, 0, 0));
+        this.expect("PackedPositions.addY", value, 0, dy, 0, PackedPositions.addY(value, dy), reference(value, 0, dy, 0));
+        this.expect("PackedPositions.addZ", value, 0, 0, dz, PackedPositions.addZ(value, dz), reference(value, 0, 0, dz));
+        int x = NewBlockPos.unpackLongX(value);
+        int y = NewBlockPos.unpackLongY(value);
+        int z = NewBlockPos.unpackLongZ(value);
+        this.expect("PackedPositions.withX", value, dx, 0, 0, PackedPositions.withX(value, dx), NewBlockPos.asLong(dx, y, z));
+        this.expect("PackedPositions.withY", value, 0, dy, 0, PackedPositions.withY(value, dy), NewBlockPos.asLong(x, dy, z));
+        this.expect("PackedPositions.withZ", value, 0, 0, dz, PackedPositions.withZ(value, dz), NewBlockPos.asLong(x, y, dz));
+        for (Direction direction : DIRECTIONS) {
+            this.expect("PackedPositions.offset(distance)", value, direction.getOffsetX() * dx, direction.getOffsetY() * dx, direction.getOffsetZ() * dx,
+                    PackedPositions.offset(value, direction, dx),
+                    reference(value, direction.getOffsetX() * dx, direction.getOffsetY() * dx, direction.getOffsetZ() * dx));
+        }
+    }
+
+    private void expect(String operation, long value, Direction direction, long actual, long expected) {
+        this.expect(operation, value, "(" + direction + ")", actual, expected);
+    }
+
+    private void expect(String operation, long value, int dx, int dy, int dz, long actual, long expected) {
+        this.expect(operation, value, "(" + dx + ", " + dy + ", " + dz + ")", actual, expected);
+    }
+
+    private void expect(String operation, long value, String arguments, long actual, long expected) {
+        this.checked++;
+        if (actual != expected) {
+            if (++this.failures <= MAX_REPORTED) {
+                System.err.println(operation + " of " + describe(value) + " by " + arguments + ": got " + describe(actual) + ", expected "
+                        + describe(expected));
+            }
+        }
+    }
+
+    private static String describe(long value) {
+        return String.format("%016x (%d, %d, %d)", value, NewBlockPos.unpackLongX(value), NewBlockPos.unpackLongY(value), NewBlockPos.unpackLongZ(value));
+    }
+}
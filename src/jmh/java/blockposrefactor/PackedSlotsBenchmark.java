@@ -0,0 +1,128 @@
+package blockposrefactor;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Compares linear probing with compare-and-set claims over the {@link
+ * PackedSlots} in use against the same probing over an {@link
+ * AtomicLongArray}, which is what the Java 8 version of {@link PackedSlots}
+ * wraps.
+ *
+ * <p>Fork on Java 17 with the multi-release jar to compare the {@code
+ * VarHandle} slots; on Java 8 both sides use an {@link AtomicLongArray}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PackedSlotsBenchmark {
+
+    private static final int SIZE = 1 << 16;
+
+    private long[] keys;
+    private long[] lookups;
+    private AtomicLongArray atomicTable;
+    private PackedSlots slotsTable;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42L);
+        this.keys = new long[SIZE];
+        this.lookups = new long[SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            this.keys[i] = NewBlockPos.asLong(random.nextInt(1024) - 512, random.nextInt(256), random.nextInt(1024) - 512);
+            // half hits, half misses
+            this.lookups[i] = (i & 1) == 0 ? this.keys[random.nextInt(SIZE)]
+                    : NewBlockPos.asLong(random.nextInt(1024) - 512, random.nextInt(256), random.nextInt(1024) - 512);
+        }
+        this.atomicTable = this.insertAtomic();
+        this.slotsTable = this.insertSlots();
+    }
+
+    @Benchmark
+    public AtomicLongArray insertAtomic() {
+        AtomicLongArray table = new AtomicLongArray(BlockPosHashing.tableSize(SIZE));
+        int mask = table.length() - 1;
+        for (long key : this.keys) {
+            int i = (int) BlockPosHashing.mix(key) & mask;
+            for (;;) {
+                long current = table.get(i);
+                if (current == key || current == 0L && table.compareAndSet(i, 0L, key)) {
+                    break;
+                }
+                i = i + 1 & mask;
+            }
+        }
+        return table;
+    }
+
+    @Benchmark
+    public PackedSlots insertSlots() {
+        PackedSlots table = new PackedSlots(BlockPosHashing.tableSize(SIZE));
+        int mask = table.length() - 1;
+        for (long key : this.keys) {
+            int i = (int) BlockPosHashing.mix(key) & mask;
+            for (;;) {
+                long current = table.get(i);
+                if (current == key || current == 0L && table.compareAndSet(i, 0L, key)) {
+                    break;
+                }
+                i = i + 1 & mask;
+            }
+        }
+        return table;
+    }
+
+    @Benchmark
+    public int probeAtomic() {
+        AtomicLongArray table = this.atomicTable;
+        int mask = table.length() - 1;
+        int hits = 0;
+        for (long key : this.lookups) {
+            int i = (int) BlockPosHashing.mix(key) & mask;
+            long current;
+            while ((current = table.get(i)) != 0L) {
+                if (current == key) {
+                    hits++;
+                    break;
+                }
+                i = i + 1 & mask;
+            }
+        }
+        return hits;
+    }
+
+    @Benchmark
+    public int probeSlots() {
+        PackedSlots table = this.slotsTable;
+        int mask = table.length() - 1;
+        int hits = 0;
+        for (long key : this.lookups) {
+            int i = (int) BlockPosHashing.mix(key) & mask;
+            long current;
+            while ((current = table.get(i)) != 0L) {
+                if (current == key) {
+                    hits++;
+                    break;
+                }
+                i = i + 1 & mask;
+            }
+        }
+        return hits;
+    }
+}
@@ -0,0 +1,100 @@
+package blockposrefactor;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares putting positions in {@link NewVec3i#compareTo(NewVec3i)} order
+ * with a {@link TreeSet} against sorting {@link YzxEncoding} keys with
+ * {@link PackedSort#radixSort(long[], int, int, long[])} and {@link
+ * Arrays#sort(long[])}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PackedSortBenchmark {
+
+    @Param({"10000", "100000"})
+    public int size;
+
+    private ImmutableNewBlockPos[] positions;
+    private long[] keys;
+    private long[] work;
+    private long[] buffer;
+    private long[] sorted;
+    private int sortedLength;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42L);
+        this.positions = new ImmutableNewBlockPos[this.size];
+        this.keys = new long[this.size];
+        for (int i = 0; i < this.size; i++) {
+            this.positions[i] = new ImmutableNewBlockPos(random.nextInt(512) - 256, random.nextInt(256), random.nextInt(512) - 256);
+            this.keys[i] = YzxEncoding.encode(this.positions[i]);
+        }
+        this.work = new long[this.size];
+        this.buffer = new long[this.size];
+        this.sorted = this.keys.clone();
+        PackedSort.radixSort(this.sorted);
+        this.sortedLength = PackedSort.distinct(this.sorted, 0, this.sorted.length);
+    }
+
+    @Benchmark
+    public TreeSet<ImmutableNewBlockPos> treeSet() {
+        TreeSet<ImmutableNewBlockPos> set = new TreeSet<>();
+        for (ImmutableNewBlockPos pos : this.positions) {
+            set.add(pos);
+        }
+        return set;
+    }
+
+    @Benchmark
+    public int radixSort() {
+        long[] work = this.work;
+        for (int i = 0; i < work.length; i++) {
+            work[i] = YzxEncoding.encode(this.positions[i]);
+        }
+        PackedSort.radixSort(work, 0, work.length, this.buffer);
+        return PackedSort.distinct(work, 0, work.length);
+    }
+
+    @Benchmark
+    public int arraysSort() {
+        long[] work = this.work;
+        for (int i = 0; i < work.length; i++) {
+            work[i] = YzxEncoding.encode(this.positions[i]);
+        }
+        Arrays.sort(work);
+        return PackedSort.distinct(work, 0, work.length);
+    }
+
+    @Benchmark
+    public int binarySearch() {
+        long[] sorted = this.sorted;
+        int found = 0;
+        for (long key : this.keys) {
+            if (Arrays.binarySearch(sorted, 0, this.sortedLength, key) >= 0) {
+                found++;
+            }
+        }
+        return found;
+    }
+}
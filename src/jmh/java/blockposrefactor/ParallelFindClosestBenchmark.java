@@ -0,0 +1,65 @@
+package blockposrefactor;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * Compares {@link NewBlockPos#findClosest(NewBlockPos, int, int, Predicate)}
+ * against {@link NewBlockPos#findClosestParallel(NewBlockPos, int, int,
+ * Predicate)} with a condition that is expensive compared to the iteration,
+ * like a block state lookup.
+ *
+ * <p>The only match is {@code distance} blocks away along the x axis, so
+ * every position closer than that is tested.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParallelFindClosestBenchmark {
+
+    @Param({"16", "48"})
+    public int distance;
+
+    private final ImmutableNewBlockPos center = new ImmutableNewBlockPos(100, 64, -100);
+    private Predicate<NewBlockPos> condition;
+
+    @Setup
+    public void setup() {
+        int targetX = this.center.getX() + this.distance;
+        int targetY = this.center.getY();
+        int targetZ = this.center.getZ();
+        this.condition = pos -> {
+            long h = pos.asLong();
+            for (int i = 0; i < 16; i++) {
+                h = BlockPosHashing.mix(h);
+            }
+            return h != 0L && pos.getX() == targetX && pos.getY() == targetY && pos.getZ() == targetZ;
+        };
+    }
+
+    @Benchmark
+    public Optional<MutableNewBlockPos> findClosest() {
+        return NewBlockPos.findClosest(this.center, 64, 32, this.condition);
+    }
+
+    @Benchmark
+    public Optional<MutableNewBlockPos> findClosestParallel() {
+        return NewBlockPos.findClosestParallel(this.center, 64, 32, this.condition);
+    }
+}
@@ -0,0 +1,107 @@
+package blockposrefactor;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the {@link PositionKernels} in use against the portable {@link
+ * ScalarPositionKernels} in the same JVM, so both sides run on the same
+ * hardware.
+ *
+ * <p>On Java 8, or on Java 17 without {@code --add-modules
+ * jdk.incubator.vector}, both sides run the same loops; the build passes
+ * the flag and forks on Java 17 when {@code java17Home} is set.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PositionKernelsBenchmark {
+
+    @Param({"1024", "65536"})
+    public int size;
+
+    private int[] xs;
+    private int[] ys;
+    private int[] zs;
+    private long[] packed;
+    private int[] workXs;
+    private int[] workYs;
+    private int[] workZs;
+    private long[] workPacked;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42L);
+        this.xs = new int[this.size];
+        this.ys = new int[this.size];
+        this.zs = new int[this.size];
+        this.packed = new long[this.size];
+        for (int i = 0; i < this.size; i++) {
+            this.xs[i] = random.nextInt(256) - 128;
+            this.ys[i] = random.nextInt(256);
+            this.zs[i] = random.nextInt(256) - 128;
+            this.packed[i] = NewBlockPos.asLong(this.xs[i], this.ys[i], this.zs[i]);
+        }
+        this.workXs = new int[this.size];
+        this.workYs = new int[this.size];
+        this.workZs = new int[this.size];
+        this.workPacked = new long[this.size];
+    }
+
+    @Benchmark
+    public long[] packScalar() {
+        ScalarPositionKernels.pack(this.xs, this.ys, this.zs, 0, this.workPacked, 0, this.size);
+        return this.workPacked;
+    }
+
+    @Benchmark
+    public long[] pack() {
+        PositionKernels.pack(this.xs, this.ys, this.zs, 0, this.workPacked, 0, this.size);
+        return this.workPacked;
+    }
+
+    @Benchmark
+    public int[] unpackScalar() {
+        ScalarPositionKernels.unpack(this.packed, 0, this.workXs, this.workYs, this.workZs, 0, this.size);
+        return this.workXs;
+    }
+
+    @Benchmark
+    public int[] unpack() {
+        PositionKernels.unpack(this.packed, 0, this.workXs, this.workYs, this.workZs, 0, this.size);
+        return this.workXs;
+    }
+
+    @Benchmark
+    public int retainWithinDistanceScalar() {
+        this.resetWork();
+        return ScalarPositionKernels.retainWithinDistance(this.workXs, this.workYs, this.workZs, 0, this.size, 0, 0.0D, 64.0D, 0.0D, 0.5D, 64.0D);
+    }
+
+    @Benchmark
+    public int retainWithinDistance() {
+        this.resetWork();
+        return PositionKernels.retainWithinDistance(this.workXs, this.workYs, this.workZs, 0, this.size, 0, 0.0D, 64.0D, 0.0D, 0.5D, 64.0D);
+    }
+
+    private void resetWork() {
+        System.arraycopy(this.xs, 0, this.workXs, 0, this.size);
+        System.arraycopy(this.ys, 0, this.workYs, 0, this.size);
+        System.arraycopy(this.zs, 0, this.workZs, 0, this.size);
+    }
+}
@@ -0,0 +1,76 @@
+package blockposrefactor;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares visiting the positions within a radius by filtering the
+ * enclosing box with {@link NewVec3i#isWithinDistance(NewVec3i, double)}
+ * against the span-table based {@link NewBlockPos#iterateSphere(NewBlockPos,
+ * double, boolean)} and {@link NewBlockPos#forEachInSphere(NewBlockPos,
+ * double, boolean, IntTriConsumer)}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SphereIterationBenchmark {
+
+    @Param({"8", "32"})
+    public double radius;
+
+    private final ImmutableNewBlockPos center = new ImmutableNewBlockPos(100, 64, -100);
+
+    @Benchmark
+    public void filterBox(Blackhole blackhole) {
+        int r = (int) Math.ceil(this.radius);
+        ImmutableNewBlockPos center = this.center;
+        for (MutableNewBlockPos pos : NewBlockPos.iterate(center.getX() - r, center.getY() - r, center.getZ() - r,
+                center.getX() + r, center.getY() + r, center.getZ() + r)) {
+            if (pos.toImmutable().isWithinDistance(center, this.radius)) {
+                blackhole.consume(pos);
+            }
+        }
+    }
+
+    @Benchmark
+    public void filterBoxDistance(Blackhole blackhole) {
+        int r = (int) Math.ceil(this.radius);
+        ImmutableNewBlockPos center = this.center;
+        double maxSquared = this.radius * this.radius;
+        NewBlockPos.forEachInBox(center.getX() - r, center.getY() - r, center.getZ() - r, center.getX() + r, center.getY() + r,
+                center.getZ() + r, (x, y, z) -> {
+                    double dx = x - center.getX();
+                    double dy = y - center.getY();
+                    double dz = z - center.getZ();
+                    if (dx * dx + dy * dy + dz * dz < maxSquared) {
+                        blackhole.consume(x ^ y ^ z);
+                    }
+                });
+    }
+
+    @Benchmark
+    public void iterateSphere(Blackhole blackhole) {
+        for (MutableNewBlockPos pos : NewBlockPos.iterateSphere(this.center, this.radius, false)) {
+            blackhole.consume(pos);
+        }
+    }
+
+    @Benchmark
+    public void forEachInSphere(Blackhole blackhole) {
+        NewBlockPos.forEachInSphere(this.center, this.radius, false, (x, y, z) -> blackhole.consume(x ^ y ^ z));
+    }
+}
@@ -0,0 +1,114 @@
+package blockposrefactor;
+
+import net.minecraft.util.math.Direction;
+import net.minecraft.util.math.MathHelper;
+import net.minecraft.util.math.Vec3d;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares walking the blocks on a line with {@link VoxelRay} against
+ * building an {@link ImmutableNewBlockPos} from the start {@link Vec3d} and
+ * stepping it with {@link NewBlockPos#offset(Direction)}, which allocates a
+ * position per block. Run with {@code -prof gc} to compare the allocation
+ * rates.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VoxelRayBenchmark {
+
+    private static final int RAYS = 64;
+
+    @Param({"16", "64"})
+    public int length;
+
+    private Vec3d[] starts;
+    private Vec3d[] ends;
+    private int ray;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42L);
+        this.starts = new Vec3d[RAYS];
+        this.ends = new Vec3d[RAYS];
+        for (int i = 0; i < RAYS; i++) {
+            Vec3d start = new Vec3d(random.nextDouble() * 256.0D, 64.0D + random.nextDouble() * 16.0D, random.nextDouble() * 256.0D);
+            double yaw = random.nextDouble() * Math.PI * 2.0D;
+            double pitch = (random.nextDouble() - 0.5D) * Math.PI * 0.5D;
+            this.starts[i] = start;
+            this.ends[i] = new Vec3d(start.x + Math.cos(yaw) * Math.cos(pitch) * this.length, start.y + Math.sin(pitch) * this.length,
+                    start.z + Math.sin(yaw) * Math.cos(pitch) * this.length);
+        }
+    }
+
+    @Benchmark
+    public void voxelRay(Blackhole blackhole) {
+        int i = this.ray++ & RAYS - 1;
+        VoxelRay ray = new VoxelRay(this.starts[i], this.ends[i]);
+        while (ray.hasNext()) {
+            blackhole.consume(ray.next());
+            blackhole.consume(ray.getEntryFace());
+        }
+    }
+
+    @Benchmark
+    public boolean forEachOnLine(Blackhole blackhole) {
+        int i = this.ray++ & RAYS - 1;
+        return NewBlockPos.forEachOnLineUntil(this.starts[i], this.ends[i], (pos, face) -> {
+            blackhole.consume(pos);
+            blackhole.consume(face);
+            return false;
+        });
+    }
+
+    @Benchmark
+    public void immutableOffsets(Blackhole blackhole) {
+        int i = this.ray++ & RAYS - 1;
+        Vec3d start = this.starts[i];
+        Vec3d end = this.ends[i];
+        ImmutableNewBlockPos pos = new ImmutableNewBlockPos(start);
+        blackhole.consume(pos);
+        double dx = end.x - start.x;
+        double dy = end.y - start.y;
+        double dz = end.z - start.z;
+        double deltaX = dx == 0.0D ? Double.POSITIVE_INFINITY : Math.abs(1.0D / dx);
+        double deltaY = dy == 0.0D ? Double.POSITIVE_INFINITY : Math.abs(1.0D / dy);
+        double deltaZ = dz == 0.0D ? Double.POSITIVE_INFINITY : Math.abs(1.0D / dz);
+        double maxX = deltaX * (dx > 0.0D ? 1.0D - MathHelper.fractionalPart(start.x) : MathHelper.fractionalPart(start.x));
+        double maxY = deltaY * (dy > 0.0D ? 1.0D - MathHelper.fractionalPart(start.y) : MathHelper.fractionalPart(start.y));
+        double maxZ = deltaZ * (dz > 0.0D ? 1.0D - MathHelper.fractionalPart(start.z) : MathHelper.fractionalPart(start.z));
+        while (maxX <= 1.0D || maxY <= 1.0D || maxZ <= 1.0D) {
+            Direction direction;
+            if (maxX < maxY && maxX < maxZ) {
+                direction = dx > 0.0D ? Direction.EAST : Direction.WEST;
+                maxX += deltaX;
+            } else if (maxY < maxZ) {
+                direction = dy > 0.0D ? Direction.UP : Direction.DOWN;
+                maxY += deltaY;
+            } else {
+                direction = dz > 0.0D ? Direction.SOUTH : Direction.NORTH;
+                maxZ += deltaZ;
+            }
+            pos = pos.offset(direction);
+            blackhole.consume(pos);
+            blackhole.consume(direction.getOpposite());
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package blockposrefactor;
+
+import net.minecraft.util.BlockRotation;
+import net.minecraft.util.math.Direction;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Opt-in counters of block position allocations, by the factory method that
+ * allocated them.
+ *
+ * <p>Counting is enabled by starting the JVM with {@code
+ * -Dblockposrefactor.allocationStats=true}. The switch is read once into
+ * {@link #ENABLED}, a static final field, so when counting is disabled the
+ * JIT compiler folds the guarded calls away and instrumented methods cost
+ * the same as uninstrumented ones. {@code AllocationStatsBenchmark} compares
+ * both.
+ *
+ * <p>Counters are {@link LongAdder}s, so threads counting at the same time
+ * do not contend on a single field.
+ */
+public final class AllocationStats {
+
+    /**
+     * Whether allocations are counted. Instrumented code checks this field
+     * before calling any {@code record} method.
+     */
+    public static final boolean ENABLED = Boolean.getBoolean("blockposrefactor.allocationStats");
+
+    private static final Site[] SITES = Site.values();
+    private static final Direction[] DIRECTIONS = Direction.values();
+    private static final BlockRotation[] ROTATIONS = BlockRotation.values();
+    private static final LongAdder[] SITE_COUNTS = adders(SITES.length);
+    private static final LongAdder[] OFFSET_COUNTS = adders(DIRECTIONS.length);
+    private static final LongAdder[] ROTATE_COUNTS = adders(ROTATIONS.length);
+
+    private AllocationStats() {
+    }
+
+    private static LongAdder[] adders(int count) {
+        LongAdder[] adders = new LongAdder[count];
+        for (int i = 0; i < count; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+
+    static void record(Site site) {
+        SITE_COUNTS[site.ordinal()].increment();
+    }
+
+    static void recordOffset(Direction direction) {
+        SITE_COUNTS[Site.OFFSET.ordinal()].increment();
+        OFFSET_COUNTS[direction.ordinal()].increment();
+    }
+
+    static void recordRotate(BlockRotation rotation) {
+        SITE_COUNTS[Site.ROTATE.ordinal()].increment();
+        ROTATE_COUNTS[rotation.ordinal()].increment();
+    }
+
+    /**
+     * Returns the current counts. Counts updated while the snapshot is taken
+     * may or may not be included.
+     */
+    public static Snapshot snapshot() {
+        return new Snapshot(sums(SITE_COUNTS), sums(OFFSET_COUNTS), sums(ROTATE_COUNTS));
+    }
+
+    /**
+     * Resets all counts to zero.
+     */
+    public static void reset() {
+        for (LongAdder adder : SITE_COUNTS) {
+            adder.reset();
+        }
+        for (LongAdder adder : OFFSET_COUNTS) {
+            adder.reset();
+        }
+        for (LongAdder adder : ROTATE_COUNTS) {
+            adder.reset();
+        }
+    }
+
+    private static long[] sums(LongAdder[] adders) {
+        long[] sums = new long[adders.length];
+        for (int i = 0; i < adders.length; i++) {
+            sums[i] = adders[i].sum();
+        }
+        return sums;
+    }
+
+    /**
+     * The methods whose calls are counted.
+     */
+    public enum Site {
+        /**
+         * {@link NewBlockPos#toImmutable()} returning a new position.
+         */
+        TO_IMMUTABLE_COPY,
+        /**
+         * {@link NewBlockPos#toImmutable()} returning the position itself,
+         * which allocates nothing.
+         */
+        TO_IMMUTABLE_SELF,
+        /**
+         * {@link ImmutableNewBlockPos#fromLong(long)}.
+         */
+        FROM_LONG,
+        /**
+         * {@link NewBlockPos#add(int, int, int)} and the overloads built on
+         * it, for non-zero offsets.
+         */
+        ADD,
+        /**
+         * {@link NewBlockPos#offset(Direction)}, {@link
+         * NewBlockPos#offset(Direction, int)}, and the methods built on them;
+         * counted per direction as well.
+         */
+        OFFSET,
+        /**
+         * {@link NewBlockPos#rotate(BlockRotation)} for non-identity
+         * rotations; counted per rotation as well.
+         */
+        ROTATE,
+        /**
+         * {@link NewBlockPos#crossProduct(NewVec3i)}.
+         */
+        CROSS_PRODUCT,
+        /**
+         * {@link NewBlockPos#mutableCopy()}.
+         */
+        MUTABLE_COPY
+    }
+
+    /**
+     * The counts at one point in time.
+     */
+    public static final class Snapshot {
+        private final long[] sites;
+        private final long[] offsets;
+        private final long[] rotations;
+
+        Snapshot(long[] sites, long[] offsets, long[] rotations) {
+            this.sites = sites;
+            this.offsets = offsets;
+            this.rotations = rotations;
+        }
+
+        public long getCount(Site site) {
+            return this.sites[site.ordinal()];
+        }
+
+        public long getOffsetCount(Direction direction) {
+            return this.offsets[direction.ordinal()];
+        }
+
+        public long getRotateCount(BlockRotation rotation) {
+            return this.rotations[rotation.ordinal()];
+        }
+
+        /**
+         * Returns the share of {@link NewBlockPos#toImmutable()} calls that
+         * returned the position itself, or {@link Double#NaN} if there were
+         * none.
+         */
+        public double getToImmutableSelfRatio() {
+            long self = this.getCount(Site.TO_IMMUTABLE_SELF);
+            long total = self + this.getCount(Site.TO_IMMUTABLE_COPY);
+            return total == 0L ? Double.NaN : (double) self / total;
+        }
+
+        /**
+         * Returns the number of positions allocated by the counted methods.
+         */
+        public long getAllocationCount() {
+            long total = 0L;
+            for (Site site : SITES) {
+                if (site != Site.TO_IMMUTABLE_SELF) {
+                    total += this.getCount(site);
+                }
+            }
+            return total;
+        }
+
+        /**
+         * Returns the counts minus the counts of an earlier snapshot.
+         */
+        public Snapshot since(Snapshot earlier) {
+            return new Snapshot(subtract(this.sites, earlier.sites), subtract(this.offsets, earlier.offsets),
+                    subtract(this.rotations, earlier.rotations));
+        }
+
+        private static long[] subtract(long[] a, long[] b) {
+            long[] result = new long[a.length];
+            for (int i = 0; i < a.length; i++) {
+                result[i] = a[i] - b[i];
+            }
+            return result;
+        }
+
+        public Map<Site, Long> toMap() {
+            Map<Site, Long> map = new EnumMap<>(Site.class);
+            for (Site site : SITES) {
+                map.put(site, this.getCount(site));
+            }
+            return map;
+        }
+
+        @Override public String toString() {
+            StringBuilder builder = new StringBuilder("AllocationStats{");
+            for (Site site : SITES) {
+                builder.append(site).append('=').append(this.getCount(site)).append(", ");
+            }
+            for (Direction direction : DIRECTIONS) {
+                builder.append("OFFSET_").append(direction).append('=').append(this.getOffsetCount(direction)).append(", ");
+            }
+            for (BlockRotation rotation : ROTATIONS) {
+                builder.append("ROTATE_").append(rotation).append('=').append(this.getRotateCount(rotation)).append(", ");
+            }
+            return builder.append("toImmutableSelfRatio=").append(this.getToImmutableSelfRatio()).append('}').toString();
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package blockposrefactor;
+
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * A splittable spliterator over the positions of a box, in the order of
+ * {@link NewBlockPos#iterate(int, int, int, int, int, int)}: x first, then y,
+ * then z.
+ *
+ * <p>The positions are addressed by their linear index in the box. Splits
+ * happen at z slab boundaries where possible, and at x row boundaries
+ * otherwise. Each spliterator, including the ones returned by {@link
+ * #trySplit()}, hands out its own {@link MutableNewBlockPos}.
+ */
+final class BlockBoxSpliterator implements Spliterator<MutableNewBlockPos> {
+
+    private final MutableNewBlockPos pos = new MutableNewBlockPos();
+    private final int startX;
+    private final int startY;
+    private final int startZ;
+    private final int sizeX;
+    private final int sizeY;
+    private long index;
+    private final long end;
+
+    BlockBoxSpliterator(int startX, int startY, int startZ, int endX, int endY, int endZ) {
+        this(startX, startY, startZ, endX - startX + 1, endY - startY + 1, 0L,
+                (long) (endX - startX + 1) * (endY - startY + 1) * (endZ - startZ + 1));
+    }
+
+    private BlockBoxSpliterator(int startX, int startY, int startZ, int sizeX, int sizeY, long index, long end) {
+        this.startX = startX;
+        this.startY = startY;
+        this.startZ = startZ;
+        this.sizeX = sizeX;
+        this.sizeY = sizeY;
+        this.index = index;
+        this.end = end;
+    }
+
+    @Override public boolean tryAdvance(Consumer<? super MutableNewBlockPos> action) {
+        if (this.index >= this.end) {
+            return false;
+        }
+        long row = this.index / this.sizeX;
+        int x = (int) (this.index - row * this.sizeX);
+        int y = (int) (row % this.sizeY);
+        int z = (int) (row / this.sizeY);
+        ++this.index;
+        action.accept(this.pos.set(this.startX + x, this.startY + y, this.startZ + z));
+        return true;
+    }
+
+    @Override public void forEachRemaining(Consumer<? super MutableNewBlockPos> action) {
+        long i = this.index;
+        long end = this.end;
+        if (i >= end) {
+            return;
+        }
+        this.index = end;
+        long row = i / this.sizeX;
+        int x = (int) (i - row * this.sizeX);
+        int y = (int) (row % this.sizeY);
+        int z = (int) (row / this.sizeY);
+        MutableNewBlockPos pos = this.pos;
+        while (i < end) {
+            action.accept(pos.set(this.startX + x, this.startY + y, this.startZ + z));
+            ++i;
+            if (++x == this.sizeX) {
+                x = 0;
+                if (++y == this.sizeY) {
+                    y = 0;
+                    ++z;
+                }
+            }
+        }
+    }
+
+    @Override public Spliterator<MutableNewBlockPos> trySplit() {
+        if (this.end - this.index < 2L) {
+            return null;
+        }
+        long mid = this.index + (this.end - this.index >>> 1);
+        long split = this.boundary(mid, (long) this.sizeX * this.sizeY);
+        if (split < 0L) {
+            split = this.boundary(mid, this.sizeX);
+            if (split < 0L) {
+                return null;
+            }
+        }
+        BlockBoxSpliterator prefix = new BlockBoxSpliterator(this.startX, this.startY, this.startZ, this.sizeX, this.sizeY, this.index, split);
+        this.index = split;
+        return prefix;
+    }
+
+    /**
+     * Returns the multiple of {@code unit} closest to {@code mid} strictly
+     * inside the remaining range, or {@code -1} if there is none.
+     */
+    private long boundary(long mid, long unit) {
+        long down = mid / unit * unit;
+        long up = down + unit;
+        boolean downValid = down > this.index && down < this.end;
+        boolean upValid = up > this.index && up < this.end;
+        if (downValid && upValid) {
+            return mid - down <= up - mid ? down : up;
+        }
+        return downValid ? down : upValid ? up : -1L;
+    }
+
+    @Override public long estimateSize() {
+        return this.end - this.index;
+    }
+
+    @Override public int characteristics() {
+        return ORDERED | SIZED | SUBSIZED | NONNULL;
+    }
+}
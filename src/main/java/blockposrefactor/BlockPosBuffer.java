@@ -0,0 +1,290 @@
+package blockposrefactor;
+
+import net.minecraft.util.BlockMirror;
+import net.minecraft.util.BlockRotation;
+import net.minecraft.util.math.Position;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * A growable buffer of block positions stored as parallel x, y, and z
+ * arrays.
+ *
+ * <p>The bulk transforms have the same results as calling {@link
+ * NewBlockPos#add(int, int, int)}, {@link NewBlockPos#rotate(BlockRotation)},
+ * {@link NewBlockPos#crossProduct(NewVec3i)} and {@link
+ * NewVec3i#isWithinDistance(NewVec3i, double)} on every position, but work in
+ * place as plain loops over the arrays instead of creating a block position
+ * per step. Positions are read back through a reused {@link
+ * MutableNewBlockPos}.
+ *
+ * <p>Packing, unpacking and the distance filter run through {@link
+ * PositionKernels}, which use the Vector API on Java 17 and later.
+ */
+public class BlockPosBuffer {
+
+    private int[] xs;
+    private int[] ys;
+    private int[] zs;
+    private int size;
+
+    public BlockPosBuffer() {
+        this(16);
+    }
+
+    public BlockPosBuffer(int capacity) {
+        this.xs = new int[capacity];
+        this.ys = new int[capacity];
+        this.zs = new int[capacity];
+    }
+
+    /**
+     * Creates a buffer holding the given {@linkplain NewBlockPos#asLong()
+     * packed} positions.
+     */
+    public static BlockPosBuffer fromPacked(long[] packed) {
+        return new BlockPosBuffer(packed.length).addAllPacked(packed, 0, packed.length);
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    public void clear() {
+        this.size = 0;
+    }
+
+    public BlockPosBuffer add(int x, int y, int z) {
+        if (this.size == this.xs.length) {
+            this.grow(this.size + 1);
+        }
+        this.xs[this.size] = x;
+        this.ys[this.size] = y;
+        this.zs[this.size] = z;
+        this.size++;
+        return this;
+    }
+
+    public BlockPosBuffer add(NewBlockPos pos) {
+        return this.add(pos.getX(), pos.getY(), pos.getZ());
+    }
+
+    public BlockPosBuffer addPacked(long pos) {
+        return this.add(NewBlockPos.unpackLongX(pos), NewBlockPos.unpackLongY(pos), NewBlockPos.unpackLongZ(pos));
+    }
+
+    /**
+     * Appends the {@linkplain NewBlockPos#asLong() packed} positions in the
+     * range {@code [from, to)} of the array.
+     */
+    public BlockPosBuffer addAllPacked(long[] packed, int from, int to) {
+        if (from < 0 || to > packed.length || from > to) {
+            throw new IndexOutOfBoundsException("Range [" + from + ", " + to + ") out of bounds for length " + packed.length);
+        }
+        int count = to - from;
+        int end = this.size + count;
+        if (end > this.xs.length) {
+            this.grow(end);
+        }
+        PositionKernels.unpack(packed, from, this.xs, this.ys, this.zs, this.size, count);
+        this.size = end;
+        return this;
+    }
+
+    public int getX(int index) {
+        this.checkIndex(index);
+        return this.xs[index];
+    }
+
+    public int getY(int index) {
+        this.checkIndex(index);
+        return this.ys[index];
+    }
+
+    public int getZ(int index) {
+        this.checkIndex(index);
+        return this.zs[index];
+    }
+
+    public long getPacked(int index) {
+        this.checkIndex(index);
+        return NewBlockPos.asLong(this.xs[index], this.ys[index], this.zs[index]);
+    }
+
+    /**
+     * Sets the {@code cursor} to the position at the {@code index}.
+     */
+    public MutableNewBlockPos get(int index, MutableNewBlockPos cursor) {
+        this.checkIndex(index);
+        return cursor.set(this.xs[index], this.ys[index], this.zs[index]);
+    }
+
+    public void set(int index, int x, int y, int z) {
+        this.checkIndex(index);
+        this.xs[index] = x;
+        this.ys[index] = y;
+        this.zs[index] = z;
+    }
+
+    /**
+     * Writes the {@linkplain NewBlockPos#asLong() packed} positions into a
+     * new array.
+     */
+    public long[] toPacked() {
+        long[] packed = new long[this.size];
+        PositionKernels.pack(this.xs, this.ys, this.zs, 0, packed, 0, this.size);
+        return packed;
+    }
+
+    public void forEach(IntTriConsumer action) {
+        for (int i = 0; i < this.size; i++) {
+            action.accept(this.xs[i], this.ys[i], this.zs[i]);
+        }
+    }
+
+    /**
+     * Calls the {@code action} for each position, reusing a single mutable
+     * block position.
+     */
+    public void forEach(Consumer<? super MutableNewBlockPos> action) {
+        MutableNewBlockPos cursor = new MutableNewBlockPos();
+        for (int i = 0; i < this.size; i++) {
+            action.accept(cursor.set(this.xs[i], this.ys[i], this.zs[i]));
+        }
+    }
+
+    public BlockPosBuffer translate(int dx, int dy, int dz) {
+        add(this.xs, this.size, dx);
+        add(this.ys, this.size, dy);
+        add(this.zs, this.size, dz);
+        return this;
+    }
+
+    public BlockPosBuffer translate(NewVec3i offset) {
+        return this.translate(offset.getX(), offset.getY(), offset.getZ());
+    }
+
+    /**
+     * Rotates all positions around the origin, like {@link
+     * NewBlockPos#rotate(BlockRotation)}.
+     */
+    public BlockPosBuffer rotate(BlockRotation rotation) {
+        int[] xs = this.xs;
+        switch (rotation) {
+            case NONE:
+            default:
+                break;
+            case CLOCKWISE_90:
+                this.xs = this.zs;
+                this.zs = xs;
+                negate(this.xs, this.size);
+                break;
+            case CLOCKWISE_180:
+                negate(this.xs, this.size);
+                negate(this.zs, this.size);
+                break;
+            case COUNTERCLOCKWISE_90:
+                this.xs = this.zs;
+                this.zs = xs;
+                negate(this.zs, this.size);
+                break;
+        }
+        return this;
+    }
+
+    /**
+     * Mirrors all positions through the origin the way structure templates
+     * are mirrored: {@link BlockMirror#LEFT_RIGHT} negates z and {@link
+     * BlockMirror#FRONT_BACK} negates x.
+     */
+    public BlockPosBuffer mirror(BlockMirror mirror) {
+        switch (mirror) {
+            case LEFT_RIGHT:
+                negate(this.zs, this.size);
+                break;
+            case FRONT_BACK:
+                negate(this.xs, this.size);
+                break;
+            default:
+                break;
+        }
+        return this;
+    }
+
+    /**
+     * Replaces every position with its cross product with {@code vec}, like
+     * {@link NewBlockPos#crossProduct(NewVec3i)}.
+     */
+    public BlockPosBuffer crossProduct(NewVec3i vec) {
+        int vx = vec.getX();
+        int vy = vec.getY();
+        int vz = vec.getZ();
+        int[] xs = this.xs;
+        int[] ys = this.ys;
+        int[] zs = this.zs;
+        for (int i = 0; i < this.size; i++) {
+            int x = xs[i];
+            int y = ys[i];
+            int z = zs[i];
+            xs[i] = y * vz - z * vy;
+            ys[i] = z * vx - x * vz;
+            zs[i] = x * vy - y * vx;
+        }
+        return this;
+    }
+
+    /**
+     * Keeps only the positions for which {@link
+     * NewVec3i#isWithinDistance(NewVec3i, double)} with {@code center} holds,
+     * preserving their order.
+     */
+    public BlockPosBuffer retainWithinDistance(NewVec3i center, double distance) {
+        return this.retainWithinDistance(center.getX(), center.getY(), center.getZ(), 0.0D, distance);
+    }
+
+    /**
+     * Keeps only the positions for which {@link
+     * NewVec3i#isWithinDistance(Position, double)} with {@code pos} holds,
+     * preserving their order.
+     */
+    public BlockPosBuffer retainWithinDistance(Position pos, double distance) {
+        return this.retainWithinDistance(pos.getX(), pos.getY(), pos.getZ(), 0.5D, distance);
+    }
+
+    private BlockPosBuffer retainWithinDistance(double cx, double cy, double cz, double offset, double distance) {
+        this.size = PositionKernels.retainWithinDistance(this.xs, this.ys, this.zs, 0, this.size, 0, cx, cy, cz, offset, distance);
+        return this;
+    }
+
+    private static void add(int[] values, int size, int delta) {
+        if (delta != 0) {
+            for (int i = 0; i < size; i++) {
+                values[i] += delta;
+            }
+        }
+    }
+
+    private static void negate(int[] values, int size) {
+        for (int i = 0; i < size; i++) {
+            values[i] = -values[i];
+        }
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= this.size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + this.size);
+        }
+    }
+
+    private void grow(int minCapacity) {
+        int capacity = Math.max(minCapacity, Math.max(16, this.xs.length + (this.xs.length >> 1)));
+        this.xs = Arrays.copyOf(this.xs, capacity);
+        this.ys = Arrays.copyOf(this.ys, capacity);
+        this.zs = Arrays.copyOf(this.zs, capacity);
+    }
+}
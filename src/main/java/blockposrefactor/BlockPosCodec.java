@@ -0,0 +1,233 @@
+package blockposrefactor;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+
+/**
+ * A compact binary codec for block positions that does not go through
+ * {@link NewBlockPos#serialize(com.mojang.datafixers.types.DynamicOps)}.
+ *
+ * <p>A single position is written as its {@linkplain NewBlockPos#asLong()
+ * packed long}. A position list is written as a varint count followed by the
+ * differences between consecutive packed positions as zig-zag varints;
+ * sorting the list first keeps the differences, and hence the encoding,
+ * small. Lists in any order round-trip exactly.
+ */
+public final class BlockPosCodec {
+
+    private static final int MAX_VAR_LONG_BYTES = 10;
+    private static final int MAX_VAR_INT_BYTES = 5;
+
+    private BlockPosCodec() {
+    }
+
+    public static void write(DataOutput output, NewBlockPos pos) throws IOException {
+        output.writeLong(pos.asLong());
+    }
+
+    public static ImmutableNewBlockPos read(DataInput input) throws IOException {
+        return ImmutableNewBlockPos.fromLong(input.readLong());
+    }
+
+    public static MutableNewBlockPos read(DataInput input, MutableNewBlockPos pos) throws IOException {
+        return pos.set(input.readLong());
+    }
+
+    /**
+     * Returns the largest number of bytes {@link #encodeList(long[], int,
+     * ByteBuffer)} can write for {@code count} positions.
+     */
+    public static int maxEncodedSize(int count) {
+        return MAX_VAR_INT_BYTES + count * MAX_VAR_LONG_BYTES;
+    }
+
+    public static void encodeList(long[] packed, ByteBuffer buffer) {
+        encodeList(packed, packed.length, buffer);
+    }
+
+    /**
+     * Encodes the first {@code count} packed positions to the buffer.
+     *
+     * @throws java.nio.BufferOverflowException if the buffer runs out of
+     * space
+     */
+    public static void encodeList(long[] packed, int count, ByteBuffer buffer) {
+        writeVarInt(buffer, count);
+        long previous = 0L;
+        for (int i = 0; i < count; i++) {
+            writeVarLong(buffer, zigZag(packed[i] - previous));
+            previous = packed[i];
+        }
+    }
+
+    public static void encodeList(long[] packed, int count, DataOutput output) throws IOException {
+        writeVarInt(output, count);
+        long previous = 0L;
+        for (int i = 0; i < count; i++) {
+            writeVarLong(output, zigZag(packed[i] - previous));
+            previous = packed[i];
+        }
+    }
+
+    /**
+     * Decodes a position list from the buffer, passing each packed position
+     * to the {@code action}.
+     *
+     * @return the number of positions decoded
+     * @throws IllegalArgumentException if the encoded count is negative or
+     * larger than the bytes left in the buffer
+     */
+    public static int decodeList(ByteBuffer buffer, LongConsumer action) {
+        int count = readCount(buffer);
+        long pos = 0L;
+        for (int i = 0; i < count; i++) {
+            pos += unZigZag(readVarLong(buffer));
+            action.accept(pos);
+        }
+        return count;
+    }
+
+    /**
+     * Decodes a position list from the buffer, passing each position to the
+     * {@code action} through the given mutable block position.
+     *
+     * @return the number of positions decoded
+     */
+    public static int decodeList(ByteBuffer buffer, MutableNewBlockPos cursor, Consumer<? super MutableNewBlockPos> action) {
+        return decodeList(buffer, pos -> action.accept(cursor.set(pos)));
+    }
+
+    public static int decodeList(DataInput input, LongConsumer action) throws IOException {
+        int count = readVarInt(input);
+        if (count < 0) {
+            throw new IOException("Negative position count " + count);
+        }
+        long pos = 0L;
+        for (int i = 0; i < count; i++) {
+            pos += unZigZag(readVarLong(input));
+            action.accept(pos);
+        }
+        return count;
+    }
+
+    /**
+     * Decodes a position list from the buffer into a new array.
+     *
+     * @throws IllegalArgumentException if the encoded count is negative or
+     * larger than the bytes left in the buffer
+     */
+    public static long[] decodeList(ByteBuffer buffer) {
+        int count = readCount(buffer);
+        long[] result = new long[count];
+        long pos = 0L;
+        for (int i = 0; i < count; i++) {
+            pos += unZigZag(readVarLong(buffer));
+            result[i] = pos;
+        }
+        return result;
+    }
+
+    /**
+     * Reads the position count of a list, checking it before anything is
+     * allocated for it: each position takes at least one byte.
+     */
+    private static int readCount(ByteBuffer buffer) {
+        int count = readVarInt(buffer);
+        if (count < 0 || count > buffer.remaining()) {
+            throw new IllegalArgumentException("Position count " + count + " does not fit the " + buffer.remaining() + " bytes left");
+        }
+        return count;
+    }
+
+    private static long zigZag(long value) {
+        return value << 1 ^ value >> 63;
+    }
+
+    private static long unZigZag(long value) {
+        return value >>> 1 ^ -(value & 1L);
+    }
+
+    private static void writeVarInt(ByteBuffer buffer, int value) {
+        while ((value & -128) != 0) {
+            buffer.put((byte) (value & 127 | 128));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    private static void writeVarLong(ByteBuffer buffer, long value) {
+        while ((value & -128L) != 0L) {
+            buffer.put((byte) ((int) value & 127 | 128));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    private static void writeVarInt(DataOutput output, int value) throws IOException {
+        while ((value & -128) != 0) {
+            output.writeByte(value & 127 | 128);
+            value >>>= 7;
+        }
+        output.writeByte(value);
+    }
+
+    private static void writeVarLong(DataOutput output, long value) throws IOException {
+        while ((value & -128L) != 0L) {
+            output.writeByte((int) value & 127 | 128);
+            value >>>= 7;
+        }
+        output.writeByte((int) value);
+    }
+
+    private static int readVarInt(ByteBuffer buffer) {
+        int result = 0;
+        for (int i = 0; i < MAX_VAR_INT_BYTES; i++) {
+            byte b = buffer.get();
+            result |= (b & 127) << i * 7;
+            if ((b & 128) == 0) {
+                return result;
+            }
+        }
+        throw new IllegalArgumentException("VarInt too big");
+    }
+
+    private static long readVarLong(ByteBuffer buffer) {
+        long result = 0L;
+        for (int i = 0; i < MAX_VAR_LONG_BYTES; i++) {
+            byte b = buffer.get();
+            result |= (long) (b & 127) << i * 7;
+            if ((b & 128) == 0) {
+                return result;
+            }
+        }
+        throw new IllegalArgumentException("VarLong too big");
+    }
+
+    private static int readVarInt(DataInput input) throws IOException {
+        int result = 0;
+        for (int i = 0; i < MAX_VAR_INT_BYTES; i++) {
+            byte b = input.readByte();
+            result |= (b & 127) << i * 7;
+            if ((b & 128) == 0) {
+                return result;
+            }
+        }
+        throw new IOException("VarInt too big");
+    }
+
+    private static long readVarLong(DataInput input) throws IOException {
+        long result = 0L;
+        for (int i = 0; i < MAX_VAR_LONG_BYTES; i++) {
+            byte b = input.readByte();
+            result |= (long) (b & 127) << i * 7;
+            if ((b & 128) == 0) {
+                return result;
+            }
+        }
+        throw new IOException("VarLong too big");
+    }
+}
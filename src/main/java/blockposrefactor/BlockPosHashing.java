@@ -0,0 +1,58 @@
+package blockposrefactor;
+
+/**
+ * Shared helpers for the open-addressing tables keyed by {@link
+ * NewBlockPos#asLong() packed block positions}.
+ *
+ * <p>The packed value {@code 0L} (the {@link NewBlockPos#ORIGIN origin}) is
+ * used as the empty slot marker; tables track the presence of the origin
+ * separately.
+ */
+final class BlockPosHashing {
+
+    static final int DEFAULT_CAPACITY = 16;
+    static final float LOAD_FACTOR = 0.75F;
+    static final int MAXIMUM_CAPACITY = 1 << 30;
+
+    private BlockPosHashing() {
+    }
+
+    /**
+     * Mixes all bits of a packed position, so that the low bits used for the
+     * slot index depend on all three coordinates.
+     *
+     * <p>This is the finalizer of MurmurHash3.
+     */
+    static long mix(long value) {
+        long h = value;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * Returns the power-of-two table length able to hold {@code expected}
+     * entries without exceeding the load factor.
+     */
+    static int tableSize(int expected) {
+        if (expected < 0) {
+            throw new IllegalArgumentException("Expected size must be non-negative: " + expected);
+        }
+        long needed = (long) Math.ceil(expected / (double) LOAD_FACTOR);
+        if (needed > MAXIMUM_CAPACITY) {
+            throw new IllegalArgumentException("Expected size too large: " + expected);
+        }
+        int size = DEFAULT_CAPACITY;
+        while (size < needed) {
+            size <<= 1;
+        }
+        return size;
+    }
+
+    static int maxFill(int tableSize) {
+        return Math.min(tableSize - 1, (int) Math.ceil(tableSize * LOAD_FACTOR));
+    }
+}
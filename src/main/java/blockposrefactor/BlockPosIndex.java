@@ -0,0 +1,521 @@
+package blockposrefactor;
+
+import net.minecraft.util.math.BlockBox;
+import net.minecraft.util.math.Position;
+
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+
+/**
+ * A spatial index of block positions, bucketed by chunk section, for range
+ * and nearest-neighbour queries over large sets of positions.
+ *
+ * <p>Positions are kept {@linkplain NewBlockPos#asLong() packed} in one
+ * bucket per 16x16x16 section, and queries only look at the buckets that
+ * can hold a result. Range queries hand results to a visitor instead of
+ * building a list.
+ *
+ * <p>Distances follow {@link NewVec3i#getSquaredDistance(double, double,
+ * double, boolean)}: with {@code treatAsBlockPos}, an indexed position is
+ * measured from its block center, and a position is within a distance when
+ * its squared distance is strictly less than the squared distance, as in
+ * {@link NewVec3i#isWithinDistance(NewVec3i, double)}. Positions at equal
+ * distances are ordered by their packed value.
+ */
+public class BlockPosIndex {
+
+    private static final int SECTION_BITS = 4;
+    private static final int SECTION_SIZE = 1 << SECTION_BITS;
+
+    private final BlockPosSet positions;
+    private final BlockPosMap<Bucket> bucketsBySection;
+    private Bucket[] buckets = new Bucket[BlockPosHashing.DEFAULT_CAPACITY];
+    private int bucketCount;
+    // the sections any bucket has been in since the last clear
+    private int minSectionX = Integer.MAX_VALUE;
+    private int minSectionY = Integer.MAX_VALUE;
+    private int minSectionZ = Integer.MAX_VALUE;
+    private int maxSectionX = Integer.MIN_VALUE;
+    private int maxSectionY = Integer.MIN_VALUE;
+    private int maxSectionZ = Integer.MIN_VALUE;
+
+    public BlockPosIndex() {
+        this(BlockPosHashing.DEFAULT_CAPACITY);
+    }
+
+    public BlockPosIndex(int expectedSize) {
+        this.positions = new BlockPosSet(expectedSize);
+        this.bucketsBySection = new BlockPosMap<>();
+    }
+
+    public int size() {
+        return this.positions.size();
+    }
+
+    public boolean isEmpty() {
+        return this.positions.isEmpty();
+    }
+
+    public boolean add(NewBlockPos pos) {
+        return this.add(NewBlockPos.asLong(pos.getX(), pos.getY(), pos.getZ()));
+    }
+
+    public boolean add(int x, int y, int z) {
+        return this.add(NewBlockPos.asLong(x, y, z));
+    }
+
+    /**
+     * Adds a packed block position to this index.
+     *
+     * @return {@code true} if the position was not present before
+     */
+    public boolean add(long pos) {
+        if (!this.positions.add(pos)) {
+            return false;
+        }
+        long section = sectionKey(pos);
+        Bucket bucket = this.bucketsBySection.get(section);
+        if (bucket == null) {
+            bucket = new Bucket(section);
+            this.bucketsBySection.put(section, bucket);
+            if (this.bucketCount == this.buckets.length) {
+                this.buckets = Arrays.copyOf(this.buckets, this.bucketCount << 1);
+            }
+            bucket.index = this.bucketCount;
+            this.buckets[this.bucketCount++] = bucket;
+            this.minSectionX = Math.min(this.minSectionX, bucket.x);
+            this.minSectionY = Math.min(this.minSectionY, bucket.y);
+            this.minSectionZ = Math.min(this.minSectionZ, bucket.z);
+            this.maxSectionX = Math.max(this.maxSectionX, bucket.x);
+            this.maxSectionY = Math.max(this.maxSectionY, bucket.y);
+            this.maxSectionZ = Math.max(this.maxSectionZ, bucket.z);
+        }
+        bucket.add(pos);
+        return true;
+    }
+
+    public boolean contains(NewBlockPos pos) {
+        return this.positions.contains(pos);
+    }
+
+    public boolean contains(int x, int y, int z) {
+        return this.positions.contains(x, y, z);
+    }
+
+    public boolean contains(long pos) {
+        return this.positions.contains(pos);
+    }
+
+    public boolean remove(NewBlockPos pos) {
+        return this.remove(NewBlockPos.asLong(pos.getX(), pos.getY(), pos.getZ()));
+    }
+
+    public boolean remove(int x, int y, int z) {
+        return this.remove(NewBlockPos.asLong(x, y, z));
+    }
+
+    /**
+     * Removes a packed block position from this index.
+     *
+     * @return {@code true} if the position was present
+     */
+    public boolean remove(long pos) {
+        if (!this.positions.remove(pos)) {
+            return false;
+        }
+        long section = sectionKey(pos);
+        Bucket bucket = this.bucketsBySection.get(section);
+        bucket.remove(pos);
+        if (bucket.size == 0) {
+            this.bucketsBySection.remove(section);
+            Bucket last = this.buckets[--this.bucketCount];
+            this.buckets[bucket.index] = last;
+            last.index = bucket.index;
+            this.buckets[this.bucketCount] = null;
+        }
+        return true;
+    }
+
+    public void clear() {
+        this.positions.clear();
+        this.bucketsBySection.clear();
+        Arrays.fill(this.buckets, 0, this.bucketCount, null);
+        this.bucketCount = 0;
+        this.minSectionX = this.minSectionY = this.minSectionZ = Integer.MAX_VALUE;
+        this.maxSectionX = this.maxSectionY = this.maxSectionZ = Integer.MIN_VALUE;
+    }
+
+    /**
+     * Calls the {@code visitor} for each position in this index within the
+     * {@code box}, in no particular order.
+     */
+    public void forEachInBox(BlockBox box, IntTriConsumer visitor) {
+        this.forEachPackedInBox(box, pos -> visitor.accept(NewBlockPos.unpackLongX(pos), NewBlockPos.unpackLongY(pos), NewBlockPos.unpackLongZ(pos)));
+    }
+
+    /**
+     * Calls the {@code action} for each packed position in this index within
+     * the {@code box}, in no particular order.
+     */
+    public void forEachPackedInBox(BlockBox box, LongConsumer action) {
+        int minX = box.minX;
+        int minY = box.minY;
+        int minZ = box.minZ;
+        int maxX = box.maxX;
+        int maxY = box.maxY;
+        int maxZ = box.maxZ;
+        int minSectionX = minX >> SECTION_BITS;
+        int minSectionY = minY >> SECTION_BITS;
+        int minSectionZ = minZ >> SECTION_BITS;
+        int maxSectionX = maxX >> SECTION_BITS;
+        int maxSectionY = maxY >> SECTION_BITS;
+        int maxSectionZ = maxZ >> SECTION_BITS;
+        long sections = (long) (maxSectionX - minSectionX + 1) * (maxSectionY - minSectionY + 1) * (maxSectionZ - minSectionZ + 1);
+        if (sections > this.bucketCount) {
+            for (int i = 0; i < this.bucketCount; i++) {
+                Bucket bucket = this.buckets[i];
+                if (bucket.x >= minSectionX && bucket.x <= maxSectionX && bucket.y >= minSectionY && bucket.y <= maxSectionY
+                        && bucket.z >= minSectionZ && bucket.z <= maxSectionZ) {
+                    bucket.forEachInBox(minX, minY, minZ, maxX, maxY, maxZ, action);
+                }
+            }
+            return;
+        }
+        for (int sz = minSectionZ; sz <= maxSectionZ; sz++) {
+            for (int sy = minSectionY; sy <= maxSectionY; sy++) {
+                for (int sx = minSectionX; sx <= maxSectionX; sx++) {
+                    Bucket bucket = this.bucketsBySection.get(NewBlockPos.asLong(sx, sy, sz));
+                    if (bucket != null) {
+                        bucket.forEachInBox(minX, minY, minZ, maxX, maxY, maxZ, action);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Calls the {@code action} for each packed position in this index within
+     * the {@code distance} of the given point, in no particular order.
+     */
+    public void forEachPackedWithinDistance(double x, double y, double z, boolean treatAsBlockPos, double distance, LongConsumer action) {
+        double maxSquared = distance * distance;
+        // the distance is only compared squared, so a negative one counts like its absolute value
+        double radius = Math.abs(distance);
+        double offset = treatAsBlockPos ? 0.5D : 0.0D;
+        int minSectionX = floorSection(x - offset - radius);
+        int minSectionY = floorSection(y - offset - radius);
+        int minSectionZ = floorSection(z - offset - radius);
+        int maxSectionX = floorSection(x - offset + radius);
+        int maxSectionY = floorSection(y - offset + radius);
+        int maxSectionZ = floorSection(z - offset + radius);
+        long sections = (long) (maxSectionX - minSectionX + 1) * (maxSectionY - minSectionY + 1) * (maxSectionZ - minSectionZ + 1);
+        if (sections > this.bucketCount) {
+            for (int i = 0; i < this.bucketCount; i++) {
+                Bucket bucket = this.buckets[i];
+                if (bucket.squaredDistanceTo(x, y, z, offset) < maxSquared) {
+                    bucket.forEachWithin(x, y, z, offset, maxSquared, action);
+                }
+            }
+            return;
+        }
+        for (int sz = minSectionZ; sz <= maxSectionZ; sz++) {
+            for (int sy = minSectionY; sy <= maxSectionY; sy++) {
+                for (int sx = minSectionX; sx <= maxSectionX; sx++) {
+                    Bucket bucket = this.bucketsBySection.get(NewBlockPos.asLong(sx, sy, sz));
+                    if (bucket != null && bucket.squaredDistanceTo(x, y, z, offset) < maxSquared) {
+                        bucket.forEachWithin(x, y, z, offset, maxSquared, action);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Finds the position in this index nearest to {@code center} within the
+     * {@code distance}, measured as {@link NewVec3i#isWithinDistance(NewVec3i,
+     * double)} does.
+     *
+     * @return whether a position was found and stored in {@code result}
+     */
+    public boolean findNearest(NewVec3i center, double distance, MutableNewBlockPos result) {
+        return this.findNearest(center.getX(), center.getY(), center.getZ(), false, distance, result);
+    }
+
+    /**
+     * Finds the position in this index nearest to {@code pos} within the
+     * {@code distance}, measured as {@link NewVec3i#isWithinDistance(Position,
+     * double)} does.
+     *
+     * @return whether a position was found and stored in {@code result}
+     */
+    public boolean findNearest(Position pos, double distance, MutableNewBlockPos result) {
+        return this.findNearest(pos.getX(), pos.getY(), pos.getZ(), true, distance, result);
+    }
+
+    /**
+     * Finds the position in this index nearest to the given point within the
+     * {@code distance}.
+     *
+     * @return whether a position was found and stored in {@code result}
+     */
+    public boolean findNearest(double x, double y, double z, boolean treatAsBlockPos, double distance, MutableNewBlockPos result) {
+        long[] nearest = new long[1];
+        if (this.findNearest(x, y, z, treatAsBlockPos, distance, nearest) == 0) {
+            return false;
+        }
+        result.set(nearest[0]);
+        return true;
+    }
+
+    /**
+     * Finds the positions in this index nearest to the given point within the
+     * {@code distance}, at most as many as the {@code results} array holds.
+     *
+     * @param results the array receiving the packed positions, nearest first
+     * @return the number of positions found
+     */
+    public int findNearest(double x, double y, double z, boolean treatAsBlockPos, double distance, long[] results) {
+        int k = results.length;
+        if (k == 0 || this.bucketCount == 0) {
+            return 0;
+        }
+        double offset = treatAsBlockPos ? 0.5D : 0.0D;
+        Nearest nearest = new Nearest(results, distance * distance);
+        int centerX = floorSection(x - offset);
+        int centerY = floorSection(y - offset);
+        int centerZ = floorSection(z - offset);
+        // beyond this ring, there are no buckets
+        int lastRing = Math.max(Math.max(ringDistance(centerX, this.minSectionX, this.maxSectionX), ringDistance(centerY, this.minSectionY, this.maxSectionY)),
+                ringDistance(centerZ, this.minSectionZ, this.maxSectionZ));
+        double radius = Math.abs(distance);
+        if (radius < Double.POSITIVE_INFINITY) {
+            lastRing = (int) Math.min(lastRing, Math.ceil(radius / SECTION_SIZE) + 1);
+        }
+        long side = 2L * lastRing + 1;
+        if (side * side * side > this.bucketCount) {
+            this.scanNearest(x, y, z, offset, nearest);
+            return nearest.drainTo(results);
+        }
+        for (int ring = 0; ring <= lastRing; ring++) {
+            // every bucket in this ring is at least ring - 1 sections away on some axis
+            double bound = Math.max(0, ring - 1) * (double) SECTION_SIZE;
+            if (bound * bound > nearest.limit()) {
+                break;
+            }
+            for (int dz = -ring; dz <= ring; dz++) {
+                for (int dy = -ring; dy <= ring; dy++) {
+                    boolean onFace = Math.abs(dz) == ring || Math.abs(dy) == ring;
+                    int step = onFace ? 1 : Math.max(1, 2 * ring);
+                    for (int dx = -ring; dx <= ring; dx += step) {
+                        Bucket bucket = this.bucketsBySection.get(NewBlockPos.asLong(centerX + dx, centerY + dy, centerZ + dz));
+                        if (bucket != null && bucket.squaredDistanceTo(x, y, z, offset) <= nearest.limit()) {
+                            bucket.collectNearest(x, y, z, offset, nearest);
+                        }
+                    }
+                }
+            }
+        }
+        return nearest.drainTo(results);
+    }
+
+    private void scanNearest(double x, double y, double z, double offset, Nearest nearest) {
+        for (int i = 0; i < this.bucketCount; i++) {
+            Bucket bucket = this.buckets[i];
+            if (bucket.squaredDistanceTo(x, y, z, offset) <= nearest.limit()) {
+                bucket.collectNearest(x, y, z, offset, nearest);
+            }
+        }
+    }
+
+    private static int ringDistance(int center, int min, int max) {
+        return (int) Math.min(Integer.MAX_VALUE - 1, Math.max(Math.abs((long) min - center), Math.abs((long) max - center)));
+    }
+
+    private static long sectionKey(long pos) {
+        return NewBlockPos.asLong(NewBlockPos.unpackLongX(pos) >> SECTION_BITS, NewBlockPos.unpackLongY(pos) >> SECTION_BITS,
+                NewBlockPos.unpackLongZ(pos) >> SECTION_BITS);
+    }
+
+    private static int floorSection(double value) {
+        return (int) Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, Math.floor(value))) >> SECTION_BITS;
+    }
+
+    private static double squaredDistance(long pos, double x, double y, double z, double offset) {
+        double dx = (double) NewBlockPos.unpackLongX(pos) + offset - x;
+        double dy = (double) NewBlockPos.unpackLongY(pos) + offset - y;
+        double dz = (double) NewBlockPos.unpackLongZ(pos) + offset - z;
+        return dx * dx + dy * dy + dz * dz;
+    }
+
+    private static double axisDistance(int min, double point, double offset) {
+        double low = (double) min + offset - point;
+        if (low > 0.0D) {
+            return low;
+        }
+        double high = point - ((double) (min + SECTION_SIZE - 1) + offset);
+        return Math.max(high, 0.0D);
+    }
+
+    private static final class Bucket {
+        final int x;
+        final int y;
+        final int z;
+        int index;
+        long[] positions = new long[4];
+        int size;
+
+        Bucket(long section) {
+            this.x = NewBlockPos.unpackLongX(section);
+            this.y = NewBlockPos.unpackLongY(section);
+            this.z = NewBlockPos.unpackLongZ(section);
+        }
+
+        void add(long pos) {
+            if (this.size == this.positions.length) {
+                this.positions = Arrays.copyOf(this.positions, this.size << 1);
+            }
+            this.positions[this.size++] = pos;
+        }
+
+        void remove(long pos) {
+            for (int i = 0; i < this.size; i++) {
+                if (this.positions[i] == pos) {
+                    this.positions[i] = this.positions[--this.size];
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Returns a lower bound of the squared distance from the point to any
+         * position in this bucket.
+         */
+        double squaredDistanceTo(double x, double y, double z, double offset) {
+            double dx = axisDistance(this.x << SECTION_BITS, x, offset);
+            double dy = axisDistance(this.y << SECTION_BITS, y, offset);
+            double dz = axisDistance(this.z << SECTION_BITS, z, offset);
+            return dx * dx + dy * dy + dz * dz;
+        }
+
+        void forEachInBox(int minX, int minY, int minZ, int maxX, int maxY, int maxZ, LongConsumer action) {
+            for (int i = 0; i < this.size; i++) {
+                long pos = this.positions[i];
+                int x = NewBlockPos.unpackLongX(pos);
+                int y = NewBlockPos.unpackLongY(pos);
+                int z = NewBlockPos.unpackLongZ(pos);
+                if (x >= minX && x <= maxX && y >= minY && y <= maxY && z >= minZ && z <= maxZ) {
+                    action.accept(pos);
+                }
+            }
+        }
+
+        void forEachWithin(double x, double y, double z, double offset, double maxSquared, LongConsumer action) {
+            for (int i = 0; i < this.size; i++) {
+                long pos = this.positions[i];
+                if (squaredDistance(pos, x, y, z, offset) < maxSquared) {
+                    action.accept(pos);
+                }
+            }
+        }
+
+        void collectNearest(double x, double y, double z, double offset, Nearest nearest) {
+            for (int i = 0; i < this.size; i++) {
+                long pos = this.positions[i];
+                nearest.offer(pos, squaredDistance(pos, x, y, z, offset));
+            }
+        }
+    }
+
+    /**
+     * A bounded max-heap of the nearest positions seen so far, ordered by
+     * squared distance, then by packed value.
+     */
+    private static final class Nearest {
+        private final long[] positions;
+        private final double[] distances;
+        private final double maxSquared;
+        private int size;
+
+        Nearest(long[] results, double maxSquared) {
+            this.positions = new long[results.length];
+            this.distances = new double[results.length];
+            this.maxSquared = maxSquared;
+        }
+
+        /**
+         * Returns the squared distance a position must not exceed to be
+         * offered.
+         */
+        double limit() {
+            return this.size < this.positions.length ? this.maxSquared : this.distances[0];
+        }
+
+        void offer(long pos, double distance) {
+            if (!(distance < this.maxSquared)) {
+                return;
+            }
+            if (this.size < this.positions.length) {
+                int i = this.size++;
+                this.positions[i] = pos;
+                this.distances[i] = distance;
+                this.siftUp(i);
+            } else if (before(pos, distance, this.positions[0], this.distances[0])) {
+                this.positions[0] = pos;
+                this.distances[0] = distance;
+                this.siftDown(0, this.size);
+            }
+        }
+
+        int drainTo(long[] results) {
+            int count = this.size;
+            // heap sort, leaving the nearest position first
+            for (int end = count - 1; end > 0; end--) {
+                this.swap(0, end);
+                this.siftDown(0, end);
+            }
+            System.arraycopy(this.positions, 0, results, 0, count);
+            return count;
+        }
+
+        private static boolean before(long pos, double distance, long otherPos, double otherDistance) {
+            return distance < otherDistance || distance == otherDistance && pos < otherPos;
+        }
+
+        private void siftUp(int i) {
+            while (i > 0) {
+                int parent = i - 1 >>> 1;
+                if (!before(this.positions[parent], this.distances[parent], this.positions[i], this.distances[i])) {
+                    return;
+                }
+                this.swap(i, parent);
+                i = parent;
+            }
+        }
+
+        private void siftDown(int i, int end) {
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= end) {
+                    return;
+                }
+                if (child + 1 < end && before(this.positions[child], this.distances[child], this.positions[child + 1], this.distances[child + 1])) {
+                    child++;
+                }
+                if (!before(this.positions[i], this.distances[i], this.positions[child], this.distances[child])) {
+                    return;
+                }
+                this.swap(i, child);
+                i = child;
+            }
+        }
+
+        private void swap(int i, int j) {
+            long pos = this.positions[i];
+            this.positions[i] = this.positions[j];
+            this.positions[j] = pos;
+            double distance = this.distances[i];
+            this.distances[i] = this.distances[j];
+            this.distances[j] = distance;
+        }
+    }
+}
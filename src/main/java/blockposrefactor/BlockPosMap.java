@@ -0,0 +1,314 @@
+package blockposrefactor;
+
+import java.util.Arrays;
+import java.util.function.BiConsumer;
+import java.util.function.LongFunction;
+
+/**
+ * A map from block positions to values, with the positions stored as {@link
+ * NewBlockPos#asLong() packed longs} in an open-addressing table.
+ *
+ * <p>Unlike a {@code HashMap<ImmutableNewBlockPos, V>}, this map does not
+ * keep a key object or an entry node per mapping, and lookups accept any
+ * block position, mutable or immutable, without a {@link
+ * NewBlockPos#toImmutable() toImmutable} call.
+ *
+ * <p>{@link #forEach(BiConsumer)} hands out one shared {@link
+ * MutableNewBlockPos} cursor; callers must {@link NewBlockPos#toImmutable()
+ * copy} it if they keep the position beyond the current step.
+ *
+ * @param <V> the type of the values
+ */
+public class BlockPosMap<V> {
+
+    private long[] keys;
+    private V[] values;
+    private int mask;
+    private int maxFill;
+    private boolean containsOrigin;
+    private V originValue;
+    private int size;
+
+    public BlockPosMap() {
+        this(BlockPosHashing.DEFAULT_CAPACITY);
+    }
+
+    @SuppressWarnings("unchecked")
+    public BlockPosMap(int expectedSize) {
+        int n = BlockPosHashing.tableSize(expectedSize);
+        this.keys = new long[n];
+        this.values = (V[]) new Object[n];
+        this.mask = n - 1;
+        this.maxFill = BlockPosHashing.maxFill(n);
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    public V get(NewBlockPos pos) {
+        return this.get(NewBlockPos.asLong(pos.getX(), pos.getY(), pos.getZ()));
+    }
+
+    public V get(int x, int y, int z) {
+        return this.get(NewBlockPos.asLong(x, y, z));
+    }
+
+    public V get(long pos) {
+        return this.getOrDefault(pos, null);
+    }
+
+    public V getOrDefault(NewBlockPos pos, V defaultValue) {
+        return this.getOrDefault(NewBlockPos.asLong(pos.getX(), pos.getY(), pos.getZ()), defaultValue);
+    }
+
+    public V getOrDefault(long pos, V defaultValue) {
+        if (pos == 0L) {
+            return this.containsOrigin ? this.originValue : defaultValue;
+        }
+        int i = this.find(pos);
+        return i < 0 ? defaultValue : this.values[i];
+    }
+
+    public boolean containsKey(NewBlockPos pos) {
+        return this.containsKey(NewBlockPos.asLong(pos.getX(), pos.getY(), pos.getZ()));
+    }
+
+    public boolean containsKey(int x, int y, int z) {
+        return this.containsKey(NewBlockPos.asLong(x, y, z));
+    }
+
+    public boolean containsKey(long pos) {
+        return pos == 0L ? this.containsOrigin : this.find(pos) >= 0;
+    }
+
+    public V put(NewBlockPos pos, V value) {
+        return this.put(NewBlockPos.asLong(pos.getX(), pos.getY(), pos.getZ()), value);
+    }
+
+    public V put(int x, int y, int z, V value) {
+        return this.put(NewBlockPos.asLong(x, y, z), value);
+    }
+
+    /**
+     * Associates a value with a packed block position.
+     *
+     * @return the previous value for the position, or {@code null} if there
+     * was none
+     */
+    public V put(long pos, V value) {
+        if (pos == 0L) {
+            V old = this.originValue;
+            this.originValue = value;
+            if (!this.containsOrigin) {
+                this.containsOrigin = true;
+                this.grow();
+            }
+            return old;
+        }
+        int i = this.find(pos);
+        if (i >= 0) {
+            V old = this.values[i];
+            this.values[i] = value;
+            return old;
+        }
+        this.insert(-i - 1, pos, value);
+        return null;
+    }
+
+    public V computeIfAbsent(NewBlockPos pos, LongFunction<? extends V> mappingFunction) {
+        return this.computeIfAbsent(NewBlockPos.asLong(pos.getX(), pos.getY(), pos.getZ()), mappingFunction);
+    }
+
+    /**
+     * Returns the value for a packed block position, computing and storing it
+     * first if the position is absent.
+     *
+     * <p>The mapping function receives the packed position. It may change
+     * this map; the computed value is stored afterwards, replacing any value
+     * the function stored for the same position.
+     */
+    public V computeIfAbsent(long pos, LongFunction<? extends V> mappingFunction) {
+        if (pos == 0L) {
+            if (!this.containsOrigin) {
+                this.put(0L, mappingFunction.apply(0L));
+            }
+            return this.originValue;
+        }
+        int i = this.find(pos);
+        if (i >= 0) {
+            return this.values[i];
+        }
+        V value = mappingFunction.apply(pos);
+        // the function may have changed this map, moving or rehashing the slots
+        this.put(pos, value);
+        return value;
+    }
+
+    public V remove(NewBlockPos pos) {
+        return this.remove(NewBlockPos.asLong(pos.getX(), pos.getY(), pos.getZ()));
+    }
+
+    public V remove(int x, int y, int z) {
+        return this.remove(NewBlockPos.asLong(x, y, z));
+    }
+
+    /**
+     * Removes the mapping for a packed block position.
+     *
+     * @return the removed value, or {@code null} if there was none
+     */
+    public V remove(long pos) {
+        if (pos == 0L) {
+            if (!this.containsOrigin) {
+                return null;
+            }
+            V old = this.originValue;
+            this.containsOrigin = false;
+            this.originValue = null;
+            this.size--;
+            return old;
+        }
+        int i = this.find(pos);
+        if (i < 0) {
+            return null;
+        }
+        V old = this.values[i];
+        this.shiftKeys(i);
+        this.size--;
+        return old;
+    }
+
+    public void clear() {
+        if (this.size == 0) {
+            return;
+        }
+        Arrays.fill(this.keys, 0L);
+        Arrays.fill(this.values, null);
+        this.containsOrigin = false;
+        this.originValue = null;
+        this.size = 0;
+    }
+
+    /**
+     * Calls the {@code action} for each packed position and its value in
+     * this map.
+     */
+    public void forEachPacked(PackedEntryConsumer<? super V> action) {
+        if (this.containsOrigin) {
+            action.accept(0L, this.originValue);
+        }
+        long[] keys = this.keys;
+        V[] values = this.values;
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != 0L) {
+                action.accept(keys[i], values[i]);
+            }
+        }
+    }
+
+    /**
+     * Calls the {@code action} for each position and its value in this map,
+     * reusing a single mutable block position.
+     */
+    public void forEach(BiConsumer<? super MutableNewBlockPos, ? super V> action) {
+        MutableNewBlockPos cursor = new MutableNewBlockPos();
+        if (this.containsOrigin) {
+            action.accept(cursor.set(0L), this.originValue);
+        }
+        long[] keys = this.keys;
+        V[] values = this.values;
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != 0L) {
+                action.accept(cursor.set(keys[i]), values[i]);
+            }
+        }
+    }
+
+    /**
+     * Returns the slot of {@code pos}, or {@code -(insertion slot) - 1} if it
+     * is absent. {@code pos} must not be {@code 0L}.
+     */
+    private int find(long pos) {
+        long[] keys = this.keys;
+        int i = (int) BlockPosHashing.mix(pos) & this.mask;
+        long current;
+        while ((current = keys[i]) != 0L) {
+            if (current == pos) {
+                return i;
+            }
+            i = (i + 1) & this.mask;
+        }
+        return -i - 1;
+    }
+
+    private void insert(int slot, long pos, V value) {
+        this.keys[slot] = pos;
+        this.values[slot] = value;
+        this.grow();
+    }
+
+    private void grow() {
+        if (this.size++ >= this.maxFill) {
+            this.rehash(this.keys.length << 1);
+        }
+    }
+
+    private void shiftKeys(int pos) {
+        long[] keys = this.keys;
+        V[] values = this.values;
+        int last;
+        int slot;
+        long current;
+        for (;;) {
+            pos = ((last = pos) + 1) & this.mask;
+            for (;;) {
+                if ((current = keys[pos]) == 0L) {
+                    keys[last] = 0L;
+                    values[last] = null;
+                    return;
+                }
+                slot = (int) BlockPosHashing.mix(current) & this.mask;
+                if (last <= pos ? last >= slot || slot > pos : last >= slot && slot > pos) {
+                    break;
+                }
+                pos = (pos + 1) & this.mask;
+            }
+            keys[last] = current;
+            values[last] = values[pos];
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void rehash(int newLength) {
+        long[] oldKeys = this.keys;
+        V[] oldValues = this.values;
+        long[] newKeys = new long[newLength];
+        V[] newValues = (V[]) new Object[newLength];
+        int newMask = newLength - 1;
+        for (int j = 0; j < oldKeys.length; j++) {
+            long key = oldKeys[j];
+            if (key != 0L) {
+                int i = (int) BlockPosHashing.mix(key) & newMask;
+                while (newKeys[i] != 0L) {
+                    i = (i + 1) & newMask;
+                }
+                newKeys[i] = key;
+                newValues[i] = oldValues[j];
+            }
+        }
+        this.keys = newKeys;
+        this.values = newValues;
+        this.mask = newMask;
+        this.maxFill = BlockPosHashing.maxFill(newLength);
+    }
+
+    @FunctionalInterface
+    public interface PackedEntryConsumer<V> {
+        void accept(long pos, V value);
+    }
+}
@@ -0,0 +1,121 @@
+package blockposrefactor;
+
+/**
+ * A small per-thread pool of {@link MutableNewBlockPos} cursors for helpers
+ * that need a scratch position only while they run.
+ *
+ * <p>Cursors are borrowed and released in stack order, usually with a
+ * {@code try}/{@code finally}:
+ *
+ * <pre>{@code
+ * MutableNewBlockPos cursor = BlockPosPool.borrow();
+ * try {
+ *     ...
+ * } finally {
+ *     BlockPosPool.release(cursor);
+ * }
+ * }</pre>
+ *
+ * <p>A released cursor is handed out again by a later {@link #borrow()} on
+ * the same thread, so it must not be used after its release, and must only
+ * be handed to callbacks documented not to keep it, such as the conditions
+ * of {@link NewBlockPos#findClosest(NewBlockPos, int, int,
+ * java.util.function.Predicate) findClosest} and its parallel form. The
+ * public {@code forEach} methods allocate their own cursor instead, since
+ * their actions may keep the position. Once more than {@link #CAPACITY} cursors are
+ * borrowed at a time, further cursors are allocated and not pooled.
+ *
+ * <p>Starting the JVM with {@code -Dblockposrefactor.poolDebug=true} checks
+ * that cursors are released once, in order, and on the borrowing thread,
+ * and records where each cursor was borrowed, so that {@link
+ * #checkAllReleased()} can report leaks.
+ */
+public final class BlockPosPool {
+
+    static final int CAPACITY = 16;
+    /**
+     * Whether borrows and releases are checked. Read once, so that the checks
+     * are compiled away when off.
+     */
+    static final boolean DEBUG = Boolean.getBoolean("blockposrefactor.poolDebug");
+
+    private static final ThreadLocal<Stack> STACKS = ThreadLocal.withInitial(Stack::new);
+
+    private BlockPosPool() {
+    }
+
+    /**
+     * Borrows a cursor from the current thread's pool. Its coordinates are
+     * unspecified.
+     */
+    public static MutableNewBlockPos borrow() {
+        return STACKS.get().borrow();
+    }
+
+    /**
+     * Returns the most recently borrowed cursor of the current thread to its
+     * pool.
+     *
+     * @throws IllegalStateException in debug mode, if the cursor is not the
+     * most recently borrowed one of this thread, such as when it is released
+     * twice or on another thread
+     */
+    public static void release(MutableNewBlockPos pos) {
+        STACKS.get().release(pos);
+    }
+
+    /**
+     * Checks that the current thread has released all cursors it borrowed.
+     * Call this where no cursors should be borrowed, such as at the end of a
+     * tick.
+     *
+     * @throws IllegalStateException if a cursor was not released; in debug
+     * mode, the cause is the stack trace of the borrow
+     */
+    public static void checkAllReleased() {
+        Stack stack = STACKS.get();
+        if (stack.depth != 0) {
+            int depth = stack.depth;
+            Throwable site = DEBUG && stack.sites != null ? stack.sites[0] : null;
+            stack.depth = 0;
+            throw new IllegalStateException(depth + " borrowed block position(s) not released", site);
+        }
+    }
+
+    private static final class Stack {
+        private final MutableNewBlockPos[] cursors = new MutableNewBlockPos[CAPACITY];
+        private final Throwable[] sites = DEBUG ? new Throwable[CAPACITY] : null;
+        private int depth;
+
+        MutableNewBlockPos borrow() {
+            int depth = this.depth++;
+            if (depth >= CAPACITY) {
+                return new MutableNewBlockPos();
+            }
+            MutableNewBlockPos cursor = this.cursors[depth];
+            if (cursor == null) {
+                cursor = new MutableNewBlockPos();
+                this.cursors[depth] = cursor;
+            }
+            if (DEBUG) {
+                this.sites[depth] = new Throwable("Borrowed here");
+            }
+            return cursor;
+        }
+
+        void release(MutableNewBlockPos pos) {
+            int depth = this.depth - 1;
+            if (DEBUG) {
+                if (depth < 0 || depth < CAPACITY && this.cursors[depth] != pos) {
+                    throw new IllegalStateException("Block position released twice or out of order");
+                }
+                if (depth < CAPACITY) {
+                    this.sites[depth] = null;
+                }
+            }
+            if (depth >= 0) {
+                this.depth = depth;
+            }
+        }
+    }
+}
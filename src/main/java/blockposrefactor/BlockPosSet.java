@@ -0,0 +1,283 @@
+package blockposrefactor;
+
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+
+/**
+ * A set of block positions stored as {@link NewBlockPos#asLong() packed
+ * longs} in an open-addressing table.
+ *
+ * <p>Unlike a {@code HashSet<ImmutableNewBlockPos>}, this set does not keep
+ * an object per position, and lookups accept any block position, mutable or
+ * immutable, without a {@link NewBlockPos#toImmutable() toImmutable} call.
+ *
+ * <p>The iteration methods hand out one shared {@link MutableNewBlockPos}
+ * cursor; callers must {@link NewBlockPos#toImmutable() copy} it if they
+ * keep the position beyond the current step.
+ */
+public class BlockPosSet implements Iterable<MutableNewBlockPos> {
+
+    private long[] keys;
+    private int mask;
+    private int maxFill;
+    private boolean containsOrigin;
+    private int size;
+    private int modCount;
+
+    public BlockPosSet() {
+        this(BlockPosHashing.DEFAULT_CAPACITY);
+    }
+
+    public BlockPosSet(int expectedSize) {
+        int n = BlockPosHashing.tableSize(expectedSize);
+        this.keys = new long[n];
+        this.mask = n - 1;
+        this.maxFill = BlockPosHashing.maxFill(n);
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    public boolean add(NewBlockPos pos) {
+        return this.add(NewBlockPos.asLong(pos.getX(), pos.getY(), pos.getZ()));
+    }
+
+    public boolean add(int x, int y, int z) {
+        return this.add(NewBlockPos.asLong(x, y, z));
+    }
+
+    /**
+     * Adds a packed block position to this set.
+     *
+     * @return {@code true} if the position was not present before
+     */
+    public boolean add(long pos) {
+        if (pos == 0L) {
+            if (this.containsOrigin) {
+                return false;
+            }
+            this.containsOrigin = true;
+        } else {
+            long[] keys = this.keys;
+            int i = (int) BlockPosHashing.mix(pos) & this.mask;
+            long current;
+            while ((current = keys[i]) != 0L) {
+                if (current == pos) {
+                    return false;
+                }
+                i = (i + 1) & this.mask;
+            }
+            keys[i] = pos;
+        }
+        this.modCount++;
+        if (this.size++ >= this.maxFill) {
+            this.rehash(this.keys.length << 1);
+        }
+        return true;
+    }
+
+    public boolean contains(NewBlockPos pos) {
+        return this.contains(NewBlockPos.asLong(pos.getX(), pos.getY(), pos.getZ()));
+    }
+
+    public boolean contains(int x, int y, int z) {
+        return this.contains(NewBlockPos.asLong(x, y, z));
+    }
+
+    public boolean contains(long pos) {
+        if (pos == 0L) {
+            return this.containsOrigin;
+        }
+        long[] keys = this.keys;
+        int i = (int) BlockPosHashing.mix(pos) & this.mask;
+        long current;
+        while ((current = keys[i]) != 0L) {
+            if (current == pos) {
+                return true;
+            }
+            i = (i + 1) & this.mask;
+        }
+        return false;
+    }
+
+    public boolean remove(NewBlockPos pos) {
+        return this.remove(NewBlockPos.asLong(pos.getX(), pos.getY(), pos.getZ()));
+    }
+
+    public boolean remove(int x, int y, int z) {
+        return this.remove(NewBlockPos.asLong(x, y, z));
+    }
+
+    /**
+     * Removes a packed block position from this set.
+     *
+     * @return {@code true} if the position was present
+     */
+    public boolean remove(long pos) {
+        if (pos == 0L) {
+            if (!this.containsOrigin) {
+                return false;
+            }
+            this.containsOrigin = false;
+        } else {
+            long[] keys = this.keys;
+            int i = (int) BlockPosHashing.mix(pos) & this.mask;
+            long current;
+            while ((current = keys[i]) != pos) {
+                if (current == 0L) {
+                    return false;
+                }
+                i = (i + 1) & this.mask;
+            }
+            this.shiftKeys(i);
+        }
+        this.modCount++;
+        this.size--;
+        return true;
+    }
+
+    public void clear() {
+        if (this.size == 0) {
+            return;
+        }
+        Arrays.fill(this.keys, 0L);
+        this.containsOrigin = false;
+        this.size = 0;
+        this.modCount++;
+    }
+
+    /**
+     * Calls the {@code action} for each packed position in this set.
+     */
+    public void forEachPacked(LongConsumer action) {
+        if (this.containsOrigin) {
+            action.accept(0L);
+        }
+        for (long key : this.keys) {
+            if (key != 0L) {
+                action.accept(key);
+            }
+        }
+    }
+
+    /**
+     * Calls the {@code action} for each position in this set, reusing a
+     * single mutable block position.
+     */
+    @Override public void forEach(Consumer<? super MutableNewBlockPos> action) {
+        MutableNewBlockPos cursor = new MutableNewBlockPos();
+        if (this.containsOrigin) {
+            action.accept(cursor.set(0L));
+        }
+        for (long key : this.keys) {
+            if (key != 0L) {
+                action.accept(cursor.set(key));
+            }
+        }
+    }
+
+    /**
+     * Returns an iterator over the positions in this set. The iterator
+     * returns the same mutable block position on every call to {@code next}.
+     */
+    @Override public Iterator<MutableNewBlockPos> iterator() {
+        return new Iterator<MutableNewBlockPos>() {
+            private final MutableNewBlockPos cursor = new MutableNewBlockPos();
+            private final int expectedModCount = BlockPosSet.this.modCount;
+            private boolean originPending = BlockPosSet.this.containsOrigin;
+            private int index = this.advance(0);
+
+            private int advance(int from) {
+                long[] keys = BlockPosSet.this.keys;
+                int i = from;
+                while (i < keys.length && keys[i] == 0L) {
+                    i++;
+                }
+                return i;
+            }
+
+            @Override public boolean hasNext() {
+                return this.originPending || this.index < BlockPosSet.this.keys.length;
+            }
+
+            @Override public MutableNewBlockPos next() {
+                if (BlockPosSet.this.modCount != this.expectedModCount) {
+                    throw new ConcurrentModificationException();
+                }
+                if (this.originPending) {
+                    this.originPending = false;
+                    return this.cursor.set(0, 0, 0);
+                }
+                if (this.index >= BlockPosSet.this.keys.length) {
+                    throw new NoSuchElementException();
+                }
+                this.cursor.set(BlockPosSet.this.keys[this.index]);
+                this.index = this.advance(this.index + 1);
+                return this.cursor;
+            }
+        };
+    }
+
+    public long[] toPackedArray() {
+        long[] result = new long[this.size];
+        int i = 0;
+        if (this.containsOrigin) {
+            result[i++] = 0L;
+        }
+        for (long key : this.keys) {
+            if (key != 0L) {
+                result[i++] = key;
+            }
+        }
+        return result;
+    }
+
+    private void shiftKeys(int pos) {
+        long[] keys = this.keys;
+        int last;
+        int slot;
+        long current;
+        for (;;) {
+            pos = ((last = pos) + 1) & this.mask;
+            for (;;) {
+                if ((current = keys[pos]) == 0L) {
+                    keys[last] = 0L;
+                    return;
+                }
+                slot = (int) BlockPosHashing.mix(current) & this.mask;
+                if (last <= pos ? last >= slot || slot > pos : last >= slot && slot > pos) {
+                    break;
+                }
+                pos = (pos + 1) & this.mask;
+            }
+            keys[last] = current;
+        }
+    }
+
+    private void rehash(int newLength) {
+        long[] oldKeys = this.keys;
+        long[] newKeys = new long[newLength];
+        int newMask = newLength - 1;
+        for (long key : oldKeys) {
+            if (key != 0L) {
+                int i = (int) BlockPosHashing.mix(key) & newMask;
+                while (newKeys[i] != 0L) {
+                    i = (i + 1) & newMask;
+                }
+                newKeys[i] = key;
+            }
+        }
+        this.keys = newKeys;
+        this.mask = newMask;
+        this.maxFill = BlockPosHashing.maxFill(newLength);
+    }
+}
@@ -0,0 +1,225 @@
+package blockposrefactor;
+
+import com.google.common.base.MoreObjects;
+import net.minecraft.util.BlockMirror;
+import net.minecraft.util.BlockRotation;
+import net.minecraft.util.math.BlockBox;
+
+/**
+ * An immutable integer transform of block positions: a rotation or mirror
+ * matrix followed by a translation.
+ *
+ * <p>Transforms compose ahead of time, so a chain of {@link
+ * NewBlockPos#rotate(BlockRotation)} and {@link NewBlockPos#add(int, int,
+ * int)} calls made for every block of a structure becomes one matrix
+ * multiplication per block, without an intermediate block position per
+ * step. For example, {@code pos.rotate(rotation).add(offset)} equals {@code
+ * BlockTransform.IDENTITY.rotate(rotation).add(offset).apply(pos, result)}.
+ *
+ * <p>Mirrors follow {@link BlockPosBuffer#mirror(BlockMirror)}: {@link
+ * BlockMirror#LEFT_RIGHT} negates z and {@link BlockMirror#FRONT_BACK}
+ * negates x.
+ */
+public final class BlockTransform {
+
+    public static final BlockTransform IDENTITY = new BlockTransform(1, 0, 0, 0, 1, 0, 0, 0, 1, 0, 0, 0);
+
+    private final int m00;
+    private final int m01;
+    private final int m02;
+    private final int m10;
+    private final int m11;
+    private final int m12;
+    private final int m20;
+    private final int m21;
+    private final int m22;
+    private final int tx;
+    private final int ty;
+    private final int tz;
+
+    private BlockTransform(int m00, int m01, int m02, int m10, int m11, int m12, int m20, int m21, int m22, int tx, int ty, int tz) {
+        this.m00 = m00;
+        this.m01 = m01;
+        this.m02 = m02;
+        this.m10 = m10;
+        this.m11 = m11;
+        this.m12 = m12;
+        this.m20 = m20;
+        this.m21 = m21;
+        this.m22 = m22;
+        this.tx = tx;
+        this.ty = ty;
+        this.tz = tz;
+    }
+
+    /**
+     * Returns the transform that rotates positions like {@link
+     * NewBlockPos#rotate(BlockRotation)}.
+     */
+    public static BlockTransform rotation(BlockRotation rotation) {
+        switch (rotation) {
+            case NONE:
+            default:
+                return IDENTITY;
+            case CLOCKWISE_90:
+                return new BlockTransform(0, 0, -1, 0, 1, 0, 1, 0, 0, 0, 0, 0);
+            case CLOCKWISE_180:
+                return new BlockTransform(-1, 0, 0, 0, 1, 0, 0, 0, -1, 0, 0, 0);
+            case COUNTERCLOCKWISE_90:
+                return new BlockTransform(0, 0, 1, 0, 1, 0, -1, 0, 0, 0, 0, 0);
+        }
+    }
+
+    public static BlockTransform mirroring(BlockMirror mirror) {
+        switch (mirror) {
+            case LEFT_RIGHT:
+                return new BlockTransform(1, 0, 0, 0, 1, 0, 0, 0, -1, 0, 0, 0);
+            case FRONT_BACK:
+                return new BlockTransform(-1, 0, 0, 0, 1, 0, 0, 0, 1, 0, 0, 0);
+            default:
+                return IDENTITY;
+        }
+    }
+
+    public static BlockTransform translation(int x, int y, int z) {
+        return new BlockTransform(1, 0, 0, 0, 1, 0, 0, 0, 1, x, y, z);
+    }
+
+    /**
+     * Returns the transform that applies this transform, then {@code next}.
+     */
+    public BlockTransform then(BlockTransform next) {
+        return new BlockTransform(
+                next.m00 * this.m00 + next.m01 * this.m10 + next.m02 * this.m20,
+                next.m00 * this.m01 + next.m01 * this.m11 + next.m02 * this.m21,
+                next.m00 * this.m02 + next.m01 * this.m12 + next.m02 * this.m22,
+                next.m10 * this.m00 + next.m11 * this.m10 + next.m12 * this.m20,
+                next.m10 * this.m01 + next.m11 * this.m11 + next.m12 * this.m21,
+                next.m10 * this.m02 + next.m11 * this.m12 + next.m12 * this.m22,
+                next.m20 * this.m00 + next.m21 * this.m10 + next.m22 * this.m20,
+                next.m20 * this.m01 + next.m21 * this.m11 + next.m22 * this.m21,
+                next.m20 * this.m02 + next.m21 * this.m12 + next.m22 * this.m22,
+                next.m00 * this.tx + next.m01 * this.ty + next.m02 * this.tz + next.tx,
+                next.m10 * this.tx + next.m11 * this.ty + next.m12 * this.tz + next.ty,
+                next.m20 * this.tx + next.m21 * this.ty + next.m22 * this.tz + next.tz);
+    }
+
+    public BlockTransform rotate(BlockRotation rotation) {
+        return this.then(rotation(rotation));
+    }
+
+    public BlockTransform mirror(BlockMirror mirror) {
+        return this.then(mirroring(mirror));
+    }
+
+    public BlockTransform add(int x, int y, int z) {
+        return new BlockTransform(this.m00, this.m01, this.m02, this.m10, this.m11, this.m12, this.m20, this.m21, this.m22,
+                this.tx + x, this.ty + y, this.tz + z);
+    }
+
+    public BlockTransform add(NewVec3i offset) {
+        return this.add(offset.getX(), offset.getY(), offset.getZ());
+    }
+
+    public BlockTransform subtract(NewVec3i offset) {
+        return this.add(-offset.getX(), -offset.getY(), -offset.getZ());
+    }
+
+    /**
+     * Returns the transform that undoes this one.
+     */
+    public BlockTransform inverse() {
+        // rotations and mirrors are orthogonal, so the transpose inverts them
+        return new BlockTransform(this.m00, this.m10, this.m20, this.m01, this.m11, this.m21, this.m02, this.m12, this.m22,
+                -(this.m00 * this.tx + this.m10 * this.ty + this.m20 * this.tz),
+                -(this.m01 * this.tx + this.m11 * this.ty + this.m21 * this.tz),
+                -(this.m02 * this.tx + this.m12 * this.ty + this.m22 * this.tz));
+    }
+
+    public int applyX(int x, int y, int z) {
+        return this.m00 * x + this.m01 * y + this.m02 * z + this.tx;
+    }
+
+    public int applyY(int x, int y, int z) {
+        return this.m10 * x + this.m11 * y + this.m12 * z + this.ty;
+    }
+
+    public int applyZ(int x, int y, int z) {
+        return this.m20 * x + this.m21 * y + this.m22 * z + this.tz;
+    }
+
+    public MutableNewBlockPos apply(NewBlockPos pos, MutableNewBlockPos result) {
+        return this.apply(pos.getX(), pos.getY(), pos.getZ(), result);
+    }
+
+    public MutableNewBlockPos apply(int x, int y, int z, MutableNewBlockPos result) {
+        return result.set(this.applyX(x, y, z), this.applyY(x, y, z), this.applyZ(x, y, z));
+    }
+
+    public long applyPacked(long pos) {
+        int x = NewBlockPos.unpackLongX(pos);
+        int y = NewBlockPos.unpackLongY(pos);
+        int z = NewBlockPos.unpackLongZ(pos);
+        return NewBlockPos.asLong(this.applyX(x, y, z), this.applyY(x, y, z), this.applyZ(x, y, z));
+    }
+
+    /**
+     * Transforms the packed positions in the range in place.
+     */
+    public void applyPacked(long[] positions, int from, int to) {
+        for (int i = from; i < to; i++) {
+            positions[i] = this.applyPacked(positions[i]);
+        }
+    }
+
+    /**
+     * Returns the box covering the transformed blocks of the {@code box}.
+     */
+    public BlockBox apply(BlockBox box) {
+        // each output axis depends on a single input axis, so the corners
+        // map to corners; pick the extremes per axis
+        int x1 = this.applyX(box.minX, box.minY, box.minZ);
+        int y1 = this.applyY(box.minX, box.minY, box.minZ);
+        int z1 = this.applyZ(box.minX, box.minY, box.minZ);
+        int x2 = this.applyX(box.maxX, box.maxY, box.maxZ);
+        int y2 = this.applyY(box.maxX, box.maxY, box.maxZ);
+        int z2 = this.applyZ(box.maxX, box.maxY, box.maxZ);
+        return new BlockBox(Math.min(x1, x2), Math.min(y1, y2), Math.min(z1, z2), Math.max(x1, x2), Math.max(y1, y2), Math.max(z1, z2));
+    }
+
+    @Override public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof BlockTransform)) {
+            return false;
+        }
+        BlockTransform that = (BlockTransform) o;
+        return this.m00 == that.m00 && this.m01 == that.m01 && this.m02 == that.m02
+                && this.m10 == that.m10 && this.m11 == that.m11 && this.m12 == that.m12
+                && this.m20 == that.m20 && this.m21 == that.m21 && this.m22 == that.m22
+                && this.tx == that.tx && this.ty == that.ty && this.tz == that.tz;
+    }
+
+    @Override public int hashCode() {
+        int h = this.m00;
+        h = 31 * h + this.m01;
+        h = 31 * h + this.m02;
+        h = 31 * h + this.m10;
+        h = 31 * h + this.m11;
+        h = 31 * h + this.m12;
+        h = 31 * h + this.m20;
+        h = 31 * h + this.m21;
+        h = 31 * h + this.m22;
+        h = 31 * h + this.tx;
+        h = 31 * h + this.ty;
+        return 31 * h + this.tz;
+    }
+
+    @Override public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("matrix", "[[" + this.m00 + ", " + this.m01 + ", " + this.m02 + "], [" + this.m10 + ", " + this.m11 + ", " + this.m12
+                        + "], [" + this.m20 + ", " + this.m21 + ", " + this.m22 + "]]")
+                .add("x", this.tx).add("y", this.ty).add("z", this.tz).toString();
+    }
+}
@@ -0,0 +1,340 @@
+package blockposrefactor;
+
+import net.minecraft.util.math.BlockBox;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+
+/**
+ * A set of block positions within a fixed box, stored as one bit per
+ * position of the box.
+ *
+ * <p>Bits are addressed by the linear index of a position in the box, in the
+ * order of {@link NewBlockPos#iterate(int, int, int, int, int, int)}: x first,
+ * then y, then z. Adding a position outside the box throws; querying or
+ * removing one does nothing.
+ *
+ * <p>The set operations work on whole words where the boxes line up; for
+ * boxes that only overlap, they work row by row on the x rows the boxes
+ * share.
+ */
+public class BoxBitSet {
+
+    private static final int OR = 0;
+    private static final int AND = 1;
+    private static final int AND_NOT = 2;
+
+    private final int minX;
+    private final int minY;
+    private final int minZ;
+    private final int maxX;
+    private final int maxY;
+    private final int maxZ;
+    private final int sizeX;
+    private final int sizeY;
+    private final long[] words;
+
+    public BoxBitSet(int startX, int startY, int startZ, int endX, int endY, int endZ) {
+        this.minX = Math.min(startX, endX);
+        this.minY = Math.min(startY, endY);
+        this.minZ = Math.min(startZ, endZ);
+        this.maxX = Math.max(startX, endX);
+        this.maxY = Math.max(startY, endY);
+        this.maxZ = Math.max(startZ, endZ);
+        this.sizeX = this.maxX - this.minX + 1;
+        this.sizeY = this.maxY - this.minY + 1;
+        long volume = (long) this.sizeX * this.sizeY * (this.maxZ - this.minZ + 1);
+        if (volume > (long) Integer.MAX_VALUE << 6) {
+            throw new IllegalArgumentException("Box too large: " + volume + " positions");
+        }
+        this.words = new long[(int) (volume + 63 >>> 6)];
+    }
+
+    public BoxBitSet(BlockBox box) {
+        this(box.minX, box.minY, box.minZ, box.maxX, box.maxY, box.maxZ);
+    }
+
+    public BoxBitSet(NewBlockPos start, NewBlockPos end) {
+        this(start.getX(), start.getY(), start.getZ(), end.getX(), end.getY(), end.getZ());
+    }
+
+    public int getMinX() {
+        return this.minX;
+    }
+
+    public int getMinY() {
+        return this.minY;
+    }
+
+    public int getMinZ() {
+        return this.minZ;
+    }
+
+    public int getMaxX() {
+        return this.maxX;
+    }
+
+    public int getMaxY() {
+        return this.maxY;
+    }
+
+    public int getMaxZ() {
+        return this.maxZ;
+    }
+
+    public boolean isInBox(int x, int y, int z) {
+        return x >= this.minX && x <= this.maxX && y >= this.minY && y <= this.maxY && z >= this.minZ && z <= this.maxZ;
+    }
+
+    private long index(int x, int y, int z) {
+        return ((long) (z - this.minZ) * this.sizeY + (y - this.minY)) * this.sizeX + (x - this.minX);
+    }
+
+    public boolean add(NewBlockPos pos) {
+        return this.add(pos.getX(), pos.getY(), pos.getZ());
+    }
+
+    public boolean add(long pos) {
+        return this.add(NewBlockPos.unpackLongX(pos), NewBlockPos.unpackLongY(pos), NewBlockPos.unpackLongZ(pos));
+    }
+
+    /**
+     * Adds a position to this set.
+     *
+     * @return {@code true} if the position was not present before
+     * @throws IllegalArgumentException if the position is outside the box
+     */
+    public boolean add(int x, int y, int z) {
+        if (!this.isInBox(x, y, z)) {
+            throw new IllegalArgumentException("Position " + x + ", " + y + ", " + z + " is outside the box");
+        }
+        long index = this.index(x, y, z);
+        int word = (int) (index >>> 6);
+        long bit = 1L << index;
+        long old = this.words[word];
+        this.words[word] = old | bit;
+        return (old & bit) == 0L;
+    }
+
+    public boolean contains(NewBlockPos pos) {
+        return this.contains(pos.getX(), pos.getY(), pos.getZ());
+    }
+
+    public boolean contains(long pos) {
+        return this.contains(NewBlockPos.unpackLongX(pos), NewBlockPos.unpackLongY(pos), NewBlockPos.unpackLongZ(pos));
+    }
+
+    public boolean contains(int x, int y, int z) {
+        if (!this.isInBox(x, y, z)) {
+            return false;
+        }
+        long index = this.index(x, y, z);
+        return (this.words[(int) (index >>> 6)] & 1L << index) != 0L;
+    }
+
+    public boolean remove(NewBlockPos pos) {
+        return this.remove(pos.getX(), pos.getY(), pos.getZ());
+    }
+
+    public boolean remove(long pos) {
+        return this.remove(NewBlockPos.unpackLongX(pos), NewBlockPos.unpackLongY(pos), NewBlockPos.unpackLongZ(pos));
+    }
+
+    /**
+     * Removes a position from this set.
+     *
+     * @return {@code true} if the position was present
+     */
+    public boolean remove(int x, int y, int z) {
+        if (!this.isInBox(x, y, z)) {
+            return false;
+        }
+        long index = this.index(x, y, z);
+        int word = (int) (index >>> 6);
+        long bit = 1L << index;
+        long old = this.words[word];
+        this.words[word] = old & ~bit;
+        return (old & bit) != 0L;
+    }
+
+    public long size() {
+        long count = 0L;
+        for (long word : this.words) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    public boolean isEmpty() {
+        for (long word : this.words) {
+            if (word != 0L) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public void clear() {
+        Arrays.fill(this.words, 0L);
+    }
+
+    /**
+     * Adds all positions of {@code other} that lie within this set's box.
+     */
+    public BoxBitSet addAll(BoxBitSet other) {
+        if (this.sameBox(other)) {
+            for (int i = 0; i < this.words.length; i++) {
+                this.words[i] |= other.words[i];
+            }
+        } else {
+            this.combineOverlap(other, OR);
+        }
+        return this;
+    }
+
+    /**
+     * Removes all positions that are not in {@code other}.
+     */
+    public BoxBitSet retainAll(BoxBitSet other) {
+        if (this.sameBox(other)) {
+            for (int i = 0; i < this.words.length; i++) {
+                this.words[i] &= other.words[i];
+            }
+            return this;
+        }
+        int fromX = Math.max(this.minX, other.minX);
+        int toX = Math.min(this.maxX, other.maxX);
+        for (int z = this.minZ; z <= this.maxZ; z++) {
+            for (int y = this.minY; y <= this.maxY; y++) {
+                long row = this.index(this.minX, y, z);
+                if (fromX > toX || !other.isInBox(fromX, y, z)) {
+                    applyRange(this.words, row, this.sizeX, 0L, AND);
+                    continue;
+                }
+                applyRange(this.words, row, fromX - this.minX, 0L, AND);
+                applyRange(this.words, row + (toX - this.minX) + 1, this.maxX - toX, 0L, AND);
+            }
+        }
+        this.combineOverlap(other, AND);
+        return this;
+    }
+
+    /**
+     * Removes all positions that are in {@code other}.
+     */
+    public BoxBitSet removeAll(BoxBitSet other) {
+        if (this.sameBox(other)) {
+            for (int i = 0; i < this.words.length; i++) {
+                this.words[i] &= ~other.words[i];
+            }
+        } else {
+            this.combineOverlap(other, AND_NOT);
+        }
+        return this;
+    }
+
+    public void forEach(IntTriConsumer action) {
+        for (int i = 0; i < this.words.length; i++) {
+            long word = this.words[i];
+            while (word != 0L) {
+                long index = ((long) i << 6) + Long.numberOfTrailingZeros(word);
+                word &= word - 1L;
+                long row = index / this.sizeX;
+                action.accept(this.minX + (int) (index - row * this.sizeX), this.minY + (int) (row % this.sizeY), this.minZ + (int) (row / this.sizeY));
+            }
+        }
+    }
+
+    /**
+     * Calls the {@code action} for each position in this set, in linear index
+     * order, reusing a single mutable block position.
+     */
+    public void forEach(Consumer<? super MutableNewBlockPos> action) {
+        MutableNewBlockPos cursor = new MutableNewBlockPos();
+        this.forEach((x, y, z) -> action.accept(cursor.set(x, y, z)));
+    }
+
+    public void forEachPacked(LongConsumer action) {
+        this.forEach((x, y, z) -> action.accept(NewBlockPos.asLong(x, y, z)));
+    }
+
+    private boolean sameBox(BoxBitSet other) {
+        return this.minX == other.minX && this.minY == other.minY && this.minZ == other.minZ && this.maxX == other.maxX && this.maxY == other.maxY
+                && this.maxZ == other.maxZ;
+    }
+
+    /**
+     * Applies {@code op} to the x rows the boxes share, with the bits of
+     * {@code other} as the operand.
+     */
+    private void combineOverlap(BoxBitSet other, int op) {
+        int fromX = Math.max(this.minX, other.minX);
+        int toX = Math.min(this.maxX, other.maxX);
+        int fromY = Math.max(this.minY, other.minY);
+        int toY = Math.min(this.maxY, other.maxY);
+        int fromZ = Math.max(this.minZ, other.minZ);
+        int toZ = Math.min(this.maxZ, other.maxZ);
+        if (fromX > toX || fromY > toY || fromZ > toZ) {
+            return;
+        }
+        int length = toX - fromX + 1;
+        for (int z = fromZ; z <= toZ; z++) {
+            for (int y = fromY; y <= toY; y++) {
+                long source = other.index(fromX, y, z);
+                long target = this.index(fromX, y, z);
+                for (int done = 0; done < length; done += 64) {
+                    int bits = Math.min(64, length - done);
+                    applyRange(this.words, target + done, bits, readBits(other.words, source + done, bits), op);
+                }
+            }
+        }
+    }
+
+    private static long readBits(long[] words, long index, int length) {
+        int word = (int) (index >>> 6);
+        int offset = (int) (index & 63);
+        long value = words[word] >>> offset;
+        if (offset != 0 && offset + length > 64) {
+            value |= words[word + 1] << 64 - offset;
+        }
+        return length == 64 ? value : value & (1L << length) - 1L;
+    }
+
+    /**
+     * Applies {@code op} with the low {@code length} bits of {@code value}
+     * to the bits starting at {@code index}. For {@link #AND}, ranges longer
+     * than 64 bits are cleared.
+     */
+    private static void applyRange(long[] words, long index, int length, long value, int op) {
+        while (length > 0) {
+            int bits = Math.min(64, length);
+            int word = (int) (index >>> 6);
+            int offset = (int) (index & 63);
+            long mask = bits == 64 ? -1L : (1L << bits) - 1L;
+            applyWord(words, word, mask << offset, value << offset, op);
+            if (offset + bits > 64) {
+                applyWord(words, word + 1, mask >>> 64 - offset, value >>> 64 - offset, op);
+            }
+            index += bits;
+            length -= bits;
+            value = 0L;
+        }
+    }
+
+    private static void applyWord(long[] words, int word, long mask, long value, int op) {
+        switch (op) {
+            case OR:
+                words[word] |= value & mask;
+                break;
+            case AND:
+                words[word] &= value | ~mask;
+                break;
+            case AND_NOT:
+                words[word] &= ~(value & mask);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown op " + op);
+        }
+    }
+}
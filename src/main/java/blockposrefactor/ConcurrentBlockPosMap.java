@@ -0,0 +1,115 @@
+package blockposrefactor;
+
+import java.util.Objects;
+import java.util.function.BiConsumer;
+
+/**
+ * A thread-safe map from block positions, stored as {@link
+ * NewBlockPos#asLong() packed longs}, to non-null values.
+ *
+ * <p>Lookups are lock-free and updates claim slots with compare-and-set;
+ * see {@link ConcurrentPackedHash} for how resizing is coordinated. Lookups
+ * accept any block position, mutable or immutable, without a {@link
+ * NewBlockPos#toImmutable() toImmutable} call.
+ *
+ * <p>Iteration is weakly consistent: mappings added or removed during
+ * iteration may or may not be visited.
+ *
+ * @param <V> the type of the values
+ */
+public class ConcurrentBlockPosMap<V> {
+
+    private final ConcurrentPackedHash hash;
+
+    public ConcurrentBlockPosMap() {
+        this(BlockPosHashing.DEFAULT_CAPACITY, Runtime.getRuntime().availableProcessors());
+    }
+
+    public ConcurrentBlockPosMap(int expectedSize, int concurrencyLevel) {
+        this.hash = new ConcurrentPackedHash(expectedSize, concurrencyLevel, true);
+    }
+
+    public V get(NewBlockPos pos) {
+        return this.get(NewBlockPos.asLong(pos.getX(), pos.getY(), pos.getZ()));
+    }
+
+    public V get(int x, int y, int z) {
+        return this.get(NewBlockPos.asLong(x, y, z));
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(long pos) {
+        return (V) this.hash.get(pos);
+    }
+
+    public boolean containsKey(NewBlockPos pos) {
+        return this.get(pos) != null;
+    }
+
+    public boolean containsKey(long pos) {
+        return this.get(pos) != null;
+    }
+
+    public V put(NewBlockPos pos, V value) {
+        return this.put(NewBlockPos.asLong(pos.getX(), pos.getY(), pos.getZ()), value);
+    }
+
+    /**
+     * Associates a value with a packed block position.
+     *
+     * @return the previous value for the position, or {@code null} if there
+     * was none
+     */
+    @SuppressWarnings("unchecked")
+    public V put(long pos, V value) {
+        return (V) this.hash.put(pos, Objects.requireNonNull(value, "value"), false);
+    }
+
+    public V putIfAbsent(NewBlockPos pos, V value) {
+        return this.putIfAbsent(NewBlockPos.asLong(pos.getX(), pos.getY(), pos.getZ()), value);
+    }
+
+    /**
+     * Associates a value with a packed block position unless it already has
+     * one.
+     *
+     * @return the present value for the position, or {@code null} if the
+     * given value was associated
+     */
+    @SuppressWarnings("unchecked")
+    public V putIfAbsent(long pos, V value) {
+        return (V) this.hash.put(pos, Objects.requireNonNull(value, "value"), true);
+    }
+
+    public V remove(NewBlockPos pos) {
+        return this.remove(NewBlockPos.asLong(pos.getX(), pos.getY(), pos.getZ()));
+    }
+
+    @SuppressWarnings("unchecked")
+    public V remove(long pos) {
+        return (V) this.hash.remove(pos);
+    }
+
+    public long size() {
+        return this.hash.size();
+    }
+
+    public boolean isEmpty() {
+        return this.hash.size() == 0L;
+    }
+
+    @SuppressWarnings("unchecked")
+    public void forEachPacked(BlockPosMap.PackedEntryConsumer<? super V> action) {
+        this.hash.forEach((pos, value) -> action.accept(pos, (V) value));
+    }
+
+    /**
+     * Calls the {@code action} for each mapping in this map, reusing a single
+     * mutable block position.
+     */
+    @SuppressWarnings("unchecked")
+    public void forEach(BiConsumer<? super MutableNewBlockPos, ? super V> action) {
+        MutableNewBlockPos cursor = new MutableNewBlockPos();
+        this.hash.forEach((pos, value) -> action.accept(cursor.set(pos), (V) value));
+    }
+}
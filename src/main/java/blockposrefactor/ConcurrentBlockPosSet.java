@@ -0,0 +1,97 @@
+package blockposrefactor;
+
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+
+/**
+ * A thread-safe set of block positions stored as {@link NewBlockPos#asLong()
+ * packed longs}, for "visited" and "pending" sets shared between worker
+ * threads.
+ *
+ * <p>Lookups are lock-free and updates claim slots with compare-and-set;
+ * see {@link ConcurrentPackedHash} for how resizing is coordinated. Lookups
+ * accept any block position, mutable or immutable, without a {@link
+ * NewBlockPos#toImmutable() toImmutable} call.
+ *
+ * <p>Iteration is weakly consistent: positions added or removed during
+ * iteration may or may not be visited.
+ */
+public class ConcurrentBlockPosSet {
+
+    private final ConcurrentPackedHash hash;
+
+    public ConcurrentBlockPosSet() {
+        this(BlockPosHashing.DEFAULT_CAPACITY, Runtime.getRuntime().availableProcessors());
+    }
+
+    public ConcurrentBlockPosSet(int expectedSize, int concurrencyLevel) {
+        this.hash = new ConcurrentPackedHash(expectedSize, concurrencyLevel, false);
+    }
+
+    public boolean add(NewBlockPos pos) {
+        return this.add(NewBlockPos.asLong(pos.getX(), pos.getY(), pos.getZ()));
+    }
+
+    public boolean add(int x, int y, int z) {
+        return this.add(NewBlockPos.asLong(x, y, z));
+    }
+
+    /**
+     * Adds a packed block position to this set.
+     *
+     * @return {@code true} if the position was not present before
+     */
+    public boolean add(long pos) {
+        return this.hash.put(pos, ConcurrentPackedHash.PRESENT, true) == null;
+    }
+
+    public boolean contains(NewBlockPos pos) {
+        return this.contains(NewBlockPos.asLong(pos.getX(), pos.getY(), pos.getZ()));
+    }
+
+    public boolean contains(int x, int y, int z) {
+        return this.contains(NewBlockPos.asLong(x, y, z));
+    }
+
+    public boolean contains(long pos) {
+        return this.hash.get(pos) != null;
+    }
+
+    public boolean remove(NewBlockPos pos) {
+        return this.remove(NewBlockPos.asLong(pos.getX(), pos.getY(), pos.getZ()));
+    }
+
+    public boolean remove(int x, int y, int z) {
+        return this.remove(NewBlockPos.asLong(x, y, z));
+    }
+
+    /**
+     * Removes a packed block position from this set.
+     *
+     * @return {@code true} if the position was present
+     */
+    public boolean remove(long pos) {
+        return this.hash.remove(pos) != null;
+    }
+
+    public long size() {
+        return this.hash.size();
+    }
+
+    public boolean isEmpty() {
+        return this.hash.size() == 0L;
+    }
+
+    public void forEachPacked(LongConsumer action) {
+        this.hash.forEach((pos, value) -> action.accept(pos));
+    }
+
+    /**
+     * Calls the {@code action} for each position in this set, reusing a
+     * single mutable block position.
+     */
+    public void forEach(Consumer<? super MutableNewBlockPos> action) {
+        MutableNewBlockPos cursor = new MutableNewBlockPos();
+        this.hash.forEach((pos, value) -> action.accept(cursor.set(pos)));
+    }
+}
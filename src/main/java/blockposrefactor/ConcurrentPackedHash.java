@@ -0,0 +1,322 @@
+package blockposrefactor;
+
+import net.minecraft.util.math.MathHelper;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * The concurrent open-addressing table behind {@link ConcurrentBlockPosSet}
+ * and {@link ConcurrentBlockPosMap}, keyed by packed block positions.
+ *
+ * <p>The table is split into stripes by hash. Within a stripe, slots are
+ * claimed and released with compare-and-set on the {@linkplain PackedSlots
+ * key slots}; lookups take no lock at all. Updates share the stripe's read
+ * lock, which a resize of that stripe takes exclusively, so only updates on
+ * a stripe that is being resized wait.
+ *
+ * <p>Two key values are reserved as slot markers, {@link #EMPTY} and {@link
+ * #TOMBSTONE}; entries for those keys are kept outside the stripes.
+ *
+ * <p>For maps, a slot whose key is set but whose value is {@code null} is in
+ * transition: its insertion is not published yet, or its removal has
+ * started. Lookups treat it as absent, and updates wait for it to settle.
+ */
+final class ConcurrentPackedHash {
+
+    static final Object PRESENT = new Object();
+    private static final long EMPTY = 0L;
+    private static final long TOMBSTONE = Long.MIN_VALUE;
+
+    private final Stripe[] stripes;
+    private final int stripeMask;
+    private final boolean withValues;
+    private final AtomicReference<Object> emptyKeyValue = new AtomicReference<>();
+    private final AtomicReference<Object> tombstoneKeyValue = new AtomicReference<>();
+
+    ConcurrentPackedHash(int expectedSize, int concurrencyLevel, boolean withValues) {
+        if (concurrencyLevel <= 0) {
+            throw new IllegalArgumentException("Concurrency level must be positive: " + concurrencyLevel);
+        }
+        int stripeCount = MathHelper.smallestEncompassingPowerOfTwo(Math.min(concurrencyLevel, 1 << 12) * 4);
+        this.stripes = new Stripe[stripeCount];
+        this.stripeMask = stripeCount - 1;
+        this.withValues = withValues;
+        int perStripe = BlockPosHashing.tableSize(expectedSize / stripeCount + 1);
+        for (int i = 0; i < stripeCount; i++) {
+            this.stripes[i] = new Stripe(new Table(perStripe, withValues));
+        }
+    }
+
+    private AtomicReference<Object> special(long key) {
+        return key == EMPTY ? this.emptyKeyValue : key == TOMBSTONE ? this.tombstoneKeyValue : null;
+    }
+
+    /**
+     * Returns the value for the key, {@link #PRESENT} for a present key of a
+     * set, or {@code null} if the key is absent.
+     */
+    Object get(long key) {
+        AtomicReference<Object> special = this.special(key);
+        if (special != null) {
+            return special.get();
+        }
+        long hash = BlockPosHashing.mix(key);
+        Table table = this.stripes[(int) (hash >>> 32) & this.stripeMask].table;
+        int mask = table.mask;
+        int i = (int) hash & mask;
+        for (int probes = 0; probes <= mask; probes++) {
+            long current = table.keys.get(i);
+            if (current == key) {
+                return this.withValues ? table.values.get(i) : PRESENT;
+            }
+            if (current == EMPTY) {
+                return null;
+            }
+            i = i + 1 & mask;
+        }
+        return null;
+    }
+
+    /**
+     * Associates the value with the key.
+     *
+     * @return the previous value, or {@code null} if the key was absent
+     */
+    Object put(long key, Object value, boolean onlyIfAbsent) {
+        AtomicReference<Object> special = this.special(key);
+        if (special != null) {
+            if (onlyIfAbsent) {
+                return special.compareAndSet(null, value) ? null : special.get();
+            }
+            return special.getAndSet(value);
+        }
+        long hash = BlockPosHashing.mix(key);
+        Stripe stripe = this.stripes[(int) (hash >>> 32) & this.stripeMask];
+        for (;;) {
+            Table table;
+            Object result = null;
+            boolean done = false;
+            boolean resize = false;
+            long stamp = stripe.lock.readLock();
+            try {
+                table = stripe.table;
+                int mask = table.mask;
+                int i = (int) hash & mask;
+                for (int probes = 0; probes <= mask; probes++) {
+                    long current = table.keys.get(i);
+                    if (current == EMPTY) {
+                        if (table.keys.compareAndSet(i, EMPTY, key)) {
+                            if (this.withValues) {
+                                table.values.set(i, value);
+                            }
+                            stripe.size.incrementAndGet();
+                            resize = table.used.incrementAndGet() > table.maxUsed;
+                            done = true;
+                            break;
+                        }
+                        current = table.keys.get(i);
+                    }
+                    if (current == key) {
+                        if (!this.withValues) {
+                            result = PRESENT;
+                            done = true;
+                            break;
+                        }
+                        Object old = this.replaceValue(table, i, key, value, onlyIfAbsent);
+                        if (old != null) {
+                            result = old;
+                            done = true;
+                            break;
+                        }
+                        // removed meanwhile, keep probing
+                    }
+                    i = i + 1 & mask;
+                }
+                if (!done) {
+                    resize = true;
+                }
+            } finally {
+                stripe.lock.unlockRead(stamp);
+            }
+            if (resize) {
+                this.resize(stripe, table);
+            }
+            if (done) {
+                return result;
+            }
+        }
+    }
+
+    /**
+     * Replaces the value of a published slot.
+     *
+     * @return the previous value, or {@code null} if the slot was removed
+     */
+    private Object replaceValue(Table table, int i, long key, Object value, boolean onlyIfAbsent) {
+        for (;;) {
+            Object old = table.values.get(i);
+            if (old == null) {
+                if (table.keys.get(i) != key) {
+                    return null;
+                }
+                Thread.yield();
+            } else if (onlyIfAbsent || table.values.compareAndSet(i, old, value)) {
+                return old;
+            }
+        }
+    }
+
+    /**
+     * Removes the key.
+     *
+     * @return the removed value, {@link #PRESENT} for a removed key of a set,
+     * or {@code null} if the key was absent
+     */
+    Object remove(long key) {
+        AtomicReference<Object> special = this.special(key);
+        if (special != null) {
+            return special.getAndSet(null);
+        }
+        long hash = BlockPosHashing.mix(key);
+        Stripe stripe = this.stripes[(int) (hash >>> 32) & this.stripeMask];
+        long stamp = stripe.lock.readLock();
+        try {
+            Table table = stripe.table;
+            int mask = table.mask;
+            int i = (int) hash & mask;
+            for (int probes = 0; probes <= mask; probes++) {
+                long current = table.keys.get(i);
+                if (current == EMPTY) {
+                    return null;
+                }
+                if (current == key) {
+                    Object old = this.withValues ? this.claimRemoval(table, i, key) : table.keys.compareAndSet(i, key, TOMBSTONE) ? PRESENT : null;
+                    if (old != null) {
+                        if (this.withValues) {
+                            table.keys.set(i, TOMBSTONE);
+                        }
+                        stripe.size.decrementAndGet();
+                        return old;
+                    }
+                    // removed meanwhile; the key may have been inserted again further along
+                }
+                i = i + 1 & mask;
+            }
+            return null;
+        } finally {
+            stripe.lock.unlockRead(stamp);
+        }
+    }
+
+    private Object claimRemoval(Table table, int i, long key) {
+        for (;;) {
+            Object old = table.values.get(i);
+            if (old == null) {
+                if (table.keys.get(i) != key) {
+                    return null;
+                }
+                Thread.yield();
+            } else if (table.values.compareAndSet(i, old, null)) {
+                return old;
+            }
+        }
+    }
+
+    private void resize(Stripe stripe, Table table) {
+        long stamp = stripe.lock.writeLock();
+        try {
+            if (stripe.table != table) {
+                return;
+            }
+            Table resized = new Table(BlockPosHashing.tableSize(Math.max(stripe.size.get() * 2, BlockPosHashing.DEFAULT_CAPACITY)), this.withValues);
+            int mask = resized.mask;
+            int used = 0;
+            for (int j = 0; j <= table.mask; j++) {
+                long key = table.keys.get(j);
+                if (key != EMPTY && key != TOMBSTONE) {
+                    int i = (int) BlockPosHashing.mix(key) & mask;
+                    while (resized.keys.get(i) != EMPTY) {
+                        i = i + 1 & mask;
+                    }
+                    resized.keys.set(i, key);
+                    if (this.withValues) {
+                        resized.values.set(i, table.values.get(j));
+                    }
+                    used++;
+                }
+            }
+            resized.used.set(used);
+            stripe.table = resized;
+        } finally {
+            stripe.lock.unlockWrite(stamp);
+        }
+    }
+
+    long size() {
+        long size = (this.emptyKeyValue.get() != null ? 1 : 0) + (this.tombstoneKeyValue.get() != null ? 1 : 0);
+        for (Stripe stripe : this.stripes) {
+            size += stripe.size.get();
+        }
+        return size;
+    }
+
+    /**
+     * Calls the {@code action} for each entry. Entries added or removed
+     * during the call may or may not be visited.
+     */
+    void forEach(BlockPosMap.PackedEntryConsumer<Object> action) {
+        Object value = this.emptyKeyValue.get();
+        if (value != null) {
+            action.accept(EMPTY, value);
+        }
+        value = this.tombstoneKeyValue.get();
+        if (value != null) {
+            action.accept(TOMBSTONE, value);
+        }
+        for (Stripe stripe : this.stripes) {
+            Table table = stripe.table;
+            for (int i = 0; i <= table.mask; i++) {
+                long key = table.keys.get(i);
+                if (key != EMPTY && key != TOMBSTONE) {
+                    value = this.withValues ? table.values.get(i) : PRESENT;
+                    if (value != null) {
+                        action.accept(key, value);
+                    }
+                }
+            }
+        }
+    }
+
+    private static final class Stripe {
+
+        final StampedLock lock = new StampedLock();
+        final AtomicInteger size = new AtomicInteger();
+        volatile Table table;
+
+        Stripe(Table table) {
+            this.table = table;
+        }
+    }
+
+    private static final class Table {
+
+        final PackedSlots keys;
+        final AtomicReferenceArray<Object> values;
+        final int mask;
+        final int maxUsed;
+        /**
+         * Slots holding a key or a tombstone.
+         */
+        final AtomicInteger used = new AtomicInteger();
+
+        Table(int length, boolean withValues) {
+            this.keys = new PackedSlots(length);
+            this.values = withValues ? new AtomicReferenceArray<>(length) : null;
+            this.mask = length - 1;
+            this.maxUsed = BlockPosHashing.maxFill(length);
+        }
+    }
+}
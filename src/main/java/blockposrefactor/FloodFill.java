@@ -0,0 +1,181 @@
+package blockposrefactor;
+
+import net.minecraft.util.math.Direction;
+
+import java.util.function.LongPredicate;
+import java.util.function.Predicate;
+
+/**
+ * A reusable breadth-first flood fill over block positions.
+ *
+ * <p>The queue and the visited set hold {@link NewBlockPos#asLong() packed
+ * positions}, and neighbours are computed with {@link
+ * NewBlockPos#offset(long, Direction)}, so a fill does not allocate per
+ * position once the buffers have grown to the size of the fill. Keep an
+ * instance around to reuse its buffers across fills; an instance is not
+ * thread-safe.
+ *
+ * <p>The condition is tested once per reached position, in breadth-first
+ * order. Positions that pass are filled and expanded to their neighbours in
+ * the {@linkplain #setDirections(Direction...) configured directions}.
+ *
+ * <p>Positions are stepped in packed form, so coordinates wrap around at the
+ * bounds of the {@link NewBlockPos#asLong() packed layout}; conditions should
+ * reject positions outside the world.
+ */
+public final class FloodFill {
+
+    private static final Direction[] ALL = Direction.values();
+
+    private final PackedPositionQueue queue;
+    private final BlockPosSet visited;
+    private final MutableNewBlockPos cursor = new MutableNewBlockPos();
+    private Direction[] directions = ALL;
+    private int maxDistance = Integer.MAX_VALUE;
+    private int maxNodes = Integer.MAX_VALUE;
+    private int filled;
+    private boolean truncated;
+
+    public FloodFill() {
+        this(BlockPosHashing.DEFAULT_CAPACITY);
+    }
+
+    public FloodFill(int expectedSize) {
+        this.queue = new PackedPositionQueue(expectedSize);
+        this.visited = new BlockPosSet(expectedSize);
+    }
+
+    /**
+     * Sets the directions in which filled positions spread, all six by
+     * default.
+     */
+    public FloodFill setDirections(Direction... directions) {
+        this.directions = directions.clone();
+        return this;
+    }
+
+    /**
+     * Sets how many steps away from the start the fill may spread; {@code 0}
+     * only tests the start.
+     */
+    public FloodFill setMaxDistance(int maxDistance) {
+        if (maxDistance < 0) {
+            throw new IllegalArgumentException("Max distance must be non-negative: " + maxDistance);
+        }
+        this.maxDistance = maxDistance;
+        return this;
+    }
+
+    /**
+     * Sets how many positions may be filled before the fill stops.
+     */
+    public FloodFill setMaxNodes(int maxNodes) {
+        if (maxNodes < 0) {
+            throw new IllegalArgumentException("Max nodes must be non-negative: " + maxNodes);
+        }
+        this.maxNodes = maxNodes;
+        return this;
+    }
+
+    /**
+     * Fills from {@code start}, testing each reached position with the
+     * {@code condition}.
+     *
+     * <p>The condition receives a shared {@link MutableNewBlockPos} cursor;
+     * it must {@link NewBlockPos#toImmutable() copy} the position to keep it.
+     *
+     * @return the number of filled positions
+     */
+    public int fill(NewBlockPos start, Predicate<? super MutableNewBlockPos> condition) {
+        MutableNewBlockPos cursor = this.cursor;
+        return this.fill(NewBlockPos.asLong(start.getX(), start.getY(), start.getZ()), pos -> condition.test(cursor.set(pos)));
+    }
+
+    /**
+     * Fills from the given start, testing each reached position with the
+     * {@code condition}.
+     *
+     * @return the number of filled positions
+     */
+    public int fill(int x, int y, int z, IntTriPredicate condition) {
+        return this.fill(NewBlockPos.asLong(x, y, z), pos -> condition.test(NewBlockPos.unpackLongX(pos), NewBlockPos.unpackLongY(pos), NewBlockPos.unpackLongZ(pos)));
+    }
+
+    /**
+     * Fills from a packed start position, testing each reached packed
+     * position with the {@code condition}.
+     *
+     * @return the number of filled positions
+     */
+    public int fill(long start, LongPredicate condition) {
+        PackedPositionQueue queue = this.queue;
+        BlockPosSet visited = this.visited;
+        Direction[] directions = this.directions;
+        queue.clear();
+        visited.clear();
+        this.filled = 0;
+        this.truncated = false;
+        if (this.maxNodes == 0) {
+            this.truncated = true;
+            return 0;
+        }
+
+        visited.add(start);
+        if (!condition.test(start)) {
+            return 0;
+        }
+        this.filled = 1;
+        queue.enqueue(start);
+        int distance = 0;
+        int remainingInLayer = 1;
+        while (!queue.isEmpty()) {
+            if (remainingInLayer == 0) {
+                distance++;
+                remainingInLayer = queue.size();
+            }
+            long pos = queue.dequeue();
+            remainingInLayer--;
+            if (distance == this.maxDistance) {
+                continue;
+            }
+            for (Direction direction : directions) {
+                long next = NewBlockPos.offset(pos, direction);
+                if (!visited.add(next) || !condition.test(next)) {
+                    continue;
+                }
+                if (this.filled == this.maxNodes) {
+                    this.truncated = true;
+                    queue.clear();
+                    return this.filled;
+                }
+                this.filled++;
+                queue.enqueue(next);
+            }
+        }
+        return this.filled;
+    }
+
+    /**
+     * Returns the number of positions filled by the last fill.
+     */
+    public int getFilledCount() {
+        return this.filled;
+    }
+
+    /**
+     * Returns whether the last fill stopped because it reached the {@linkplain
+     * #setMaxNodes(int) maximum number of filled positions}. Fills limited by
+     * {@linkplain #setMaxDistance(int) distance} are not truncated.
+     */
+    public boolean isTruncated() {
+        return this.truncated;
+    }
+
+    /**
+     * Returns the positions tested by the last fill, filled or not. The set
+     * is reused by the next fill.
+     */
+    public BlockPosSet getVisited() {
+        return this.visited;
+    }
+}
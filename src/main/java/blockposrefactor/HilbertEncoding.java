@@ -0,0 +1,164 @@
+package blockposrefactor;
+
+/**
+ * Encodes block positions along a Hilbert curve, which keeps consecutive keys
+ * adjacent in space and so clusters better than {@link MortonEncoding}.
+ *
+ * <p>Keys cover the same coordinate range as {@link NewBlockPos#asLong(int,
+ * int, int)}. As y only has 12 bits, the curve is hierarchical: the high 28
+ * bits of a key are a two-dimensional Hilbert index of the high 14 bits of x
+ * and z, selecting a cube of 4096 blocks per side, and the low 36 bits are a
+ * three-dimensional Hilbert index of the low 12 bits of x, y, and z within
+ * that cube. Keys are biased so that {@link java.util.Arrays#sort(long[])}
+ * orders them along the curve.
+ *
+ * <p>The curve is computed with Skilling's transpose algorithm
+ * ("Programming the Hilbert curve", 2004).
+ */
+public final class HilbertEncoding {
+
+    private static final int LOW_BITS = MortonEncoding.LOW_BITS;
+    private static final int HIGH_BITS = MortonEncoding.HIGH_BITS;
+    private static final int LOW_MASK = MortonEncoding.LOW_MASK;
+
+    private HilbertEncoding() {
+    }
+
+    public static long encode(int x, int y, int z) {
+        int ux = MortonEncoding.biasX(x);
+        int uy = MortonEncoding.biasY(y);
+        int uz = MortonEncoding.biasZ(z);
+
+        // three-dimensional part, axes to transpose
+        int a = ux & LOW_MASK;
+        int b = uy;
+        int c = uz & LOW_MASK;
+        for (int q = 1 << LOW_BITS - 1; q > 1; q >>>= 1) {
+            int p = q - 1;
+            if ((a & q) != 0) {
+                a ^= p;
+            }
+            if ((b & q) != 0) {
+                a ^= p;
+            } else {
+                int t = (a ^ b) & p;
+                a ^= t;
+                b ^= t;
+            }
+            if ((c & q) != 0) {
+                a ^= p;
+            } else {
+                int t = (a ^ c) & p;
+                a ^= t;
+                c ^= t;
+            }
+        }
+        b ^= a;
+        c ^= b;
+        int t = 0;
+        for (int q = 1 << LOW_BITS - 1; q > 1; q >>>= 1) {
+            if ((c & q) != 0) {
+                t ^= q - 1;
+            }
+        }
+        a ^= t;
+        b ^= t;
+        c ^= t;
+
+        // two-dimensional part
+        int h = ux >>> LOW_BITS;
+        int k = uz >>> LOW_BITS;
+        for (int q = 1 << HIGH_BITS - 1; q > 1; q >>>= 1) {
+            int p = q - 1;
+            if ((h & q) != 0) {
+                h ^= p;
+            }
+            if ((k & q) != 0) {
+                h ^= p;
+            } else {
+                int s = (h ^ k) & p;
+                h ^= s;
+                k ^= s;
+            }
+        }
+        k ^= h;
+        int s = 0;
+        for (int q = 1 << HIGH_BITS - 1; q > 1; q >>>= 1) {
+            if ((k & q) != 0) {
+                s ^= q - 1;
+            }
+        }
+        h ^= s;
+        k ^= s;
+
+        return MortonEncoding.interleave(h, k, a, b, c);
+    }
+
+    /**
+     * Decodes a key to a {@linkplain NewBlockPos#asLong(int, int, int) packed}
+     * block position.
+     */
+    public static long toPacked(long key) {
+        long bits = key ^ Long.MIN_VALUE;
+        long low = bits & MortonEncoding.LOW_KEY_MASK;
+        int a = MortonEncoding.compact3(low >>> 2);
+        int b = MortonEncoding.compact3(low >>> 1);
+        int c = MortonEncoding.compact3(low);
+        int h = MortonEncoding.compact2(bits >>> 3 * LOW_BITS + 1);
+        int k = MortonEncoding.compact2(bits >>> 3 * LOW_BITS);
+
+        // three-dimensional part, transpose to axes
+        int t = c >>> 1;
+        c ^= b;
+        b ^= a;
+        a ^= t;
+        for (int q = 2; q != 1 << LOW_BITS; q <<= 1) {
+            int p = q - 1;
+            if ((c & q) != 0) {
+                a ^= p;
+            } else {
+                t = (a ^ c) & p;
+                a ^= t;
+                c ^= t;
+            }
+            if ((b & q) != 0) {
+                a ^= p;
+            } else {
+                t = (a ^ b) & p;
+                a ^= t;
+                b ^= t;
+            }
+            if ((a & q) != 0) {
+                a ^= p;
+            }
+        }
+
+        // two-dimensional part
+        int s = k >>> 1;
+        k ^= h;
+        h ^= s;
+        for (int q = 2; q != 1 << HIGH_BITS; q <<= 1) {
+            int p = q - 1;
+            if ((k & q) != 0) {
+                h ^= p;
+            } else {
+                s = (h ^ k) & p;
+                h ^= s;
+                k ^= s;
+            }
+            if ((h & q) != 0) {
+                h ^= p;
+            }
+        }
+
+        return NewBlockPos.asLong(MortonEncoding.unbiasX(h << LOW_BITS | a), MortonEncoding.unbiasY(b), MortonEncoding.unbiasZ(k << LOW_BITS | c));
+    }
+
+    public static MutableNewBlockPos decode(long key, MutableNewBlockPos pos) {
+        return pos.set(toPacked(key));
+    }
+
+    public static long fromPacked(long packed) {
+        return encode(NewBlockPos.unpackLongX(packed), NewBlockPos.unpackLongY(packed), NewBlockPos.unpackLongZ(packed));
+    }
+}
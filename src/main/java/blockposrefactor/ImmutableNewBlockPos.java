@@ -79,6 +79,9 @@ public class ImmutableNewBlockPos extends NewVec3i implements NewBlockPos {
     }
 
     public static ImmutableNewBlockPos fromLong(long value) {
+        if (AllocationStats.ENABLED) {
+            AllocationStats.record(AllocationStats.Site.FROM_LONG);
+        }
         return new ImmutableNewBlockPos(NewBlockPos.unpackLongX(value), NewBlockPos.unpackLongY(value), NewBlockPos.unpackLongZ(value));
     }
 
@@ -90,6 +93,9 @@ public class ImmutableNewBlockPos extends NewVec3i implements NewBlockPos {
      * keys as to prevent side effects of mutations of mutable block positions.
      */
     @Override public ImmutableNewBlockPos toImmutable() {
+        if (AllocationStats.ENABLED) {
+            AllocationStats.record(AllocationStats.Site.TO_IMMUTABLE_SELF);
+        }
         return this;
     }
 
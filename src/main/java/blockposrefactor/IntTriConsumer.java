@@ -0,0 +1,11 @@
+package blockposrefactor;
+
+/**
+ * Accepts the x, y, and z of a block position without boxing them into a
+ * block position object.
+ */
+@FunctionalInterface
+public interface IntTriConsumer {
+
+    void accept(int x, int y, int z);
+}
@@ -0,0 +1,11 @@
+package blockposrefactor;
+
+/**
+ * Tests the x, y, and z of a block position without boxing them into a
+ * block position object.
+ */
+@FunctionalInterface
+public interface IntTriPredicate {
+
+    boolean test(int x, int y, int z);
+}
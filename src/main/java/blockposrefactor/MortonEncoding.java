@@ -0,0 +1,146 @@
+package blockposrefactor;
+
+/**
+ * Encodes block positions along a Z-order (Morton) curve, so that positions
+ * close to each other in all three axes tend to be close in sorted order.
+ *
+ * <p>Keys cover the same coordinate range as {@link NewBlockPos#asLong(int,
+ * int, int)}: 26 bits of x and z and 12 bits of y. The low 36 bits of a key
+ * interleave the low 12 bits of x, y, and z; the high 28 bits interleave the
+ * remaining 14 bits of x and z, as y has run out of bits. Keys are biased so
+ * that {@link java.util.Arrays#sort(long[])} orders them along the curve.
+ */
+public final class MortonEncoding {
+
+    static final int LOW_BITS = ImmutableNewBlockPos.SIZE_BITS_Y;
+    static final int HIGH_BITS = ImmutableNewBlockPos.SIZE_BITS_X - LOW_BITS;
+    static final int LOW_MASK = (1 << LOW_BITS) - 1;
+    static final long LOW_KEY_MASK = (1L << 3 * LOW_BITS) - 1L;
+    private static final int SIGN_X = 1 << ImmutableNewBlockPos.SIZE_BITS_X - 1;
+    private static final int SIGN_Y = 1 << ImmutableNewBlockPos.SIZE_BITS_Y - 1;
+    private static final int SIGN_Z = 1 << ImmutableNewBlockPos.SIZE_BITS_Z - 1;
+
+    private MortonEncoding() {
+    }
+
+    public static long encode(int x, int y, int z) {
+        int ux = biasX(x);
+        int uy = biasY(y);
+        int uz = biasZ(z);
+        return interleave(ux >>> LOW_BITS, uz >>> LOW_BITS, ux & LOW_MASK, uy, uz & LOW_MASK);
+    }
+
+    public static int decodeX(long key) {
+        long k = key ^ Long.MIN_VALUE;
+        return unbiasX(compact2(k >>> 3 * LOW_BITS + 1) << LOW_BITS | compact3((k & LOW_KEY_MASK) >>> 2));
+    }
+
+    public static int decodeY(long key) {
+        return unbiasY(compact3((key & LOW_KEY_MASK) >>> 1));
+    }
+
+    public static int decodeZ(long key) {
+        long k = key ^ Long.MIN_VALUE;
+        return unbiasZ(compact2(k >>> 3 * LOW_BITS) << LOW_BITS | compact3(k & LOW_KEY_MASK));
+    }
+
+    public static MutableNewBlockPos decode(long key, MutableNewBlockPos pos) {
+        return pos.set(decodeX(key), decodeY(key), decodeZ(key));
+    }
+
+    public static long fromPacked(long packed) {
+        return encode(NewBlockPos.unpackLongX(packed), NewBlockPos.unpackLongY(packed), NewBlockPos.unpackLongZ(packed));
+    }
+
+    public static long toPacked(long key) {
+        return NewBlockPos.asLong(decodeX(key), decodeY(key), decodeZ(key));
+    }
+
+    /**
+     * Builds a key from the unsigned high x and z parts and the unsigned low
+     * parts of all three axes, each already cut to size.
+     */
+    static long interleave(int highA, int highB, int lowA, int lowB, int lowC) {
+        long high = spread2(highA) << 1 | spread2(highB);
+        long low = spread3(lowA) << 2 | spread3(lowB) << 1 | spread3(lowC);
+        return (high << 3 * LOW_BITS | low) ^ Long.MIN_VALUE;
+    }
+
+    static int biasX(int x) {
+        return (x ^ SIGN_X) & (int) ImmutableNewBlockPos.BITS_X;
+    }
+
+    static int biasY(int y) {
+        return (y ^ SIGN_Y) & (int) ImmutableNewBlockPos.BITS_Y;
+    }
+
+    static int biasZ(int z) {
+        return (z ^ SIGN_Z) & (int) ImmutableNewBlockPos.BITS_Z;
+    }
+
+    static int unbiasX(int x) {
+        return (x ^ SIGN_X) << 32 - ImmutableNewBlockPos.SIZE_BITS_X >> 32 - ImmutableNewBlockPos.SIZE_BITS_X;
+    }
+
+    static int unbiasY(int y) {
+        return (y ^ SIGN_Y) << 32 - ImmutableNewBlockPos.SIZE_BITS_Y >> 32 - ImmutableNewBlockPos.SIZE_BITS_Y;
+    }
+
+    static int unbiasZ(int z) {
+        return (z ^ SIGN_Z) << 32 - ImmutableNewBlockPos.SIZE_BITS_Z >> 32 - ImmutableNewBlockPos.SIZE_BITS_Z;
+    }
+
+    /**
+     * Spreads the low 21 bits of {@code value} so that two zero bits follow
+     * each bit.
+     */
+    static long spread3(int value) {
+        long v = value & 0x1fffffL;
+        v = (v | v << 32) & 0x001f00000000ffffL;
+        v = (v | v << 16) & 0x001f0000ff0000ffL;
+        v = (v | v << 8) & 0x100f00f00f00f00fL;
+        v = (v | v << 4) & 0x10c30c30c30c30c3L;
+        v = (v | v << 2) & 0x1249249249249249L;
+        return v;
+    }
+
+    /**
+     * Inverse of {@link #spread3(int)}, reading every third bit.
+     */
+    static int compact3(long value) {
+        long v = value & 0x1249249249249249L;
+        v = (v ^ v >>> 2) & 0x10c30c30c30c30c3L;
+        v = (v ^ v >>> 4) & 0x100f00f00f00f00fL;
+        v = (v ^ v >>> 8) & 0x001f0000ff0000ffL;
+        v = (v ^ v >>> 16) & 0x001f00000000ffffL;
+        v = (v ^ v >>> 32) & 0x1fffffL;
+        return (int) v;
+    }
+
+    /**
+     * Spreads the low 32 bits of {@code value} so that a zero bit follows
+     * each bit.
+     */
+    static long spread2(int value) {
+        long v = value & 0xffffffffL;
+        v = (v | v << 16) & 0x0000ffff0000ffffL;
+        v = (v | v << 8) & 0x00ff00ff00ff00ffL;
+        v = (v | v << 4) & 0x0f0f0f0f0f0f0f0fL;
+        v = (v | v << 2) & 0x3333333333333333L;
+        v = (v | v << 1) & 0x5555555555555555L;
+        return v;
+    }
+
+    /**
+     * Inverse of {@link #spread2(int)}, reading every second bit.
+     */
+    static int compact2(long value) {
+        long v = value & 0x5555555555555555L;
+        v = (v ^ v >>> 1) & 0x3333333333333333L;
+        v = (v ^ v >>> 2) & 0x0f0f0f0f0f0f0f0fL;
+        v = (v ^ v >>> 4) & 0x00ff00ff00ff00ffL;
+        v = (v ^ v >>> 8) & 0x0000ffff0000ffffL;
+        v = (v ^ v >>> 16) & 0x00000000ffffffffL;
+        return (int) v;
+    }
+}
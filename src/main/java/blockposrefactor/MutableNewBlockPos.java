@@ -102,6 +102,9 @@ public class MutableNewBlockPos implements NewBlockPos {
     }
 
     public ImmutableNewBlockPos toImmutable() {
+        if (AllocationStats.ENABLED) {
+            AllocationStats.record(AllocationStats.Site.TO_IMMUTABLE_COPY);
+        }
         return new ImmutableNewBlockPos(x, y, z);
     }
 
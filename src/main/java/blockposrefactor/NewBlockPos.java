@@ -6,8 +6,14 @@ import net.minecraft.util.BlockRotation;
 import net.minecraft.util.dynamic.DynamicSerializable;
 import net.minecraft.util.math.BlockBox;
 import net.minecraft.util.math.Direction;
+import net.minecraft.util.math.Vec3d;
 
+import java.util.Iterator;
 import java.util.Optional;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
 import java.util.function.Predicate;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
@@ -27,11 +33,11 @@ public interface NewBlockPos extends DynamicSerializable {
     int getZ();
 
     static long offset(long value, Direction direction) {
-        return add(value, direction.getOffsetX(), direction.getOffsetY(), direction.getOffsetZ());
+        return PackedPositions.offset(value, direction);
     }
 
     static long add(long value, int x, int y, int z) {
-        return asLong(unpackLongX(value) + x, unpackLongY(value) + y, unpackLongZ(value) + z);
+        return PackedPositions.add(value, x, y, z);
     }
 
     static int unpackLongX(long x) {
@@ -80,58 +86,176 @@ public interface NewBlockPos extends DynamicSerializable {
         int j = center.getX();
         int k = center.getY();
         int l = center.getZ();
-        return () -> {
-            return new AbstractIterator<MutableNewBlockPos>() {
-                private final MutableNewBlockPos field_23378 = new MutableNewBlockPos();
-                private int manhattanDistance;
-                private int limitX;
-                private int limitY;
-                private int dx;
-                private int dy;
-                private boolean field_23379;
-
-                protected MutableNewBlockPos computeNext() {
-                    if (this.field_23379) {
-                        this.field_23379 = false;
-                        this.field_23378.setZ(i - (this.field_23378.getZ() - i));
-                        return this.field_23378;
-                    } else {
-                        MutableNewBlockPos blockPos;
-                        for (blockPos = null; blockPos == null; ++this.dy) {
-                            if (this.dy > this.limitY) {
-                                ++this.dx;
-                                if (this.dx > this.limitX) {
-                                    ++this.manhattanDistance;
-                                    if (this.manhattanDistance > j) {
-                                        return this.endOfData();
+        return new Iterable<MutableNewBlockPos>() {
+            @Override public Iterator<MutableNewBlockPos> iterator() {
+                return new AbstractIterator<MutableNewBlockPos>() {
+                    private final MutableNewBlockPos field_23378 = new MutableNewBlockPos();
+                    private int manhattanDistance;
+                    private int limitX;
+                    private int limitY;
+                    private int dx;
+                    private int dy;
+                    private boolean field_23379;
+
+                    protected MutableNewBlockPos computeNext() {
+                        if (this.field_23379) {
+                            this.field_23379 = false;
+                            this.field_23378.setZ(l - (this.field_23378.getZ() - l));
+                            return this.field_23378;
+                        } else {
+                            MutableNewBlockPos blockPos;
+                            for (blockPos = null; blockPos == null; ++this.dy) {
+                                if (this.dy > this.limitY) {
+                                    ++this.dx;
+                                    if (this.dx > this.limitX) {
+                                        ++this.manhattanDistance;
+                                        if (this.manhattanDistance > i) {
+                                            return this.endOfData();
+                                        }
+
+                                        this.limitX = Math.min(xRange, this.manhattanDistance);
+                                        this.dx = -this.limitX;
                                     }
 
-                                    this.limitX = Math.min(k, this.manhattanDistance);
-                                    this.dx = -this.limitX;
+                                    this.limitY = Math.min(yRange, this.manhattanDistance - Math.abs(this.dx));
+                                    this.dy = -this.limitY;
                                 }
 
-                                this.limitY = Math.min(l, this.manhattanDistance - Math.abs(this.dx));
-                                this.dy = -this.limitY;
+                                int ix = this.dx;
+                                int jx = this.dy;
+                                int kx = this.manhattanDistance - Math.abs(ix) - Math.abs(jx);
+                                if (kx <= zRange) {
+                                    this.field_23379 = kx != 0;
+                                    blockPos = this.field_23378.set(j + ix, k + jx, l + kx);
+                                }
                             }
 
-                            int ix = this.dx;
-                            int jx = this.dy;
-                            int kx = this.manhattanDistance - Math.abs(ix) - Math.abs(jx);
-                            if (kx <= 0/*m decomp*/) {
-                                this.field_23379 = kx != 0;
-                                blockPos = this.field_23378.set(j + ix, k + jx, l + kx);
-                            }
+                            return blockPos;
                         }
+                    }
+                };
+            }
+
+            @Override public void forEach(Consumer<? super MutableNewBlockPos> action) {
+                MutableNewBlockPos cursor = new MutableNewBlockPos();
+                forEachOutwards(ORIGIN, xRange, yRange, zRange, (x, y, z) -> action.accept(cursor.set(j + x, k + y, l + z)));
+            }
+        };
+    }
+
+    /**
+     * Visits block positions around the {@code center} in the same order as
+     * {@link #iterateOutwards(NewBlockPos, int, int, int)}, without creating an
+     * iterator or a block position.
+     *
+     * @param center the center of iteration
+     * @param xRange the maximum x difference from the center
+     * @param yRange the maximum y difference from the center
+     * @param zRange the maximum z difference from the center
+     * @param visitor the visitor receiving the x, y, and z of each position
+     */
+    static void forEachOutwards(NewBlockPos center, int xRange, int yRange, int zRange, IntTriConsumer visitor) {
+        forEachOutwardsUntil(center, xRange, yRange, zRange, (x, y, z) -> {
+            visitor.accept(x, y, z);
+            return false;
+        });
+    }
 
-                        return blockPos;
+    /**
+     * Visits block positions around the {@code center} in the same order as
+     * {@link #iterateOutwards(NewBlockPos, int, int, int)} until the {@code
+     * visitor} returns {@code true}.
+     *
+     * @param center the center of iteration
+     * @param xRange the maximum x difference from the center
+     * @param yRange the maximum y difference from the center
+     * @param zRange the maximum z difference from the center
+     * @param visitor the visitor receiving the x, y, and z of each position,
+     * returning {@code true} to stop the iteration
+     * @return whether the iteration was stopped by the visitor
+     */
+    static boolean forEachOutwardsUntil(NewBlockPos center, int xRange, int yRange, int zRange, IntTriPredicate visitor) {
+        int centerX = center.getX();
+        int centerY = center.getY();
+        int centerZ = center.getZ();
+        int maxDistance = xRange + yRange + zRange;
+        for (int distance = 0; distance <= maxDistance; distance++) {
+            int limitX = Math.min(xRange, distance);
+            for (int dx = -limitX; dx <= limitX; dx++) {
+                int remaining = distance - Math.abs(dx);
+                int limitY = Math.min(yRange, remaining);
+                for (int dy = -limitY; dy <= limitY; dy++) {
+                    int dz = remaining - Math.abs(dy);
+                    if (dz <= zRange) {
+                        if (visitor.test(centerX + dx, centerY + dy, centerZ + dz)) {
+                            return true;
+                        }
+                        if (dz != 0 && visitor.test(centerX + dx, centerY + dy, centerZ - dz)) {
+                            return true;
+                        }
                     }
                 }
-            };
-        };
+            }
+        }
+        return false;
     }
 
+    /**
+     * Finds the first position around {@code pos}, in the order of {@link
+     * #iterateOutwards(NewBlockPos, int, int, int)}, that matches the {@code
+     * condition}.
+     *
+     * <p>The visiting order for common ranges is precomputed once and cached,
+     * so repeated searches only walk an offset table with a cursor from
+     * {@link BlockPosPool}, and allocate only the position they return. The
+     * {@code condition} must not keep the cursor after returning. {@link
+     * OutwardSearch} spreads the same search over several calls.
+     */
     static Optional<MutableNewBlockPos> findClosest(NewBlockPos pos, int horizontalRange, int verticalRange, Predicate<NewBlockPos> condition) {
-        return streamOutwards(pos, horizontalRange, verticalRange, horizontalRange).filter(condition).findFirst();
+        long[] offsets = OutwardOffsets.get(horizontalRange, verticalRange, horizontalRange);
+        if (offsets == null) {
+            return streamOutwards(pos, horizontalRange, verticalRange, horizontalRange).filter(condition).findFirst();
+        }
+        int x = pos.getX();
+        int y = pos.getY();
+        int z = pos.getZ();
+        MutableNewBlockPos cursor = BlockPosPool.borrow();
+        try {
+            for (long offset : offsets) {
+                int px = x + unpackLongX(offset);
+                int py = y + unpackLongY(offset);
+                int pz = z + unpackLongZ(offset);
+                if (condition.test(cursor.set(px, py, pz))) {
+                    return Optional.of(new MutableNewBlockPos(px, py, pz));
+                }
+            }
+        } finally {
+            BlockPosPool.release(cursor);
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Finds the same position as {@link #findClosest(NewBlockPos, int, int,
+     * Predicate)}, testing positions in parallel on the common fork-join pool.
+     *
+     * <p>The {@code condition} is called from several threads at once, and
+     * may be called for positions after the match; it must be thread-safe. It
+     * receives a cursor shared by the calls on one thread, which it must not
+     * keep after returning.
+     */
+    static Optional<MutableNewBlockPos> findClosestParallel(NewBlockPos pos, int horizontalRange, int verticalRange, Predicate<NewBlockPos> condition) {
+        return findClosestParallel(pos, horizontalRange, verticalRange, condition, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Finds the same position as {@link #findClosest(NewBlockPos, int, int,
+     * Predicate)}, testing positions in parallel on the {@code pool}.
+     *
+     * @see #findClosestParallel(NewBlockPos, int, int, Predicate)
+     */
+    static Optional<MutableNewBlockPos> findClosestParallel(NewBlockPos pos, int horizontalRange, int verticalRange, Predicate<NewBlockPos> condition, ForkJoinPool pool) {
+        return ParallelOutwardSearch.findClosest(pos, horizontalRange, verticalRange, horizontalRange, condition, pool);
     }
 
     static Stream<MutableNewBlockPos> streamOutwards(NewBlockPos center, int maxX, int maxY, int maxZ) {
@@ -153,35 +277,215 @@ public interface NewBlockPos extends DynamicSerializable {
     }
 
     static Stream<MutableNewBlockPos> stream(int startX, int startY, int startZ, int endX, int endY, int endZ) {
-        return StreamSupport.stream(iterate(startX, startY, startZ, endX, endY, endZ).spliterator(), false);
+        return StreamSupport.stream(new BlockBoxSpliterator(startX, startY, startZ, endX, endY, endZ), false);
     }
 
+    /**
+     * Iterates block positions in the box from the start to the end position,
+     * inclusive. The positions are iterated by x first, then y, then z.
+     *
+     * <p>The returned iterable's {@linkplain Iterable#spliterator()
+     * spliterator} can be split, so streams over it can run in parallel.
+     */
     static Iterable<MutableNewBlockPos> iterate(int startX, int startY, int startZ, int endX, int endY, int endZ) {
         int i = endX - startX + 1;
         int j = endY - startY + 1;
         int k = endZ - startZ + 1;
         int l = i * j * k;
-        return () -> {
-            return new AbstractIterator<MutableNewBlockPos>() {
-                private final MutableNewBlockPos field_23380 = new MutableNewBlockPos();
-                private int index;
-
-                protected MutableNewBlockPos computeNext() {
-                    if (this.index == i) {
-                        return this.endOfData();
-                    } else {
-                        int ix = this.index % j;
-                        int jx = this.index / j;
-                        int kx = jx % k;
-                        int lx = jx / k;
-                        ++this.index;
-                        return this.field_23380.set(startX + ix, startY + kx, startZ + lx);
+        return new Iterable<MutableNewBlockPos>() {
+            @Override public Iterator<MutableNewBlockPos> iterator() {
+                return new AbstractIterator<MutableNewBlockPos>() {
+                    private final MutableNewBlockPos field_23380 = new MutableNewBlockPos();
+                    private int index;
+
+                    protected MutableNewBlockPos computeNext() {
+                        if (this.index == l) {
+                            return this.endOfData();
+                        } else {
+                            int ix = this.index % i;
+                            int jx = this.index / i;
+                            int kx = jx % j;
+                            int lx = jx / j;
+                            ++this.index;
+                            return this.field_23380.set(startX + ix, startY + kx, startZ + lx);
+                        }
+                    }
+                };
+            }
+
+            @Override public Spliterator<MutableNewBlockPos> spliterator() {
+                return new BlockBoxSpliterator(startX, startY, startZ, endX, endY, endZ);
+            }
+
+            @Override public void forEach(Consumer<? super MutableNewBlockPos> action) {
+                MutableNewBlockPos cursor = new MutableNewBlockPos();
+                for (int z = startZ; z <= endZ; z++) {
+                    for (int y = startY; y <= endY; y++) {
+                        for (int x = startX; x <= endX; x++) {
+                            action.accept(cursor.set(x, y, z));
+                        }
                     }
                 }
-            };
+            }
         };
     }
 
+    /**
+     * Iterates the block positions within the {@code radius} of the {@code
+     * center}: those for which {@code pos.isWithinDistance(center, radius)}
+     * holds, or with {@code treatAsBlockPos}, those for which {@code
+     * pos.getSquaredDistance(center) < radius * radius} holds. The positions
+     * are iterated in the order of {@link #iterate(int, int, int, int, int,
+     * int)}.
+     *
+     * <p>The x-range of each row is precomputed and cached per radius up to
+     * 128, so no distance is computed per position. Larger radii compute the
+     * x-range of each row as it is reached, without a table.
+     *
+     * @throws IllegalArgumentException if the radius is not finite or its
+     * absolute value is greater than 2048
+     */
+    static Iterable<MutableNewBlockPos> iterateSphere(NewBlockPos center, double radius, boolean treatAsBlockPos) {
+        return SpanShape.sphere(center, radius, treatAsBlockPos);
+    }
+
+    /**
+     * Visits the block positions of {@link #iterateSphere(NewBlockPos, double,
+     * boolean)} without creating an iterator or a block position.
+     */
+    static void forEachInSphere(NewBlockPos center, double radius, boolean treatAsBlockPos, IntTriConsumer visitor) {
+        SpanShape.sphere(center, radius, treatAsBlockPos).forEach(visitor);
+    }
+
+    /**
+     * Iterates the block positions within the {@code outerRadius} but not
+     * within the {@code innerRadius} of the {@code center}, by the rules of
+     * {@link #iterateSphere(NewBlockPos, double, boolean)}.
+     *
+     * @throws IllegalArgumentException if either radius is not finite or its
+     * absolute value is greater than 2048
+     */
+    static Iterable<MutableNewBlockPos> iterateShell(NewBlockPos center, double innerRadius, double outerRadius, boolean treatAsBlockPos) {
+        return SpanShape.shell(center, innerRadius, outerRadius, treatAsBlockPos);
+    }
+
+    /**
+     * Visits the block positions of {@link #iterateShell(NewBlockPos, double,
+     * double, boolean)} without creating an iterator or a block position.
+     */
+    static void forEachInShell(NewBlockPos center, double innerRadius, double outerRadius, boolean treatAsBlockPos, IntTriConsumer visitor) {
+        SpanShape.shell(center, innerRadius, outerRadius, treatAsBlockPos).forEach(visitor);
+    }
+
+    /**
+     * Iterates the block positions of a vertical cylinder, {@code height}
+     * blocks tall from the {@code base} up, whose x and z are within the
+     * {@code radius} of the base: each layer holds the positions that {@link
+     * #iterateSphere(NewBlockPos, double, boolean)} yields at the y of the
+     * base, except that with {@code treatAsBlockPos} only x and z are
+     * measured from the block center.
+     *
+     * @throws IllegalArgumentException if the radius is not finite or its
+     * absolute value is greater than 2048
+     */
+    static Iterable<MutableNewBlockPos> iterateCylinder(NewBlockPos base, double radius, int height, boolean treatAsBlockPos) {
+        return SpanShape.cylinder(base, radius, height, treatAsBlockPos);
+    }
+
+    /**
+     * Visits the block positions of {@link #iterateCylinder(NewBlockPos,
+     * double, int, boolean)} without creating an iterator or a block
+     * position.
+     */
+    static void forEachInCylinder(NewBlockPos base, double radius, int height, boolean treatAsBlockPos, IntTriConsumer visitor) {
+        SpanShape.cylinder(base, radius, height, treatAsBlockPos).forEach(visitor);
+    }
+
+    /**
+     * Iterates the block positions the line segment from {@code start} to
+     * {@code end} passes through, from the block containing the start. The
+     * iterators are {@link VoxelRay}s, which also tell the face each position
+     * was entered through.
+     */
+    static Iterable<MutableNewBlockPos> iterateLine(Vec3d start, Vec3d end) {
+        return () -> new VoxelRay(start, end);
+    }
+
+    /**
+     * Visits the block positions the line segment from {@code start} to
+     * {@code end} passes through, in the order of {@link #iterateLine(Vec3d,
+     * Vec3d)}, until the {@code visitor} returns {@code true}.
+     *
+     * @return whether the traversal was stopped by the visitor
+     */
+    static boolean forEachOnLineUntil(Vec3d start, Vec3d end, VoxelRay.Visitor visitor) {
+        VoxelRay ray = new VoxelRay(start, end);
+        while (ray.hasNext()) {
+            MutableNewBlockPos pos = ray.next();
+            if (visitor.visit(pos, ray.getEntryFace())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Visits block positions in the box from the start to the end position,
+     * inclusive, in the same order as {@link #iterate(int, int, int, int, int,
+     * int)}, without creating an iterator or a block position.
+     */
+    static void forEachInBox(int startX, int startY, int startZ, int endX, int endY, int endZ, IntTriConsumer visitor) {
+        for (int z = startZ; z <= endZ; z++) {
+            for (int y = startY; y <= endY; y++) {
+                for (int x = startX; x <= endX; x++) {
+                    visitor.accept(x, y, z);
+                }
+            }
+        }
+    }
+
+    /**
+     * Visits block positions in the box from the start to the end position,
+     * inclusive, in the same order as {@link #iterate(int, int, int, int, int,
+     * int)} until the {@code visitor} returns {@code true}.
+     *
+     * @return whether the iteration was stopped by the visitor
+     */
+    static boolean forEachInBoxUntil(int startX, int startY, int startZ, int endX, int endY, int endZ, IntTriPredicate visitor) {
+        for (int z = startZ; z <= endZ; z++) {
+            for (int y = startY; y <= endY; y++) {
+                for (int x = startX; x <= endX; x++) {
+                    if (visitor.test(x, y, z)) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Visits the {@linkplain #asLong(int, int, int) packed} block positions in
+     * the box, in the same order as {@link #stream(BlockBox)}.
+     */
+    static void forEachPacked(BlockBox box, LongConsumer visitor) {
+        int startX = Math.min(box.minX, box.maxX);
+        int startY = Math.min(box.minY, box.maxY);
+        int startZ = Math.min(box.minZ, box.maxZ);
+        int endX = Math.max(box.minX, box.maxX);
+        int endY = Math.max(box.minY, box.maxY);
+        int endZ = Math.max(box.minZ, box.maxZ);
+        for (int z = startZ; z <= endZ; z++) {
+            long zBits = ((long) z & ImmutableNewBlockPos.BITS_Z) << ImmutableNewBlockPos.BIT_SHIFT_Z;
+            for (int y = startY; y <= endY; y++) {
+                long yzBits = zBits | (long) y & ImmutableNewBlockPos.BITS_Y;
+                for (int x = startX; x <= endX; x++) {
+                    visitor.accept(yzBits | ((long) x & ImmutableNewBlockPos.BITS_X) << ImmutableNewBlockPos.BIT_SHIFT_X);
+                }
+            }
+        }
+    }
+
     default <T> T serialize(DynamicOps<T> ops) {
         return ops.createIntList(IntStream.of(new int[]{this.getX(), this.getY(), this.getZ()}));
     }
@@ -191,12 +495,23 @@ public interface NewBlockPos extends DynamicSerializable {
     }
 
     default ImmutableNewBlockPos add(double x, double y, double z) {
-        return x == 0.0D && y == 0.0D && z == 0.0D ? toImmutable() :
-                new ImmutableNewBlockPos((double) this.getX() + x, (double) this.getY() + y, (double) this.getZ() + z);
+        if (x == 0.0D && y == 0.0D && z == 0.0D) {
+            return toImmutable();
+        }
+        if (AllocationStats.ENABLED) {
+            AllocationStats.record(AllocationStats.Site.ADD);
+        }
+        return new ImmutableNewBlockPos((double) this.getX() + x, (double) this.getY() + y, (double) this.getZ() + z);
     }
 
     default ImmutableNewBlockPos add(int x, int y, int z) {
-        return x == 0 && y == 0 && z == 0 ? toImmutable() : new ImmutableNewBlockPos(this.getX() + x, this.getY() + y, this.getZ() + z);
+        if (x == 0 && y == 0 && z == 0) {
+            return toImmutable();
+        }
+        if (AllocationStats.ENABLED) {
+            AllocationStats.record(AllocationStats.Site.ADD);
+        }
+        return new ImmutableNewBlockPos(this.getX() + x, this.getY() + y, this.getZ() + z);
     }
 
     default ImmutableNewBlockPos add(NewVec3i pos) {
@@ -256,15 +571,27 @@ public interface NewBlockPos extends DynamicSerializable {
     }
 
     default ImmutableNewBlockPos offset(Direction direction) {
+        if (AllocationStats.ENABLED) {
+            AllocationStats.recordOffset(direction);
+        }
         return new ImmutableNewBlockPos(this.getX() + direction.getOffsetX(), this.getY() + direction.getOffsetY(), this.getZ() + direction.getOffsetZ());
     }
 
     default ImmutableNewBlockPos offset(Direction direction, int i) {
-        return i == 0 ? toImmutable() : new ImmutableNewBlockPos(this.getX() + direction.getOffsetX() * i, this.getY() + direction.getOffsetY() * i,
+        if (i == 0) {
+            return toImmutable();
+        }
+        if (AllocationStats.ENABLED) {
+            AllocationStats.recordOffset(direction);
+        }
+        return new ImmutableNewBlockPos(this.getX() + direction.getOffsetX() * i, this.getY() + direction.getOffsetY() * i,
                 this.getZ() + direction.getOffsetZ() * i);
     }
 
     default ImmutableNewBlockPos rotate(BlockRotation rotation) {
+        if (AllocationStats.ENABLED && rotation != BlockRotation.NONE) {
+            AllocationStats.recordRotate(rotation);
+        }
         switch (rotation) {
             case NONE:
             default:
@@ -279,6 +606,9 @@ public interface NewBlockPos extends DynamicSerializable {
     }
 
     default ImmutableNewBlockPos crossProduct(NewVec3i pos) {
+        if (AllocationStats.ENABLED) {
+            AllocationStats.record(AllocationStats.Site.CROSS_PRODUCT);
+        }
         return new ImmutableNewBlockPos(this.getY() * pos.getZ() - this.getZ() * pos.getY(), this.getZ() * pos.getX() - this.getX() * pos.getZ(),
                 this.getX() * pos.getY() - this.getY() * pos.getX());
     }
@@ -292,6 +622,9 @@ public interface NewBlockPos extends DynamicSerializable {
      * position won't affect the returned position.
      */
     default MutableNewBlockPos mutableCopy() {
+        if (AllocationStats.ENABLED) {
+            AllocationStats.record(AllocationStats.Site.MUTABLE_COPY);
+        }
         return new MutableNewBlockPos(this.getX(), this.getY(), this.getZ());
     }
 
@@ -0,0 +1,72 @@
+package blockposrefactor;
+
+/**
+ * Caches the offsets visited by {@link NewBlockPos#iterateOutwards(NewBlockPos,
+ * int, int, int)} for a range triple, in visiting order, so that repeated
+ * outward searches become a linear walk over an array.
+ *
+ * <p>The offsets are {@linkplain NewBlockPos#asLong(int, int, int) packed}
+ * with the same layout as block positions. Tables are kept in a small
+ * direct-mapped cache keyed by the packed ranges, so that a lookup that hits
+ * allocates nothing; a range triple that maps to an occupied slot replaces
+ * its table.
+ */
+final class OutwardOffsets {
+
+    /**
+     * The largest table, in offsets, that is cached. Larger ranges are
+     * iterated directly instead.
+     */
+    static final int MAX_TABLE_SIZE = 1 << 16;
+    private static final int MAX_RANGE_Y = (1 << ImmutableNewBlockPos.SIZE_BITS_Y - 1) - 1;
+    /**
+     * The number of cached tables, a power of two. At most {@code SLOTS *
+     * MAX_TABLE_SIZE} offsets are cached.
+     */
+    private static final int SLOTS = 16;
+
+    // entries are immutable, so a racing thread sees either a whole entry or
+    // an older one, and at worst computes a table again
+    private static final Entry[] ENTRIES = new Entry[SLOTS];
+
+    private OutwardOffsets() {
+    }
+
+    /**
+     * Returns the cached offset table for the ranges, or {@code null} if the
+     * ranges are negative or the table would be too large to cache.
+     *
+     * <p>The returned array is shared and must not be modified.
+     */
+    static long[] get(int xRange, int yRange, int zRange) {
+        if (xRange < 0 || yRange < 0 || zRange < 0 || yRange > MAX_RANGE_Y
+                || (2L * xRange + 1) * (2L * yRange + 1) * (2L * zRange + 1) > MAX_TABLE_SIZE) {
+            return null;
+        }
+        long key = NewBlockPos.asLong(xRange, yRange, zRange);
+        int slot = (int) BlockPosHashing.mix(key) & SLOTS - 1;
+        Entry entry = ENTRIES[slot];
+        if (entry == null || entry.key != key) {
+            entry = new Entry(key, compute(xRange, yRange, zRange));
+            ENTRIES[slot] = entry;
+        }
+        return entry.table;
+    }
+
+    private static long[] compute(int xRange, int yRange, int zRange) {
+        long[] table = new long[(2 * xRange + 1) * (2 * yRange + 1) * (2 * zRange + 1)];
+        int[] size = new int[1];
+        NewBlockPos.forEachOutwards(NewBlockPos.ORIGIN, xRange, yRange, zRange, (x, y, z) -> table[size[0]++] = NewBlockPos.asLong(x, y, z));
+        return table;
+    }
+
+    private static final class Entry {
+        final long key;
+        final long[] table;
+
+        Entry(long key, long[] table) {
+            this.key = key;
+            this.table = table;
+        }
+    }
+}
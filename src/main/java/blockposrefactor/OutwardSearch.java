@@ -0,0 +1,198 @@
+package blockposrefactor;
+
+import java.util.function.Predicate;
+
+/**
+ * A search for the first position around a center, in the order of {@link
+ * NewBlockPos#iterateOutwards(NewBlockPos, int, int, int)}, that matches a
+ * condition, and that can be spread over several ticks.
+ *
+ * <p>Each {@link #advance(int, long) advance} call tests at most a given
+ * number of positions, or runs for at most a given time, and then keeps its
+ * place for the next call. Once finished, the search finds the same position
+ * as {@link NewBlockPos#findClosest(NewBlockPos, int, int, Predicate)} would
+ * have at the time, provided the condition gives the same answers.
+ *
+ * <p>A search is not thread-safe.
+ */
+public final class OutwardSearch {
+
+    /**
+     * How many positions are tested between two reads of the clock.
+     */
+    private static final int CLOCK_INTERVAL = 64;
+
+    private final int centerX;
+    private final int centerY;
+    private final int centerZ;
+    private final int xRange;
+    private final int yRange;
+    private final int zRange;
+    private final int maxDistance;
+    private final Predicate<? super MutableNewBlockPos> condition;
+    private final MutableNewBlockPos cursor = new MutableNewBlockPos();
+    // the cursor state of iterateOutwards
+    private int distance;
+    private int limitX;
+    private int limitY;
+    private int dx;
+    private int dy;
+    private int dz;
+    private boolean mirrorZ;
+    private int x;
+    private int y;
+    private int z;
+    private Status status = Status.NOT_YET;
+    private long tested;
+
+    /**
+     * Creates a search over the positions of {@link
+     * NewBlockPos#iterateOutwards(NewBlockPos, int, int, int)}.
+     *
+     * <p>The {@code condition} receives a shared {@link MutableNewBlockPos}
+     * cursor; it must {@link NewBlockPos#toImmutable() copy} the position to
+     * keep it.
+     */
+    public OutwardSearch(NewBlockPos center, int xRange, int yRange, int zRange, Predicate<? super MutableNewBlockPos> condition) {
+        this.centerX = center.getX();
+        this.centerY = center.getY();
+        this.centerZ = center.getZ();
+        this.xRange = xRange;
+        this.yRange = yRange;
+        this.zRange = zRange;
+        this.maxDistance = xRange + yRange + zRange;
+        this.condition = condition;
+    }
+
+    /**
+     * Creates a search over the positions of {@link
+     * NewBlockPos#findClosest(NewBlockPos, int, int, Predicate)}.
+     */
+    public static OutwardSearch findClosest(NewBlockPos pos, int horizontalRange, int verticalRange, Predicate<? super MutableNewBlockPos> condition) {
+        return new OutwardSearch(pos, horizontalRange, verticalRange, horizontalRange, condition);
+    }
+
+    /**
+     * Tests up to {@code maxPositions} more positions.
+     *
+     * @return the status of this search after the call
+     */
+    public Status advance(int maxPositions) {
+        return this.advance(maxPositions, Long.MAX_VALUE);
+    }
+
+    /**
+     * Tests up to {@code maxPositions} more positions, stopping early once
+     * {@code maxNanos} nanoseconds have passed. The clock is only read every
+     * few positions, so a slow condition can overrun the time budget by a few
+     * tests.
+     *
+     * @return the status of this search after the call
+     */
+    public Status advance(int maxPositions, long maxNanos) {
+        if (this.status != Status.NOT_YET) {
+            return this.status;
+        }
+        long start = maxNanos == Long.MAX_VALUE ? 0L : System.nanoTime();
+        for (int i = 0; i < maxPositions; i++) {
+            if (!this.next()) {
+                return this.status = Status.EXHAUSTED;
+            }
+            this.tested++;
+            if (this.condition.test(this.cursor)) {
+                // keep the match even if the condition moved the cursor
+                this.cursor.set(this.x, this.y, this.z);
+                return this.status = Status.FOUND;
+            }
+            if (maxNanos != Long.MAX_VALUE && (i + 1) % CLOCK_INTERVAL == 0 && System.nanoTime() - start >= maxNanos) {
+                break;
+            }
+        }
+        return this.status;
+    }
+
+    /**
+     * Runs this search to its end.
+     *
+     * @return {@link Status#FOUND} or {@link Status#EXHAUSTED}
+     */
+    public Status finish() {
+        while (this.advance(Integer.MAX_VALUE) == Status.NOT_YET) {
+            // keep going
+        }
+        return this.status;
+    }
+
+    /**
+     * Moves the cursor to the next position, following {@code
+     * iterateOutwards} step by step.
+     */
+    private boolean next() {
+        if (this.mirrorZ) {
+            this.mirrorZ = false;
+            this.z = this.centerZ - this.dz;
+            this.cursor.set(this.x, this.y, this.z);
+            return true;
+        }
+        while (true) {
+            if (this.dy > this.limitY) {
+                ++this.dx;
+                if (this.dx > this.limitX) {
+                    ++this.distance;
+                    if (this.distance > this.maxDistance) {
+                        return false;
+                    }
+                    this.limitX = Math.min(this.xRange, this.distance);
+                    this.dx = -this.limitX;
+                }
+                this.limitY = Math.min(this.yRange, this.distance - Math.abs(this.dx));
+                this.dy = -this.limitY;
+            }
+            int dy = this.dy++;
+            int dz = this.distance - Math.abs(this.dx) - Math.abs(dy);
+            if (dz <= this.zRange) {
+                this.dz = dz;
+                this.mirrorZ = dz != 0;
+                this.x = this.centerX + this.dx;
+                this.y = this.centerY + dy;
+                this.z = this.centerZ + dz;
+                this.cursor.set(this.x, this.y, this.z);
+                return true;
+            }
+        }
+    }
+
+    public Status getStatus() {
+        return this.status;
+    }
+
+    /**
+     * Returns the matching position once this search has {@linkplain
+     * Status#FOUND found} one, or {@code null} otherwise.
+     */
+    public MutableNewBlockPos getFound() {
+        return this.status == Status.FOUND ? this.cursor : null;
+    }
+
+    /**
+     * Returns how many positions this search has tested so far.
+     */
+    public long getTestedCount() {
+        return this.tested;
+    }
+
+    public enum Status {
+        /**
+         * A matching position was found; see {@link #getFound()}.
+         */
+        FOUND,
+        /**
+         * The search has positions left to test.
+         */
+        NOT_YET,
+        /**
+         * All positions were tested and none matched.
+         */
+        EXHAUSTED
+    }
+}
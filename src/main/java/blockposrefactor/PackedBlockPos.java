@@ -0,0 +1,114 @@
+package blockposrefactor;
+
+import com.google.common.base.MoreObjects;
+import net.minecraft.util.math.Direction;
+
+/**
+ * An immutable block position backed by a single {@link NewBlockPos#asLong()
+ * packed long}.
+ *
+ * <p>Equality, hashing and {@link #asLong()} only read the packed value, and
+ * {@link #offsetPacked(Direction)} and {@link #addPacked(int, int, int)}
+ * compute the result in packed form. This makes packed positions cheap map
+ * keys; they are only equal to other packed positions.
+ *
+ * <p>As {@link #toImmutable()} must return an {@link ImmutableNewBlockPos},
+ * it and the other defaulted {@link NewBlockPos} methods still allocate one.
+ */
+public final class PackedBlockPos implements NewBlockPos, Comparable<PackedBlockPos> {
+
+    public static final PackedBlockPos ORIGIN = new PackedBlockPos(0L);
+
+    private final long value;
+
+    private PackedBlockPos(long value) {
+        this.value = value;
+    }
+
+    public static PackedBlockPos of(long value) {
+        return value == 0L ? ORIGIN : new PackedBlockPos(value);
+    }
+
+    public static PackedBlockPos of(int x, int y, int z) {
+        return of(NewBlockPos.asLong(x, y, z));
+    }
+
+    /**
+     * Returns a packed block position with the same x, y, and z as the given
+     * position, or the position itself if it is already packed.
+     */
+    public static PackedBlockPos of(NewBlockPos pos) {
+        return pos instanceof PackedBlockPos ? (PackedBlockPos) pos : of(pos.asLong());
+    }
+
+    @Override public int getX() {
+        return NewBlockPos.unpackLongX(this.value);
+    }
+
+    @Override public int getY() {
+        return NewBlockPos.unpackLongY(this.value);
+    }
+
+    @Override public int getZ() {
+        return NewBlockPos.unpackLongZ(this.value);
+    }
+
+    @Override public long asLong() {
+        return this.value;
+    }
+
+    public PackedBlockPos offsetPacked(Direction direction) {
+        return of(NewBlockPos.offset(this.value, direction));
+    }
+
+    public PackedBlockPos offsetPacked(Direction direction, int distance) {
+        return distance == 0 ? this : of(NewBlockPos.add(this.value, direction.getOffsetX() * distance, direction.getOffsetY() * distance,
+                direction.getOffsetZ() * distance));
+    }
+
+    public PackedBlockPos addPacked(int x, int y, int z) {
+        return x == 0 && y == 0 && z == 0 ? this : of(NewBlockPos.add(this.value, x, y, z));
+    }
+
+    @Override public ImmutableNewBlockPos toImmutable() {
+        if (AllocationStats.ENABLED) {
+            AllocationStats.record(AllocationStats.Site.TO_IMMUTABLE_COPY);
+        }
+        return new ImmutableNewBlockPos(this.getX(), this.getY(), this.getZ());
+    }
+
+    @Override public MutableNewBlockPos mutableCopy() {
+        if (AllocationStats.ENABLED) {
+            AllocationStats.record(AllocationStats.Site.MUTABLE_COPY);
+        }
+        return new MutableNewBlockPos().set(this.value);
+    }
+
+    @Override public boolean equals(Object object) {
+        return this == object || object instanceof PackedBlockPos && ((PackedBlockPos) object).value == this.value;
+    }
+
+    @Override public int hashCode() {
+        return (int) BlockPosHashing.mix(this.value);
+    }
+
+    /**
+     * Compares the positions in the same order as {@link
+     * NewVec3i#compareTo(NewVec3i)}: by y, then z, then x.
+     */
+    @Override public int compareTo(PackedBlockPos other) {
+        int y = this.getY();
+        int otherY = other.getY();
+        if (y == otherY) {
+            int z = this.getZ();
+            int otherZ = other.getZ();
+            return z == otherZ ? this.getX() - other.getX() : z - otherZ;
+        } else {
+            return y - otherY;
+        }
+    }
+
+    @Override public String toString() {
+        return MoreObjects.toStringHelper(this).add("x", this.getX()).add("y", this.getY()).add("z", this.getZ()).toString();
+    }
+}
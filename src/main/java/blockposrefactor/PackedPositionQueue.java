@@ -0,0 +1,67 @@
+package blockposrefactor;
+
+import net.minecraft.util.math.MathHelper;
+
+import java.util.NoSuchElementException;
+
+/**
+ * A growable FIFO ring buffer of packed block positions.
+ */
+final class PackedPositionQueue {
+
+    private long[] elements;
+    private int mask;
+    private int head;
+    private int size;
+
+    PackedPositionQueue(int expectedSize) {
+        int n = MathHelper.smallestEncompassingPowerOfTwo(Math.max(expectedSize, BlockPosHashing.DEFAULT_CAPACITY));
+        this.elements = new long[n];
+        this.mask = n - 1;
+    }
+
+    int size() {
+        return this.size;
+    }
+
+    boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    void enqueue(long pos) {
+        if (this.size == this.elements.length) {
+            this.grow();
+        }
+        this.elements[this.head + this.size & this.mask] = pos;
+        this.size++;
+    }
+
+    long dequeue() {
+        if (this.size == 0) {
+            throw new NoSuchElementException();
+        }
+        long pos = this.elements[this.head];
+        this.head = this.head + 1 & this.mask;
+        this.size--;
+        return pos;
+    }
+
+    void clear() {
+        this.head = 0;
+        this.size = 0;
+    }
+
+    private void grow() {
+        long[] old = this.elements;
+        if (old.length >= BlockPosHashing.MAXIMUM_CAPACITY) {
+            throw new IllegalStateException("Queue is full");
+        }
+        long[] elements = new long[old.length << 1];
+        int first = old.length - this.head;
+        System.arraycopy(old, this.head, elements, 0, first);
+        System.arraycopy(old, 0, elements, first, this.head);
+        this.elements = elements;
+        this.mask = elements.length - 1;
+        this.head = 0;
+    }
+}
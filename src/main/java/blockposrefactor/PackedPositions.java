@@ -0,0 +1,131 @@
+package blockposrefactor;
+
+import net.minecraft.util.math.Direction;
+
+/**
+ * Arithmetic on {@linkplain NewBlockPos#asLong(int, int, int) packed} block
+ * positions that works on the packed value directly.
+ *
+ * <p>Each coordinate lives in its own lane of the long. Additions are done
+ * for all three lanes at once, keeping carries from crossing lane borders,
+ * so every coordinate wraps around within its lane exactly like unpacking,
+ * adding and repacking does.
+ */
+public final class PackedPositions {
+
+    public static final long MASK_X = ImmutableNewBlockPos.BITS_X << ImmutableNewBlockPos.BIT_SHIFT_X;
+    public static final long MASK_Y = ImmutableNewBlockPos.BITS_Y;
+    public static final long MASK_Z = ImmutableNewBlockPos.BITS_Z << ImmutableNewBlockPos.BIT_SHIFT_Z;
+    /**
+     * The highest bit of each lane.
+     */
+    private static final long LANE_HIGH_BITS = (1L << ImmutableNewBlockPos.BIT_SHIFT_X + ImmutableNewBlockPos.SIZE_BITS_X - 1)
+            | (1L << ImmutableNewBlockPos.BIT_SHIFT_Z + ImmutableNewBlockPos.SIZE_BITS_Z - 1)
+            | (1L << ImmutableNewBlockPos.SIZE_BITS_Y - 1);
+    private static final long[] DIRECTION_DELTAS;
+
+    static {
+        Direction[] directions = Direction.values();
+        DIRECTION_DELTAS = new long[directions.length];
+        for (Direction direction : directions) {
+            DIRECTION_DELTAS[direction.getId()] = NewBlockPos.asLong(direction.getOffsetX(), direction.getOffsetY(), direction.getOffsetZ());
+        }
+    }
+
+    private PackedPositions() {
+    }
+
+    /**
+     * Returns the packed delta that moves a packed position by one block in
+     * the {@code direction}.
+     */
+    public static long delta(Direction direction) {
+        return DIRECTION_DELTAS[direction.getId()];
+    }
+
+    /**
+     * Adds a packed delta, such as one from {@link #delta(Direction)} or
+     * {@link NewBlockPos#asLong(int, int, int)}, to a packed position lane by
+     * lane.
+     */
+    public static long addDelta(long value, long delta) {
+        return ((value & ~LANE_HIGH_BITS) + (delta & ~LANE_HIGH_BITS)) ^ ((value ^ delta) & LANE_HIGH_BITS);
+    }
+
+    /**
+     * Subtracts a packed delta from a packed position lane by lane.
+     */
+    public static long subtractDelta(long value, long delta) {
+        return ((value | LANE_HIGH_BITS) - (delta & ~LANE_HIGH_BITS)) ^ ((value ^ ~delta) & LANE_HIGH_BITS);
+    }
+
+    public static long add(long value, int x, int y, int z) {
+        return addDelta(value, NewBlockPos.asLong(x, y, z));
+    }
+
+    public static long offset(long value, Direction direction) {
+        return addDelta(value, DIRECTION_DELTAS[direction.getId()]);
+    }
+
+    public static long offset(long value, Direction direction, int distance) {
+        return add(value, direction.getOffsetX() * distance, direction.getOffsetY() * distance, direction.getOffsetZ() * distance);
+    }
+
+    public static long up(long value) {
+        return offset(value, Direction.UP);
+    }
+
+    public static long down(long value) {
+        return offset(value, Direction.DOWN);
+    }
+
+    public static long north(long value) {
+        return offset(value, Direction.NORTH);
+    }
+
+    public static long south(long value) {
+        return offset(value, Direction.SOUTH);
+    }
+
+    public static long west(long value) {
+        return offset(value, Direction.WEST);
+    }
+
+    public static long east(long value) {
+        return offset(value, Direction.EAST);
+    }
+
+    public static long withX(long value, int x) {
+        return value & ~MASK_X | ((long) x & ImmutableNewBlockPos.BITS_X) << ImmutableNewBlockPos.BIT_SHIFT_X;
+    }
+
+    public static long withY(long value, int y) {
+        return value & ~MASK_Y | (long) y & ImmutableNewBlockPos.BITS_Y;
+    }
+
+    public static long withZ(long value, int z) {
+        return value & ~MASK_Z | ((long) z & ImmutableNewBlockPos.BITS_Z) << ImmutableNewBlockPos.BIT_SHIFT_Z;
+    }
+
+    public static long addX(long value, int x) {
+        return value & ~MASK_X | value + ((long) x << ImmutableNewBlockPos.BIT_SHIFT_X) & MASK_X;
+    }
+
+    public static long addY(long value, int y) {
+        return value & ~MASK_Y | value + y & MASK_Y;
+    }
+
+    public static long addZ(long value, int z) {
+        return value & ~MASK_Z | value + ((long) z << ImmutableNewBlockPos.BIT_SHIFT_Z) & MASK_Z;
+    }
+
+    /**
+     * Fills {@code result} with the packed neighbors of a packed position, in
+     * the order of {@link Direction#values()}.
+     */
+    public static void neighbors(long value, long[] result) {
+        for (int i = 0; i < DIRECTION_DELTAS.length; i++) {
+            result[i] = addDelta(value, DIRECTION_DELTAS[i]);
+        }
+    }
+}
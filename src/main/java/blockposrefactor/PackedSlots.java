@@ -0,0 +1,37 @@
+package blockposrefactor;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The key slots of a {@link ConcurrentPackedHash} table.
+ *
+ * <p>This is the Java 8 version, backed by an {@link AtomicLongArray}. The
+ * multi-release jar carries a Java 17 version of this class that works on a
+ * plain {@code long[]} through a {@code VarHandle}, saving the indirection
+ * through the wrapper and reading slots with acquire instead of volatile
+ * semantics.
+ */
+final class PackedSlots {
+
+    private final AtomicLongArray slots;
+
+    PackedSlots(int length) {
+        this.slots = new AtomicLongArray(length);
+    }
+
+    int length() {
+        return this.slots.length();
+    }
+
+    long get(int i) {
+        return this.slots.get(i);
+    }
+
+    void set(int i, long value) {
+        this.slots.set(i, value);
+    }
+
+    boolean compareAndSet(int i, long expect, long update) {
+        return this.slots.compareAndSet(i, expect, update);
+    }
+}
@@ -0,0 +1,222 @@
+package blockposrefactor;
+
+import java.util.Arrays;
+
+/**
+ * Sorting, searching, and merging of {@code long[]} keys in signed order,
+ * such as {@link YzxEncoding}, {@link MortonEncoding}, or {@link
+ * HilbertEncoding} keys.
+ *
+ * <p>Sorted, duplicate-free key arrays can stand in for a {@code
+ * TreeSet<ImmutableNewBlockPos>} in code that needs positions in a
+ * deterministic order.
+ */
+public final class PackedSort {
+
+    private static final int RADIX_BITS = 8;
+    private static final int RADIX = 1 << RADIX_BITS;
+    private static final int PASSES = Long.SIZE / RADIX_BITS;
+    /**
+     * Below this length, a comparison sort beats counting digits.
+     */
+    private static final int RADIX_THRESHOLD = 1 << 7;
+
+    private PackedSort() {
+    }
+
+    public static void radixSort(long[] keys) {
+        radixSort(keys, 0, keys.length);
+    }
+
+    public static void radixSort(long[] keys, int from, int to) {
+        if (to - from < RADIX_THRESHOLD) {
+            Arrays.sort(keys, from, to);
+            return;
+        }
+        radixSort(keys, from, to, new long[to - from]);
+    }
+
+    /**
+     * Sorts the keys in the range with a least significant digit radix sort,
+     * using the {@code buffer} as scratch space.
+     *
+     * <p>Digits that are the same for all keys, like the high bits of keys
+     * close to each other, are skipped.
+     *
+     * @param buffer an array of at least {@code to - from} elements
+     */
+    public static void radixSort(long[] keys, int from, int to, long[] buffer) {
+        int length = to - from;
+        if (buffer.length < length) {
+            throw new IllegalArgumentException("Buffer too small: " + buffer.length + " < " + length);
+        }
+        if (length < 2) {
+            return;
+        }
+        int[] counts = new int[PASSES * RADIX];
+        for (int i = from; i < to; i++) {
+            long key = keys[i] ^ Long.MIN_VALUE;
+            for (int pass = 0; pass < PASSES; pass++) {
+                counts[pass * RADIX + (int) (key >>> pass * RADIX_BITS & RADIX - 1)]++;
+            }
+        }
+
+        long[] source = keys;
+        int sourceFrom = from;
+        long[] target = buffer;
+        int targetFrom = 0;
+        for (int pass = 0; pass < PASSES; pass++) {
+            int base = pass * RADIX;
+            int shift = pass * RADIX_BITS;
+            if (counts[base + (int) ((source[sourceFrom] ^ Long.MIN_VALUE) >>> shift & RADIX - 1)] == length) {
+                continue;
+            }
+            int offset = targetFrom;
+            for (int digit = 0; digit < RADIX; digit++) {
+                int count = counts[base + digit];
+                counts[base + digit] = offset;
+                offset += count;
+            }
+            for (int i = sourceFrom, end = sourceFrom + length; i < end; i++) {
+                long key = source[i];
+                target[counts[base + (int) ((key ^ Long.MIN_VALUE) >>> shift & RADIX - 1)]++] = key;
+            }
+            long[] swap = source;
+            source = target;
+            target = swap;
+            int swapFrom = sourceFrom;
+            sourceFrom = targetFrom;
+            targetFrom = swapFrom;
+        }
+        if (source != keys) {
+            System.arraycopy(source, sourceFrom, keys, from, length);
+        }
+    }
+
+    /**
+     * Returns the index of the first key in the sorted range that is not less
+     * than the {@code key}, or {@code to} if there is none.
+     *
+     * <p>Together with {@link Arrays#binarySearch(long[], int, int, long)} for
+     * exact lookups, this finds the keys between two bounds, such as all
+     * positions of a layer.
+     */
+    public static int lowerBound(long[] keys, int from, int to, long key) {
+        int low = from;
+        int high = to;
+        while (low < high) {
+            int middle = low + high >>> 1;
+            if (keys[middle] < key) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Removes duplicates from the sorted range of keys, moving the distinct
+     * keys to its start.
+     *
+     * @return the index after the last distinct key
+     */
+    public static int distinct(long[] keys, int from, int to) {
+        if (from == to) {
+            return to;
+        }
+        int end = from + 1;
+        for (int i = from + 1; i < to; i++) {
+            long key = keys[i];
+            if (key != keys[end - 1]) {
+                keys[end++] = key;
+            }
+        }
+        return end;
+    }
+
+    /**
+     * Merges two sorted, duplicate-free arrays into a sorted, duplicate-free
+     * union.
+     *
+     * @param target an array of at least {@code firstLength + secondLength}
+     * elements, distinct from the inputs
+     * @return the number of keys written to the target
+     */
+    public static int union(long[] first, int firstLength, long[] second, int secondLength, long[] target) {
+        int i = 0;
+        int j = 0;
+        int n = 0;
+        while (i < firstLength && j < secondLength) {
+            long a = first[i];
+            long b = second[j];
+            if (a < b) {
+                target[n++] = a;
+                i++;
+            } else if (a > b) {
+                target[n++] = b;
+                j++;
+            } else {
+                target[n++] = a;
+                i++;
+                j++;
+            }
+        }
+        while (i < firstLength) {
+            target[n++] = first[i++];
+        }
+        while (j < secondLength) {
+            target[n++] = second[j++];
+        }
+        return n;
+    }
+
+    /**
+     * Writes the keys present in both sorted, duplicate-free arrays to the
+     * target, in order.
+     *
+     * @return the number of keys written to the target
+     */
+    public static int intersection(long[] first, int firstLength, long[] second, int secondLength, long[] target) {
+        int i = 0;
+        int j = 0;
+        int n = 0;
+        while (i < firstLength && j < secondLength) {
+            long a = first[i];
+            long b = second[j];
+            if (a < b) {
+                i++;
+            } else if (a > b) {
+                j++;
+            } else {
+                target[n++] = a;
+                i++;
+                j++;
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Writes the keys of the first sorted, duplicate-free array that are not
+     * in the second to the target, in order.
+     *
+     * @return the number of keys written to the target
+     */
+    public static int difference(long[] first, int firstLength, long[] second, int secondLength, long[] target) {
+        int i = 0;
+        int j = 0;
+        int n = 0;
+        while (i < firstLength) {
+            long a = first[i];
+            while (j < secondLength && second[j] < a) {
+                j++;
+            }
+            if (j == secondLength || second[j] != a) {
+                target[n++] = a;
+            }
+            i++;
+        }
+        return n;
+    }
+}
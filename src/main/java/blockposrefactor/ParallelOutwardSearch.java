@@ -0,0 +1,220 @@
+package blockposrefactor;
+
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * Finds the first position in the order of {@link
+ * NewBlockPos#iterateOutwards(NewBlockPos, int, int, int)} that matches a
+ * condition, testing positions on a fork-join pool.
+ *
+ * <p>The search order is cut into slices, one per distance shell and x
+ * offset, which are numbered in iteration order. Slices are searched in
+ * batches of whole shells. A match is recorded as the smallest (slice,
+ * position in slice) pair seen so far, and workers skip slices numbered
+ * after it, so a batch stops early once an earlier match is confirmed, and
+ * the result is always the match the sequential order finds first.
+ */
+final class ParallelOutwardSearch {
+
+    /**
+     * The minimum number of positions in a batch of shells.
+     */
+    private static final int BATCH_POSITIONS = 1 << 12;
+    /**
+     * The number of positions below which a task tests its slices itself.
+     */
+    private static final int LEAF_POSITIONS = 1 << 8;
+
+    private final int centerX;
+    private final int centerY;
+    private final int centerZ;
+    private final int xRange;
+    private final int yRange;
+    private final int zRange;
+    private final Predicate<? super MutableNewBlockPos> condition;
+    private final AtomicLong best = new AtomicLong(Long.MAX_VALUE);
+    // the slices of the current batch
+    private int[] sliceDistance = new int[16];
+    private int[] sliceDx = new int[16];
+    private int[] sliceStart = new int[17];
+    private int sliceCount;
+
+    private ParallelOutwardSearch(NewBlockPos center, int xRange, int yRange, int zRange, Predicate<? super MutableNewBlockPos> condition) {
+        this.centerX = center.getX();
+        this.centerY = center.getY();
+        this.centerZ = center.getZ();
+        this.xRange = xRange;
+        this.yRange = yRange;
+        this.zRange = zRange;
+        this.condition = condition;
+    }
+
+    static Optional<MutableNewBlockPos> findClosest(NewBlockPos center, int xRange, int yRange, int zRange,
+            Predicate<? super MutableNewBlockPos> condition, ForkJoinPool pool) {
+        return new ParallelOutwardSearch(center, xRange, yRange, zRange, condition).run(pool);
+    }
+
+    private Optional<MutableNewBlockPos> run(ForkJoinPool pool) {
+        int maxDistance = this.xRange + this.yRange + this.zRange;
+        int distance = 0;
+        while (distance <= maxDistance) {
+            this.sliceCount = 0;
+            int positions = 0;
+            while (distance <= maxDistance && positions < BATCH_POSITIONS) {
+                positions += this.addShell(distance++);
+            }
+            if (this.sliceCount == 0) {
+                continue;
+            }
+            pool.invoke(new SliceTask(0, this.sliceCount));
+            long best = this.best.get();
+            if (best != Long.MAX_VALUE) {
+                MutableNewBlockPos found = new MutableNewBlockPos();
+                this.setPosition(found, (int) (best >>> 32), (int) best);
+                return Optional.of(found);
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Adds the slices of a distance shell to the current batch.
+     *
+     * @return the number of positions in the shell
+     */
+    private int addShell(int distance) {
+        int positions = 0;
+        int limitX = Math.min(this.xRange, distance);
+        for (int dx = -limitX; dx <= limitX; dx++) {
+            int count = this.countSlice(distance, dx);
+            if (count == 0) {
+                continue;
+            }
+            if (this.sliceCount == this.sliceDx.length) {
+                int length = this.sliceCount << 1;
+                this.sliceDistance = Arrays.copyOf(this.sliceDistance, length);
+                this.sliceDx = Arrays.copyOf(this.sliceDx, length);
+                this.sliceStart = Arrays.copyOf(this.sliceStart, length + 1);
+            }
+            this.sliceDistance[this.sliceCount] = distance;
+            this.sliceDx[this.sliceCount] = dx;
+            this.sliceStart[this.sliceCount + 1] = this.sliceStart[this.sliceCount] + count;
+            this.sliceCount++;
+            positions += count;
+        }
+        return positions;
+    }
+
+    private int countSlice(int distance, int dx) {
+        int remaining = distance - Math.abs(dx);
+        int limitY = Math.min(this.yRange, remaining);
+        int count = 0;
+        for (int dy = -limitY; dy <= limitY; dy++) {
+            int dz = remaining - Math.abs(dy);
+            if (dz <= this.zRange) {
+                count += dz != 0 ? 2 : 1;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Tests the positions of a slice in iteration order, stopping at the
+     * first match or once an earlier slice has a match.
+     */
+    private void searchSlice(int slice, MutableNewBlockPos cursor) {
+        int distance = this.sliceDistance[slice];
+        int dx = this.sliceDx[slice];
+        int remaining = distance - Math.abs(dx);
+        int limitY = Math.min(this.yRange, remaining);
+        int index = 0;
+        for (int dy = -limitY; dy <= limitY; dy++) {
+            int dz = remaining - Math.abs(dy);
+            if (dz > this.zRange) {
+                continue;
+            }
+            if (this.test(slice, index++, cursor.set(this.centerX + dx, this.centerY + dy, this.centerZ + dz))) {
+                return;
+            }
+            if (dz != 0 && this.test(slice, index++, cursor.set(this.centerX + dx, this.centerY + dy, this.centerZ - dz))) {
+                return;
+            }
+        }
+    }
+
+    private boolean test(int slice, int index, MutableNewBlockPos cursor) {
+        if (!this.condition.test(cursor)) {
+            return false;
+        }
+        long order = (long) slice << 32 | index;
+        long best;
+        do {
+            best = this.best.get();
+        } while (order < best && !this.best.compareAndSet(best, order));
+        return true;
+    }
+
+    private void setPosition(MutableNewBlockPos pos, int slice, int index) {
+        int dx = this.sliceDx[slice];
+        int remaining = this.sliceDistance[slice] - Math.abs(dx);
+        int limitY = Math.min(this.yRange, remaining);
+        for (int dy = -limitY; dy <= limitY; dy++) {
+            int dz = remaining - Math.abs(dy);
+            if (dz > this.zRange) {
+                continue;
+            }
+            if (index == 0) {
+                pos.set(this.centerX + dx, this.centerY + dy, this.centerZ + dz);
+                return;
+            }
+            if (dz != 0 && index == 1) {
+                pos.set(this.centerX + dx, this.centerY + dy, this.centerZ - dz);
+                return;
+            }
+            index -= dz != 0 ? 2 : 1;
+        }
+        throw new IllegalStateException("Index out of slice");
+    }
+
+    private boolean isBeaten(int slice) {
+        return (int) (this.best.get() >>> 32) < slice;
+    }
+
+    private final class SliceTask extends RecursiveAction {
+        private final int from;
+        private final int to;
+
+        SliceTask(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override protected void compute() {
+            if (isBeaten(this.from)) {
+                return;
+            }
+            int positions = sliceStart[this.to] - sliceStart[this.from];
+            if (this.to - this.from > 1 && positions > LEAF_POSITIONS) {
+                int middle = this.from + this.to >>> 1;
+                invokeAll(new SliceTask(this.from, middle), new SliceTask(middle, this.to));
+                return;
+            }
+            MutableNewBlockPos cursor = BlockPosPool.borrow();
+            try {
+                for (int slice = this.from; slice < this.to; slice++) {
+                    if (isBeaten(slice)) {
+                        return;
+                    }
+                    searchSlice(slice, cursor);
+                }
+            } finally {
+                BlockPosPool.release(cursor);
+            }
+        }
+    }
+}
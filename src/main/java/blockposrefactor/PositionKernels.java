@@ -0,0 +1,46 @@
+package blockposrefactor;
+
+/**
+ * Bulk kernels over positions stored as parallel x, y, and z arrays, used by
+ * {@link BlockPosBuffer}.
+ *
+ * <p>This is the Java 8 version, which runs the {@linkplain
+ * ScalarPositionKernels portable loops}. The multi-release jar carries a
+ * Java 17 version of this class under {@code META-INF/versions/17} that
+ * uses the Vector API when the {@code jdk.incubator.vector} module is
+ * resolved.
+ */
+final class PositionKernels {
+
+    private PositionKernels() {
+    }
+
+    /**
+     * Returns a short name of the kernels in use.
+     */
+    static String implementation() {
+        return "scalar";
+    }
+
+    /**
+     * @see ScalarPositionKernels#pack
+     */
+    static void pack(int[] xs, int[] ys, int[] zs, int offset, long[] packed, int packedOffset, int count) {
+        ScalarPositionKernels.pack(xs, ys, zs, offset, packed, packedOffset, count);
+    }
+
+    /**
+     * @see ScalarPositionKernels#unpack
+     */
+    static void unpack(long[] packed, int packedOffset, int[] xs, int[] ys, int[] zs, int offset, int count) {
+        ScalarPositionKernels.unpack(packed, packedOffset, xs, ys, zs, offset, count);
+    }
+
+    /**
+     * @see ScalarPositionKernels#retainWithinDistance
+     */
+    static int retainWithinDistance(int[] xs, int[] ys, int[] zs, int from, int to, int kept,
+            double cx, double cy, double cz, double offset, double distance) {
+        return ScalarPositionKernels.retainWithinDistance(xs, ys, zs, from, to, kept, cx, cy, cz, offset, distance);
+    }
+}
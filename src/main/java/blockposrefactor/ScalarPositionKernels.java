@@ -0,0 +1,64 @@
+package blockposrefactor;
+
+/**
+ * The portable loops behind {@link PositionKernels}, working on positions
+ * stored as parallel x, y, and z arrays.
+ *
+ * <p>These are what every runtime falls back to; newer runtimes may replace
+ * them through a versioned {@link PositionKernels}, which must give the same
+ * results.
+ */
+final class ScalarPositionKernels {
+
+    private ScalarPositionKernels() {
+    }
+
+    /**
+     * Packs {@code count} positions starting at {@code offset} into the
+     * {@code packed} array starting at {@code packedOffset}.
+     */
+    static void pack(int[] xs, int[] ys, int[] zs, int offset, long[] packed, int packedOffset, int count) {
+        for (int i = 0; i < count; i++) {
+            packed[packedOffset + i] = NewBlockPos.asLong(xs[offset + i], ys[offset + i], zs[offset + i]);
+        }
+    }
+
+    /**
+     * Unpacks {@code count} positions starting at {@code packedOffset} into
+     * the coordinate arrays starting at {@code offset}.
+     */
+    static void unpack(long[] packed, int packedOffset, int[] xs, int[] ys, int[] zs, int offset, int count) {
+        for (int i = 0; i < count; i++) {
+            long value = packed[packedOffset + i];
+            xs[offset + i] = NewBlockPos.unpackLongX(value);
+            ys[offset + i] = NewBlockPos.unpackLongY(value);
+            zs[offset + i] = NewBlockPos.unpackLongZ(value);
+        }
+    }
+
+    /**
+     * Moves the positions in {@code [from, to)} that are closer than the
+     * {@code distance} to the center down to the index {@code kept},
+     * preserving their order. The {@code offset} is added to each coordinate
+     * before measuring, as {@link NewVec3i#getSquaredDistance(double, double,
+     * double, boolean)} does.
+     *
+     * @return the index after the last kept position
+     */
+    static int retainWithinDistance(int[] xs, int[] ys, int[] zs, int from, int to, int kept,
+            double cx, double cy, double cz, double offset, double distance) {
+        double max = distance * distance;
+        for (int i = from; i < to; i++) {
+            double dx = (double) xs[i] + offset - cx;
+            double dy = (double) ys[i] + offset - cy;
+            double dz = (double) zs[i] + offset - cz;
+            if (dx * dx + dy * dy + dz * dz < max) {
+                xs[kept] = xs[i];
+                ys[kept] = ys[i];
+                zs[kept] = zs[i];
+                kept++;
+            }
+        }
+        return kept;
+    }
+}
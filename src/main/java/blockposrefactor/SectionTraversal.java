@@ -0,0 +1,234 @@
+package blockposrefactor;
+
+import net.minecraft.util.math.BlockBox;
+
+import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Traverses boxes of block positions one 16x16x16 chunk section at a time, so
+ * that callers can look up a section once and then work on all of its
+ * positions.
+ *
+ * <p>Sections are visited by section x first, then y, then z. Within a
+ * section, positions are visited in the order of their {@linkplain
+ * #localIndex(int, int, int) section-local index}: x first, then z, then y.
+ */
+public final class SectionTraversal {
+
+    private SectionTraversal() {
+    }
+
+    /**
+     * Returns the 12-bit index of a block position within its chunk section,
+     * {@code y << 8 | z << 4 | x} of the section-local coordinates.
+     */
+    public static int localIndex(int x, int y, int z) {
+        return (y & 15) << 8 | (z & 15) << 4 | x & 15;
+    }
+
+    /**
+     * Visits the positions in the box from the start to the end position,
+     * inclusive, section by section.
+     */
+    public static void forEach(int startX, int startY, int startZ, int endX, int endY, int endZ, SectionVisitor visitor) {
+        for (int sectionZ = startZ >> 4; sectionZ <= endZ >> 4; sectionZ++) {
+            int minZ = Math.max(startZ, sectionZ << 4);
+            int maxZ = Math.min(endZ, (sectionZ << 4) + 15);
+            for (int sectionY = startY >> 4; sectionY <= endY >> 4; sectionY++) {
+                int minY = Math.max(startY, sectionY << 4);
+                int maxY = Math.min(endY, (sectionY << 4) + 15);
+                for (int sectionX = startX >> 4; sectionX <= endX >> 4; sectionX++) {
+                    int minX = Math.max(startX, sectionX << 4);
+                    int maxX = Math.min(endX, (sectionX << 4) + 15);
+                    visitor.enterSection(sectionX, sectionY, sectionZ);
+                    for (int y = minY; y <= maxY; y++) {
+                        for (int z = minZ; z <= maxZ; z++) {
+                            int base = (y & 15) << 8 | (z & 15) << 4;
+                            for (int x = minX; x <= maxX; x++) {
+                                visitor.visit(x, y, z, base | x & 15);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    public static void forEach(BlockBox box, SectionVisitor visitor) {
+        forEach(Math.min(box.minX, box.maxX), Math.min(box.minY, box.maxY), Math.min(box.minZ, box.maxZ), Math.max(box.minX, box.maxX),
+                Math.max(box.minY, box.maxY), Math.max(box.minZ, box.maxZ), visitor);
+    }
+
+    /**
+     * Iterates the positions in the box from the start to the end position,
+     * inclusive, section by section, reusing a single mutable block position.
+     *
+     * <p>The returned iterable's {@linkplain Iterable#spliterator()
+     * spliterator} splits at section boundaries.
+     */
+    public static Iterable<MutableNewBlockPos> iterate(int startX, int startY, int startZ, int endX, int endY, int endZ) {
+        return new Iterable<MutableNewBlockPos>() {
+            @Override public Iterator<MutableNewBlockPos> iterator() {
+                return Spliterators.iterator(this.spliterator());
+            }
+
+            @Override public Spliterator<MutableNewBlockPos> spliterator() {
+                return new SectionSpliterator(startX, startY, startZ, endX, endY, endZ);
+            }
+        };
+    }
+
+    public static Stream<MutableNewBlockPos> stream(int startX, int startY, int startZ, int endX, int endY, int endZ) {
+        return StreamSupport.stream(new SectionSpliterator(startX, startY, startZ, endX, endY, endZ), false);
+    }
+
+    public static Stream<MutableNewBlockPos> stream(BlockBox box) {
+        return stream(Math.min(box.minX, box.maxX), Math.min(box.minY, box.maxY), Math.min(box.minZ, box.maxZ), Math.max(box.minX, box.maxX),
+                Math.max(box.minY, box.maxY), Math.max(box.minZ, box.maxZ));
+    }
+
+    /**
+     * Receives the positions of a section-major traversal.
+     */
+    public interface SectionVisitor {
+
+        /**
+         * Called before the positions of a section are visited.
+         */
+        void enterSection(int sectionX, int sectionY, int sectionZ);
+
+        /**
+         * Visits a position of the current section.
+         *
+         * @param localIndex the {@linkplain #localIndex(int, int, int)
+         * section-local index} of the position
+         */
+        void visit(int x, int y, int z, int localIndex);
+    }
+
+    /**
+     * A spliterator over the sections of a box, addressed by their linear
+     * index, that splits at section boundaries.
+     */
+    private static final class SectionSpliterator implements Spliterator<MutableNewBlockPos> {
+
+        private final MutableNewBlockPos pos = new MutableNewBlockPos();
+        private final int startX;
+        private final int startY;
+        private final int startZ;
+        private final int endX;
+        private final int endY;
+        private final int endZ;
+        private final int sectionCountX;
+        private final int sectionCountY;
+        private long sectionIndex;
+        private final long sectionEnd;
+        // bounds and cursor within the current section, valid if active
+        private boolean active;
+        private int minX;
+        private int maxX;
+        private int minZ;
+        private int maxZ;
+        private int maxY;
+        private int x;
+        private int y;
+        private int z;
+
+        SectionSpliterator(int startX, int startY, int startZ, int endX, int endY, int endZ) {
+            this(startX, startY, startZ, endX, endY, endZ, 0L,
+                    endX < startX || endY < startY || endZ < startZ ? 0L : (long) ((endX >> 4) - (startX >> 4) + 1) * ((endY >> 4) - (startY >> 4) + 1)
+                            * ((endZ >> 4) - (startZ >> 4) + 1));
+        }
+
+        private SectionSpliterator(int startX, int startY, int startZ, int endX, int endY, int endZ, long sectionIndex, long sectionEnd) {
+            this.startX = startX;
+            this.startY = startY;
+            this.startZ = startZ;
+            this.endX = endX;
+            this.endY = endY;
+            this.endZ = endZ;
+            this.sectionCountX = (endX >> 4) - (startX >> 4) + 1;
+            this.sectionCountY = (endY >> 4) - (startY >> 4) + 1;
+            this.sectionIndex = sectionIndex;
+            this.sectionEnd = sectionEnd;
+        }
+
+        private boolean enterNextSection() {
+            if (this.sectionIndex >= this.sectionEnd) {
+                return false;
+            }
+            long row = this.sectionIndex / this.sectionCountX;
+            int sectionX = (this.startX >> 4) + (int) (this.sectionIndex - row * this.sectionCountX);
+            int sectionY = (this.startY >> 4) + (int) (row % this.sectionCountY);
+            int sectionZ = (this.startZ >> 4) + (int) (row / this.sectionCountY);
+            ++this.sectionIndex;
+            this.minX = Math.max(this.startX, sectionX << 4);
+            this.maxX = Math.min(this.endX, (sectionX << 4) + 15);
+            this.minZ = Math.max(this.startZ, sectionZ << 4);
+            this.maxZ = Math.min(this.endZ, (sectionZ << 4) + 15);
+            this.maxY = Math.min(this.endY, (sectionY << 4) + 15);
+            this.x = this.minX;
+            this.y = Math.max(this.startY, sectionY << 4);
+            this.z = this.minZ;
+            this.active = true;
+            return true;
+        }
+
+        @Override public boolean tryAdvance(Consumer<? super MutableNewBlockPos> action) {
+            if (!this.active && !this.enterNextSection()) {
+                return false;
+            }
+            this.pos.set(this.x, this.y, this.z);
+            if (++this.x > this.maxX) {
+                this.x = this.minX;
+                if (++this.z > this.maxZ) {
+                    this.z = this.minZ;
+                    if (++this.y > this.maxY) {
+                        this.active = false;
+                    }
+                }
+            }
+            action.accept(this.pos);
+            return true;
+        }
+
+        @Override public Spliterator<MutableNewBlockPos> trySplit() {
+            long remaining = this.sectionEnd - this.sectionIndex;
+            if (remaining < 2L) {
+                return null;
+            }
+            // the prefix keeps the current, possibly partially visited, section
+            long split = this.sectionIndex + (remaining >>> 1);
+            SectionSpliterator prefix = new SectionSpliterator(this.startX, this.startY, this.startZ, this.endX, this.endY, this.endZ,
+                    this.sectionIndex, split);
+            if (this.active) {
+                prefix.active = true;
+                prefix.minX = this.minX;
+                prefix.maxX = this.maxX;
+                prefix.minZ = this.minZ;
+                prefix.maxZ = this.maxZ;
+                prefix.maxY = this.maxY;
+                prefix.x = this.x;
+                prefix.y = this.y;
+                prefix.z = this.z;
+                this.active = false;
+            }
+            this.sectionIndex = split;
+            return prefix;
+        }
+
+        @Override public long estimateSize() {
+            long sections = this.sectionEnd - this.sectionIndex + (this.active ? 1L : 0L);
+            return sections > Long.MAX_VALUE >> 12 ? Long.MAX_VALUE : sections << 12;
+        }
+
+        @Override public int characteristics() {
+            return ORDERED | NONNULL;
+        }
+    }
+}
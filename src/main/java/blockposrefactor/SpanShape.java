@@ -0,0 +1,142 @@
+package blockposrefactor;
+
+import com.google.common.collect.AbstractIterator;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.function.Consumer;
+
+/**
+ * A sphere, hollow shell, or cylinder of block positions, visited row by row
+ * from {@linkplain SpanTable span tables}.
+ *
+ * <p>Positions are visited in the order of {@link NewBlockPos#iterate(int,
+ * int, int, int, int, int)}: by x first, then y, then z.
+ */
+final class SpanShape implements Iterable<MutableNewBlockPos> {
+
+    private final int centerX;
+    private final int centerY;
+    private final int centerZ;
+    private final SpanTable outer;
+    private final SpanTable inner;
+    // for cylinders, the y offsets of the layers, all of which use row 0
+    private final boolean flat;
+    private final int minY;
+    private final int maxY;
+
+    private SpanShape(NewBlockPos center, SpanTable outer, SpanTable inner, boolean flat, int minY, int maxY) {
+        this.centerX = center.getX();
+        this.centerY = center.getY();
+        this.centerZ = center.getZ();
+        this.outer = outer;
+        this.inner = inner;
+        this.flat = flat;
+        this.minY = minY;
+        this.maxY = maxY;
+    }
+
+    static SpanShape sphere(NewBlockPos center, double radius, boolean treatAsBlockPos) {
+        SpanTable table = SpanTable.get(radius, treatAsBlockPos, false);
+        return new SpanShape(center, table, null, false, table.minY, table.maxY);
+    }
+
+    static SpanShape shell(NewBlockPos center, double innerRadius, double outerRadius, boolean treatAsBlockPos) {
+        SpanTable outer = SpanTable.get(outerRadius, treatAsBlockPos, false);
+        return new SpanShape(center, outer, SpanTable.get(innerRadius, treatAsBlockPos, false), false, outer.minY, outer.maxY);
+    }
+
+    static SpanShape cylinder(NewBlockPos base, double radius, int height, boolean treatAsBlockPos) {
+        return new SpanShape(base, SpanTable.get(radius, treatAsBlockPos, true), null, true, 0, height - 1);
+    }
+
+    /**
+     * Writes the x-spans of a row to {@code spans} as up to two inclusive
+     * {@code [min, max]} pairs.
+     *
+     * @return the number of spans
+     */
+    private int spans(int y, int z, int[] spans) {
+        int rowY = this.flat ? 0 : y;
+        int min = this.outer.minX(rowY, z);
+        int max = this.outer.maxX(rowY, z);
+        if (min > max) {
+            return 0;
+        }
+        if (this.inner == null || !this.inner.hasRow(rowY, z) || this.inner.minX(rowY, z) > this.inner.maxX(rowY, z)) {
+            spans[0] = min;
+            spans[1] = max;
+            return 1;
+        }
+        int count = 0;
+        int holeMin = this.inner.minX(rowY, z);
+        int holeMax = this.inner.maxX(rowY, z);
+        if (min <= Math.min(max, holeMin - 1)) {
+            spans[0] = min;
+            spans[1] = Math.min(max, holeMin - 1);
+            count++;
+        }
+        if (Math.max(min, holeMax + 1) <= max) {
+            spans[2 * count] = Math.max(min, holeMax + 1);
+            spans[2 * count + 1] = max;
+            count++;
+        }
+        return count;
+    }
+
+    void forEach(IntTriConsumer visitor) {
+        int[] spans = new int[4];
+        for (int z = this.outer.minZ; z <= this.outer.maxZ; z++) {
+            int blockZ = this.centerZ + z;
+            for (int y = this.minY; y <= this.maxY; y++) {
+                int blockY = this.centerY + y;
+                int count = this.spans(y, z, spans);
+                for (int i = 0; i < count; i++) {
+                    for (int x = this.centerX + spans[2 * i], end = this.centerX + spans[2 * i + 1]; x <= end; x++) {
+                        visitor.accept(x, blockY, blockZ);
+                    }
+                }
+            }
+        }
+    }
+
+    @Override public void forEach(Consumer<? super MutableNewBlockPos> action) {
+        MutableNewBlockPos cursor = new MutableNewBlockPos();
+        this.forEach((x, y, z) -> action.accept(cursor.set(x, y, z)));
+    }
+
+    @Override public Iterator<MutableNewBlockPos> iterator() {
+        if (this.outer.minZ > this.outer.maxZ || this.minY > this.maxY) {
+            return Collections.emptyIterator();
+        }
+        return new AbstractIterator<MutableNewBlockPos>() {
+            private final MutableNewBlockPos cursor = new MutableNewBlockPos();
+            private final int[] spans = new int[4];
+            private int z = SpanShape.this.outer.minZ;
+            private int y = SpanShape.this.minY - 1;
+            private int spanCount;
+            private int span;
+            private int x;
+            private int end = -1;
+
+            @Override protected MutableNewBlockPos computeNext() {
+                while (this.x > this.end) {
+                    if (++this.span < this.spanCount) {
+                        this.x = this.spans[2 * this.span];
+                        this.end = this.spans[2 * this.span + 1];
+                        break;
+                    }
+                    if (++this.y > SpanShape.this.maxY) {
+                        this.y = SpanShape.this.minY;
+                        if (++this.z > SpanShape.this.outer.maxZ) {
+                            return this.endOfData();
+                        }
+                    }
+                    this.spanCount = SpanShape.this.spans(this.y, this.z, this.spans);
+                    this.span = -1;
+                }
+                return this.cursor.set(SpanShape.this.centerX + this.x++, SpanShape.this.centerY + this.y, SpanShape.this.centerZ + this.z);
+            }
+        };
+    }
+}
@@ -0,0 +1,195 @@
+package blockposrefactor;
+
+/**
+ * The x-spans of the rows of a ball of block offsets, so that the positions
+ * within a distance of a center can be visited without testing the
+ * distance of each one.
+ *
+ * <p>An offset is in the ball when its squared distance from the center,
+ * computed like {@link NewVec3i#getSquaredDistance(double, double, double,
+ * boolean)} for a block position {@code center + offset} and the center's
+ * integer coordinates, is less than the squared radius, as in {@link
+ * NewVec3i#isWithinDistance(NewVec3i, double)}. With {@code
+ * treatAsBlockPos}, each coordinate of an offset is measured from its block
+ * center, that is with half a block added. A flat table is the disc of the
+ * ball at y offset {@code 0}, with no half block added to y.
+ *
+ * <p>Rows are indexed by z offset, then by y offset. Tables up to {@link
+ * #MAX_CACHED_RADIUS} hold the spans of all rows and are kept in a small
+ * direct-mapped cache keyed by the bits of the radius and the two flags, so
+ * that a lookup that hits allocates nothing. Larger tables compute the span
+ * of a row when it is asked for, so that their size does not grow with the
+ * radius.
+ */
+final class SpanTable {
+
+    /**
+     * The largest radius a table can be built for. A ball of this radius
+     * already spans every y a packed position can have.
+     */
+    static final double MAX_RADIUS = 2048.0D;
+    /**
+     * The largest radius whose rows are precomputed and cached, with at most
+     * about 2^16 rows per table.
+     */
+    private static final double MAX_CACHED_RADIUS = 128.0D;
+    /**
+     * The number of cached tables, a power of two.
+     */
+    private static final int SLOTS = 16;
+
+    // tables are immutable, so a racing thread sees either a whole table or
+    // an older one, and at worst computes a table again
+    private static final SpanTable[] TABLES = new SpanTable[SLOTS];
+
+    final int minY;
+    final int maxY;
+    final int minZ;
+    final int maxZ;
+    private final long radiusBits;
+    private final int flags;
+    private final double maxSquared;
+    private final double half;
+    private final double halfY;
+    private final int below;
+    private final int ySize;
+    // null for tables that compute their rows on demand
+    private final int[] minX;
+    private final int[] maxX;
+
+    private SpanTable(double radius, boolean treatAsBlockPos, boolean flat, boolean precompute) {
+        this.radiusBits = Double.doubleToLongBits(radius);
+        this.flags = flags(treatAsBlockPos, flat);
+        this.maxSquared = radius * radius;
+        this.half = treatAsBlockPos ? 0.5D : 0.0D;
+        this.halfY = flat ? 0.0D : this.half;
+        this.below = treatAsBlockPos ? 1 : 0;
+        int extent = extent(this.maxSquared, this.half);
+        if (extent < 0) {
+            this.minY = this.minZ = 0;
+            this.maxY = this.maxZ = -1;
+        } else {
+            // with a half block added, offsets -1 - k and k are equally far
+            this.minY = flat ? 0 : -extent - this.below;
+            this.maxY = flat ? 0 : extent;
+            this.minZ = -extent - this.below;
+            this.maxZ = extent;
+        }
+        this.ySize = this.maxY - this.minY + 1;
+        if (!precompute) {
+            this.minX = null;
+            this.maxX = null;
+            return;
+        }
+        int rows = this.ySize * (this.maxZ - this.minZ + 1);
+        this.minX = new int[rows];
+        this.maxX = new int[rows];
+        for (int z = this.minZ; z <= this.maxZ; z++) {
+            for (int y = this.minY; y <= this.maxY; y++) {
+                int row = this.row(y, z);
+                int x = this.rowExtent(y, z);
+                this.minX[row] = x < 0 ? 1 : -x - this.below;
+                this.maxX[row] = x < 0 ? 0 : x;
+            }
+        }
+    }
+
+    /**
+     * Returns the largest offset on one axis that can be in the ball, or
+     * {@code -1} if none can.
+     */
+    private static int extent(double maxSquared, double half) {
+        if (!(half * half < maxSquared)) {
+            return -1;
+        }
+        int x = (int) Math.sqrt(maxSquared);
+        while (x > 0 && !(square(x + half) < maxSquared)) {
+            x--;
+        }
+        while (square(x + 1 + half) < maxSquared) {
+            x++;
+        }
+        return x;
+    }
+
+    /**
+     * Returns the largest x offset in a row, or {@code -1} if the row is
+     * empty.
+     */
+    private int rowExtent(int y, int z) {
+        double ey = y + this.halfY;
+        double ez = z + this.half;
+        double rest = ey * ey + ez * ez;
+        if (!(this.half * this.half + rest < this.maxSquared)) {
+            return -1;
+        }
+        int x = (int) Math.sqrt(this.maxSquared - rest);
+        while (x > 0 && !(square(x + this.half) + rest < this.maxSquared)) {
+            x--;
+        }
+        while (square(x + 1 + this.half) + rest < this.maxSquared) {
+            x++;
+        }
+        return x;
+    }
+
+    private static double square(double value) {
+        return value * value;
+    }
+
+    private static int flags(boolean treatAsBlockPos, boolean flat) {
+        return (treatAsBlockPos ? 1 : 0) | (flat ? 2 : 0);
+    }
+
+    /**
+     * Returns the table for a radius, of which only the absolute value counts.
+     *
+     * @throws IllegalArgumentException if the radius is not finite or its
+     * absolute value is greater than {@link #MAX_RADIUS}
+     */
+    static SpanTable get(double radius, boolean treatAsBlockPos, boolean flat) {
+        double abs = Math.abs(radius);
+        if (!(abs <= MAX_RADIUS)) {
+            throw new IllegalArgumentException("Radius must be finite and at most " + MAX_RADIUS + ": " + radius);
+        }
+        if (abs > MAX_CACHED_RADIUS) {
+            return new SpanTable(abs, treatAsBlockPos, flat, false);
+        }
+        long bits = Double.doubleToLongBits(abs);
+        int flags = flags(treatAsBlockPos, flat);
+        int slot = (int) BlockPosHashing.mix(bits ^ flags) & SLOTS - 1;
+        SpanTable table = TABLES[slot];
+        if (table == null || table.radiusBits != bits || table.flags != flags) {
+            table = new SpanTable(abs, treatAsBlockPos, flat, true);
+            TABLES[slot] = table;
+        }
+        return table;
+    }
+
+    private int row(int y, int z) {
+        return (z - this.minZ) * this.ySize + y - this.minY;
+    }
+
+    boolean hasRow(int y, int z) {
+        return y >= this.minY && y <= this.maxY && z >= this.minZ && z <= this.maxZ;
+    }
+
+    /**
+     * Returns the smallest x offset of a row, greater than {@link #maxX} if
+     * the row is empty. The row must {@linkplain #hasRow exist}.
+     */
+    int minX(int y, int z) {
+        if (this.minX != null) {
+            return this.minX[this.row(y, z)];
+        }
+        int x = this.rowExtent(y, z);
+        return x < 0 ? 1 : -x - this.below;
+    }
+
+    int maxX(int y, int z) {
+        if (this.maxX != null) {
+            return this.maxX[this.row(y, z)];
+        }
+        return Math.max(this.rowExtent(y, z), 0);
+    }
+}
@@ -0,0 +1,162 @@
+package blockposrefactor;
+
+import net.minecraft.util.math.Direction;
+import net.minecraft.util.math.MathHelper;
+import net.minecraft.util.math.Vec3d;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Walks the block positions a line segment passes through, from the block
+ * containing its start to the block containing its end, with a 3D digital
+ * differential analyzer.
+ *
+ * <p>The block containing a point is the one at the {@link
+ * MathHelper#floor(double) floor} of its coordinates. Each step moves to an
+ * adjacent block, so consecutive positions always share a face. When the
+ * line crosses an edge or a corner, ties are broken in the same order as
+ * the vanilla block raycast: y before x, and z before both.
+ *
+ * <p>The ray reuses one {@link MutableNewBlockPos} for all positions; after
+ * each {@link #next()}, {@link #getEntryFace()} tells the face of the
+ * returned position that the line entered through.
+ */
+public final class VoxelRay implements Iterator<MutableNewBlockPos> {
+
+    private final MutableNewBlockPos pos = new MutableNewBlockPos();
+    private final int stepX;
+    private final int stepY;
+    private final int stepZ;
+    private final double deltaX;
+    private final double deltaY;
+    private final double deltaZ;
+    private double maxX;
+    private double maxY;
+    private double maxZ;
+    /**
+     * The steps left on each axis until the block containing the end. The
+     * count, rather than the crossing fractions, decides where the ray stops,
+     * so that rounding cannot add or drop a block at the end.
+     */
+    private int remainingX;
+    private int remainingY;
+    private int remainingZ;
+    private int x;
+    private int y;
+    private int z;
+    private boolean started;
+    private Direction entryFace;
+
+    public VoxelRay(Vec3d start, Vec3d end) {
+        this(start.x, start.y, start.z, end.x, end.y, end.z);
+    }
+
+    /**
+     * Creates a ray between the centers of two block positions.
+     */
+    public VoxelRay(NewVec3i start, NewVec3i end) {
+        this(start.getX() + 0.5D, start.getY() + 0.5D, start.getZ() + 0.5D, end.getX() + 0.5D, end.getY() + 0.5D, end.getZ() + 0.5D);
+    }
+
+    public VoxelRay(double startX, double startY, double startZ, double endX, double endY, double endZ) {
+        this.x = MathHelper.floor(startX);
+        this.y = MathHelper.floor(startY);
+        this.z = MathHelper.floor(startZ);
+        double dx = endX - startX;
+        double dy = endY - startY;
+        double dz = endZ - startZ;
+        this.stepX = step(dx);
+        this.stepY = step(dy);
+        this.stepZ = step(dz);
+        this.deltaX = this.stepX == 0 ? Double.POSITIVE_INFINITY : this.stepX / dx;
+        this.deltaY = this.stepY == 0 ? Double.POSITIVE_INFINITY : this.stepY / dy;
+        this.deltaZ = this.stepZ == 0 ? Double.POSITIVE_INFINITY : this.stepZ / dz;
+        this.remainingX = Math.abs(MathHelper.floor(endX) - this.x);
+        this.remainingY = Math.abs(MathHelper.floor(endY) - this.y);
+        this.remainingZ = Math.abs(MathHelper.floor(endZ) - this.z);
+        this.maxX = this.remainingX == 0 ? Double.POSITIVE_INFINITY : firstCrossing(startX, this.stepX, this.deltaX);
+        this.maxY = this.remainingY == 0 ? Double.POSITIVE_INFINITY : firstCrossing(startY, this.stepY, this.deltaY);
+        this.maxZ = this.remainingZ == 0 ? Double.POSITIVE_INFINITY : firstCrossing(startZ, this.stepZ, this.deltaZ);
+    }
+
+    private static int step(double delta) {
+        return delta > 0.0D ? 1 : delta < 0.0D ? -1 : 0;
+    }
+
+    /**
+     * Returns the fraction of the line at which it first crosses a block
+     * boundary on an axis.
+     */
+    private static double firstCrossing(double start, int step, double delta) {
+        double fraction = MathHelper.fractionalPart(start);
+        return delta * (step > 0 ? 1.0D - fraction : fraction);
+    }
+
+    @Override public boolean hasNext() {
+        return !this.started || (this.remainingX | this.remainingY | this.remainingZ) != 0;
+    }
+
+    @Override public MutableNewBlockPos next() {
+        if (!this.started) {
+            this.started = true;
+        } else if (!this.hasNext()) {
+            throw new NoSuchElementException();
+        } else if (this.maxX < this.maxY) {
+            if (this.maxX < this.maxZ) {
+                this.stepX();
+            } else {
+                this.stepZ();
+            }
+        } else if (this.maxY < this.maxZ) {
+            this.stepY();
+        } else {
+            this.stepZ();
+        }
+        return this.pos.set(this.x, this.y, this.z);
+    }
+
+    private void stepX() {
+        this.x += this.stepX;
+        this.maxX = --this.remainingX == 0 ? Double.POSITIVE_INFINITY : this.maxX + this.deltaX;
+        this.entryFace = this.stepX > 0 ? Direction.WEST : Direction.EAST;
+    }
+
+    private void stepY() {
+        this.y += this.stepY;
+        this.maxY = --this.remainingY == 0 ? Double.POSITIVE_INFINITY : this.maxY + this.deltaY;
+        this.entryFace = this.stepY > 0 ? Direction.DOWN : Direction.UP;
+    }
+
+    private void stepZ() {
+        this.z += this.stepZ;
+        this.maxZ = --this.remainingZ == 0 ? Double.POSITIVE_INFINITY : this.maxZ + this.deltaZ;
+        this.entryFace = this.stepZ > 0 ? Direction.NORTH : Direction.SOUTH;
+    }
+
+    /**
+     * Returns the face through which the line entered the position last
+     * returned by {@link #next()}, or {@code null} for the first position,
+     * which contains the start of the line.
+     */
+    public Direction getEntryFace() {
+        return this.entryFace;
+    }
+
+    /**
+     * Visits the block positions of a {@link VoxelRay}.
+     */
+    @FunctionalInterface
+    public interface Visitor {
+
+        /**
+         * Visits a position on the line.
+         *
+         * @param pos the position, reused for all positions of the line
+         * @param entryFace the face of the position that the line entered
+         * through, or {@code null} for the position containing the start
+         * @return {@code true} to stop the traversal
+         */
+        boolean visit(MutableNewBlockPos pos, Direction entryFace);
+    }
+}
@@ -0,0 +1,67 @@
+package blockposrefactor;
+
+/**
+ * Encodes block positions into keys that sort in the order of {@link
+ * NewVec3i#compareTo(NewVec3i)}: by y, then z, then x.
+ *
+ * <p>Keys cover the same coordinate range as {@link NewBlockPos#asLong(int,
+ * int, int)}. The 12 bits of y come first, then the 26 bits of z and x, each
+ * biased to be unsigned. Like {@link MortonEncoding} keys, the keys are
+ * biased so that signed comparison, as in {@link java.util.Arrays#sort(long[])},
+ * {@link java.util.Arrays#binarySearch(long[], long)}, and {@link PackedSort},
+ * orders them; {@code key ^ Long.MIN_VALUE} orders the same way unsigned.
+ */
+public final class YzxEncoding {
+
+    private static final int SHIFT_Z = ImmutableNewBlockPos.SIZE_BITS_X;
+    private static final int SHIFT_Y = ImmutableNewBlockPos.SIZE_BITS_X + ImmutableNewBlockPos.SIZE_BITS_Z;
+    /**
+     * The sign bits of the x and z lanes. Flipping them turns two's
+     * complement lanes into biased ones; the sign of the y lane is already
+     * the sign of the key.
+     */
+    private static final long LANE_SIGNS = 1L << SHIFT_Y - 1 | 1L << SHIFT_Z - 1;
+
+    private YzxEncoding() {
+    }
+
+    public static long encode(int x, int y, int z) {
+        long key = (long) MortonEncoding.biasY(y) << SHIFT_Y | (long) MortonEncoding.biasZ(z) << SHIFT_Z | MortonEncoding.biasX(x);
+        return key ^ Long.MIN_VALUE;
+    }
+
+    public static long encode(NewBlockPos pos) {
+        return encode(pos.getX(), pos.getY(), pos.getZ());
+    }
+
+    public static int decodeX(long key) {
+        return MortonEncoding.unbiasX((int) (key & ImmutableNewBlockPos.BITS_X));
+    }
+
+    public static int decodeY(long key) {
+        return MortonEncoding.unbiasY((int) ((key ^ Long.MIN_VALUE) >>> SHIFT_Y));
+    }
+
+    public static int decodeZ(long key) {
+        return MortonEncoding.unbiasZ((int) (key >>> SHIFT_Z & ImmutableNewBlockPos.BITS_Z));
+    }
+
+    public static MutableNewBlockPos decode(long key, MutableNewBlockPos pos) {
+        return pos.set(decodeX(key), decodeY(key), decodeZ(key));
+    }
+
+    public static long fromPacked(long packed) {
+        long x = packed >>> ImmutableNewBlockPos.BIT_SHIFT_X & ImmutableNewBlockPos.BITS_X;
+        long y = packed & ImmutableNewBlockPos.BITS_Y;
+        long z = packed >>> ImmutableNewBlockPos.BIT_SHIFT_Z & ImmutableNewBlockPos.BITS_Z;
+        return (y << SHIFT_Y | z << SHIFT_Z | x) ^ LANE_SIGNS;
+    }
+
+    public static long toPacked(long key) {
+        long k = key ^ LANE_SIGNS;
+        long x = k & ImmutableNewBlockPos.BITS_X;
+        long y = k >>> SHIFT_Y;
+        long z = k >>> SHIFT_Z & ImmutableNewBlockPos.BITS_Z;
+        return x << ImmutableNewBlockPos.BIT_SHIFT_X | z << ImmutableNewBlockPos.BIT_SHIFT_Z | y;
+    }
+}
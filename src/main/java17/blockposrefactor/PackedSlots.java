@@ -0,0 +1,40 @@
+package blockposrefactor;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * The key slots of a {@link ConcurrentPackedHash} table.
+ *
+ * <p>This is the Java 17 version, which works on a plain {@code long[]}
+ * through a {@link VarHandle} instead of wrapping an {@code
+ * AtomicLongArray}. Reads have acquire semantics, which is all that
+ * lookups need to see the keys published by a compare-and-set or by a
+ * resize; writes stay volatile.
+ */
+final class PackedSlots {
+
+    private static final VarHandle SLOTS = MethodHandles.arrayElementVarHandle(long[].class);
+
+    private final long[] slots;
+
+    PackedSlots(int length) {
+        this.slots = new long[length];
+    }
+
+    int length() {
+        return this.slots.length;
+    }
+
+    long get(int i) {
+        return (long) SLOTS.getAcquire(this.slots, i);
+    }
+
+    void set(int i, long value) {
+        SLOTS.setVolatile(this.slots, i, value);
+    }
+
+    boolean compareAndSet(int i, long expect, long update) {
+        return SLOTS.compareAndSet(this.slots, i, expect, update);
+    }
+}
@@ -0,0 +1,60 @@
+package blockposrefactor;
+
+/**
+ * Bulk kernels over positions stored as parallel x, y, and z arrays, used by
+ * {@link BlockPosBuffer}.
+ *
+ * <p>This is the Java 17 version. It runs the {@linkplain
+ * VectorPositionKernels Vector API kernels} when the incubating {@code
+ * jdk.incubator.vector} module is resolved, which takes {@code --add-modules
+ * jdk.incubator.vector} on the command line, and the {@linkplain
+ * ScalarPositionKernels portable loops} otherwise.
+ */
+final class PositionKernels {
+
+    private static final boolean VECTORIZED = ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()
+            && VectorPositionKernels.isSupported();
+
+    private PositionKernels() {
+    }
+
+    /**
+     * Returns a short name of the kernels in use.
+     */
+    static String implementation() {
+        return VECTORIZED ? "vector" : "scalar";
+    }
+
+    /**
+     * @see ScalarPositionKernels#pack
+     */
+    static void pack(int[] xs, int[] ys, int[] zs, int offset, long[] packed, int packedOffset, int count) {
+        if (VECTORIZED) {
+            VectorPositionKernels.pack(xs, ys, zs, offset, packed, packedOffset, count);
+        } else {
+            ScalarPositionKernels.pack(xs, ys, zs, offset, packed, packedOffset, count);
+        }
+    }
+
+    /**
+     * @see ScalarPositionKernels#unpack
+     */
+    static void unpack(long[] packed, int packedOffset, int[] xs, int[] ys, int[] zs, int offset, int count) {
+        if (VECTORIZED) {
+            VectorPositionKernels.unpack(packed, packedOffset, xs, ys, zs, offset, count);
+        } else {
+            ScalarPositionKernels.unpack(packed, packedOffset, xs, ys, zs, offset, count);
+        }
+    }
+
+    /**
+     * @see ScalarPositionKernels#retainWithinDistance
+     */
+    static int retainWithinDistance(int[] xs, int[] ys, int[] zs, int from, int to, int kept,
+            double cx, double cy, double cz, double offset, double distance) {
+        if (VECTORIZED) {
+            return VectorPositionKernels.retainWithinDistance(xs, ys, zs, from, to, kept, cx, cy, cz, offset, distance);
+        }
+        return ScalarPositionKernels.retainWithinDistance(xs, ys, zs, from, to, kept, cx, cy, cz, offset, distance);
+    }
+}
@@ -0,0 +1,123 @@
+package blockposrefactor;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Vector API versions of the {@link ScalarPositionKernels}, with the same
+ * results. Each loop handles whole vectors and leaves the tail to the scalar
+ * loop.
+ *
+ * <p>Only {@link PositionKernels} loads this class, and only once it has
+ * checked that the incubating module is resolved and {@link #isSupported()
+ * wide enough vectors} are available.
+ */
+final class VectorPositionKernels {
+
+    private static final VectorSpecies<Long> LONGS = LongVector.SPECIES_PREFERRED;
+    /**
+     * Ints with as many lanes as {@link #LONGS}.
+     */
+    private static final VectorSpecies<Integer> LONG_INTS = VectorSpecies.of(int.class, VectorShape.forBitSize(LONGS.vectorBitSize() / 2));
+    private static final VectorSpecies<Double> DOUBLES = DoubleVector.SPECIES_PREFERRED;
+    /**
+     * Ints with as many lanes as {@link #DOUBLES}.
+     */
+    private static final VectorSpecies<Integer> DOUBLE_INTS = VectorSpecies.of(int.class, VectorShape.forBitSize(DOUBLES.vectorBitSize() / 2));
+
+    private static final int SHIFT_X = ImmutableNewBlockPos.BIT_SHIFT_X;
+    private static final int SHIFT_Z = ImmutableNewBlockPos.BIT_SHIFT_Z;
+    private static final long BITS_X = ImmutableNewBlockPos.BITS_X;
+    private static final long BITS_Y = ImmutableNewBlockPos.BITS_Y;
+    private static final long BITS_Z = ImmutableNewBlockPos.BITS_Z;
+    private static final int HIGH_X = 64 - ImmutableNewBlockPos.BIT_SHIFT_X - ImmutableNewBlockPos.SIZE_BITS_X;
+    private static final int HIGH_Y = 64 - ImmutableNewBlockPos.SIZE_BITS_Y;
+    private static final int HIGH_Z = 64 - ImmutableNewBlockPos.BIT_SHIFT_Z - ImmutableNewBlockPos.SIZE_BITS_Z;
+    private static final int SIGN_X = 64 - ImmutableNewBlockPos.SIZE_BITS_X;
+    private static final int SIGN_Y = 64 - ImmutableNewBlockPos.SIZE_BITS_Y;
+    private static final int SIGN_Z = 64 - ImmutableNewBlockPos.SIZE_BITS_Z;
+
+    private VectorPositionKernels() {
+    }
+
+    /**
+     * Returns whether the preferred vectors hold at least two longs, so that
+     * the half-width int species exist.
+     */
+    static boolean isSupported() {
+        return VectorShape.preferredShape().vectorBitSize() >= 128;
+    }
+
+    static void pack(int[] xs, int[] ys, int[] zs, int offset, long[] packed, int packedOffset, int count) {
+        int step = LONGS.length();
+        int bound = LONGS.loopBound(count);
+        int i = 0;
+        for (; i < bound; i += step) {
+            LongVector x = (LongVector) IntVector.fromArray(LONG_INTS, xs, offset + i).convertShape(VectorOperators.I2L, LONGS, 0);
+            LongVector y = (LongVector) IntVector.fromArray(LONG_INTS, ys, offset + i).convertShape(VectorOperators.I2L, LONGS, 0);
+            LongVector z = (LongVector) IntVector.fromArray(LONG_INTS, zs, offset + i).convertShape(VectorOperators.I2L, LONGS, 0);
+            x.and(BITS_X).lanewise(VectorOperators.LSHL, SHIFT_X)
+                    .or(y.and(BITS_Y))
+                    .or(z.and(BITS_Z).lanewise(VectorOperators.LSHL, SHIFT_Z))
+                    .intoArray(packed, packedOffset + i);
+        }
+        ScalarPositionKernels.pack(xs, ys, zs, offset + i, packed, packedOffset + i, count - i);
+    }
+
+    static void unpack(long[] packed, int packedOffset, int[] xs, int[] ys, int[] zs, int offset, int count) {
+        int step = LONGS.length();
+        int bound = LONGS.loopBound(count);
+        int i = 0;
+        for (; i < bound; i += step) {
+            LongVector value = LongVector.fromArray(LONGS, packed, packedOffset + i);
+            unpackLane(value, HIGH_X, SIGN_X).intoArray(xs, offset + i);
+            unpackLane(value, HIGH_Y, SIGN_Y).intoArray(ys, offset + i);
+            unpackLane(value, HIGH_Z, SIGN_Z).intoArray(zs, offset + i);
+        }
+        ScalarPositionKernels.unpack(packed, packedOffset + i, xs, ys, zs, offset + i, count - i);
+    }
+
+    private static IntVector unpackLane(LongVector value, int high, int sign) {
+        return (IntVector) value.lanewise(VectorOperators.LSHL, high).lanewise(VectorOperators.ASHR, sign).convertShape(VectorOperators.L2I, LONG_INTS, 0);
+    }
+
+    static int retainWithinDistance(int[] xs, int[] ys, int[] zs, int from, int to, int kept,
+            double cx, double cy, double cz, double offset, double distance) {
+        double max = distance * distance;
+        int step = DOUBLES.length();
+        long all = (1L << step) - 1;
+        int bound = from + DOUBLES.loopBound(to - from);
+        int i = from;
+        for (; i < bound; i += step) {
+            DoubleVector dx = toDoubles(xs, i).add(offset).sub(cx);
+            DoubleVector dy = toDoubles(ys, i).add(offset).sub(cy);
+            DoubleVector dz = toDoubles(zs, i).add(offset).sub(cz);
+            VectorMask<Double> within = dx.mul(dx).add(dy.mul(dy)).add(dz.mul(dz)).lt(max);
+            long lanes = within.toLong();
+            if (lanes == all && kept == i) {
+                // nothing has been dropped yet, so the run stays in place
+                kept += step;
+                continue;
+            }
+            // the kept positions only ever move down, below the lanes not read yet
+            while (lanes != 0) {
+                int j = i + Long.numberOfTrailingZeros(lanes);
+                xs[kept] = xs[j];
+                ys[kept] = ys[j];
+                zs[kept] = zs[j];
+                kept++;
+                lanes &= lanes - 1;
+            }
+        }
+        return ScalarPositionKernels.retainWithinDistance(xs, ys, zs, i, to, kept, cx, cy, cz, offset, distance);
+    }
+
+    private static DoubleVector toDoubles(int[] values, int index) {
+        return (DoubleVector) IntVector.fromArray(DOUBLE_INTS, values, index).convertShape(VectorOperators.I2D, DOUBLES, 0);
+    }
+}